@@ -0,0 +1,68 @@
+package benchmark;
+
+import benchmark.fake.FakeWebDriver;
+import driver.DefaultEventListener;
+import driver.DriverManager;
+import driver.DriverMethods;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per call overhead of DriverManager element lookup, the element cache and listener decoration.
+ *
+ * @author Andras Fuge
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DriverManagerBenchmark {
+    private static final By LOCATOR = By.id("username");
+
+    @Param({"0", "100000"})
+    public long latencyNanos;
+
+    @Param({"true", "false"})
+    public boolean elementCaching;
+
+    private FakeWebDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driver = new FakeWebDriver(Duration.ofNanos(latencyNanos));
+        driver.addElement(LOCATOR, "input", "");
+
+        DriverManager.setElementCaching(elementCaching);
+        DriverManager.initDriver(driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DriverManager.destroyDriver();
+    }
+
+    @Benchmark
+    public WebElement getElement() {
+        return DriverManager.getElement(LOCATOR);
+    }
+
+    @Benchmark
+    public boolean isEnabled() {
+        return DriverMethods.isEnabled(LOCATOR);
+    }
+
+    @Benchmark
+    public WebElement registerEventHandlerAndFind() {
+        DriverManager.registerEventHandler(DefaultEventListener.getInstance());
+        WebElement element = DriverManager.getDriver().findElement(LOCATOR);
+        DriverManager.unRegisterEventHandler();
+
+        return element;
+    }
+}
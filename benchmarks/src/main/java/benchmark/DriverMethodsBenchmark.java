@@ -0,0 +1,79 @@
+package benchmark;
+
+import benchmark.fake.FakeWebDriver;
+import benchmark.fake.FakeWebElement;
+import driver.DriverManager;
+import driver.DriverMethods;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.By;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per call overhead of the most used DriverMethods operations.
+ *
+ * @author Andras Fuge
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DriverMethodsBenchmark {
+    private static final By INPUT = By.id("username");
+    private static final By DROPDOWN = By.id("country");
+    private static final int OPTIONS = 300;
+    private static final int TABS = 10;
+
+    @Param({"0", "100000"})
+    public long latencyNanos;
+
+    private FakeWebDriver driver;
+    private String lastTabTitle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driver = new FakeWebDriver(Duration.ofNanos(latencyNanos));
+        driver.addElement(INPUT, "input", "");
+
+        FakeWebElement dropdown = driver.addElement(DROPDOWN, "select", "");
+        for (int i = 0; i < OPTIONS; i++) {
+            dropdown.addChild("option", String.format("Option %d", i));
+        }
+
+        for (int i = 1; i < TABS; i++) {
+            lastTabTitle = String.format("Tab %d", i);
+            driver.openWindow(lastTabTitle);
+        }
+
+        DriverManager.initDriver(driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DriverManager.destroyDriver();
+    }
+
+    @Benchmark
+    public void setText() {
+        DriverMethods.setText(INPUT, "benchmark");
+    }
+
+    @Benchmark
+    public List<String> getOptions() {
+        return DriverMethods.getOptions(DROPDOWN);
+    }
+
+    @Benchmark
+    public List<String> getOptionTexts() {
+        return DriverMethods.getOptionTexts(DROPDOWN);
+    }
+
+    @Benchmark
+    public void switchToTab() {
+        DriverMethods.switchToTab(lastTabTitle);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import benchmark.fake.FakeWebDriver;
+import driver.CompositeWait;
+import driver.DriverManager;
+import driver.DriverWaits;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.By;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of DriverWaits when the condition already holds, for the polling and the observer engine.
+ *
+ * @author Andras Fuge
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DriverWaitsBenchmark {
+    private static final By BUTTON = By.id("submit");
+    private static final By TABLE = By.id("results");
+    private static final By SPINNER = By.id("spinner");
+    private static final long TIMEOUT = 5;
+
+    @Param({"0", "100000"})
+    public long latencyNanos;
+
+    @Param({"true", "false"})
+    public boolean observerWaits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FakeWebDriver driver = new FakeWebDriver(Duration.ofNanos(latencyNanos));
+        driver.addElement(BUTTON, "button", "Submit").withAttribute("class", "btn ready");
+        driver.addElement(TABLE, "table", "Results");
+
+        DriverWaits.setObserverWaits(observerWaits);
+        DriverManager.initDriver(driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DriverManager.destroyDriver();
+    }
+
+    @Benchmark
+    public void waitForElementToAppear() {
+        DriverWaits.waitForElementToAppear(BUTTON, TIMEOUT);
+    }
+
+    @Benchmark
+    public void waitForAttributeToContain() {
+        DriverWaits.waitForAttributeToContain(BUTTON, "class", "ready", TIMEOUT);
+    }
+
+    @Benchmark
+    public void waitForElementToBeClickable() {
+        DriverWaits.waitForElementToBeClickable(BUTTON, TIMEOUT);
+    }
+
+    @Benchmark
+    public void chainedWaits() {
+        DriverWaits.waitForElementToDisappear(SPINNER, TIMEOUT);
+        DriverWaits.waitForElementToAppear(TABLE, TIMEOUT);
+        DriverWaits.waitForElementToBeClickable(BUTTON, TIMEOUT);
+    }
+
+    @Benchmark
+    public CompositeWait.Result compositeWait() {
+        return DriverWaits.composite().invisible(SPINNER).visible(TABLE).clickable(BUTTON).allOf(TIMEOUT);
+    }
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import benchmark.fake.FakeWebDriver;
+import driver.DriverManager;
+import driver.DriverMethods;
+import enums.NavigationMode;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.PageLoadStrategy;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the navigation modes of DriverMethods under the page load strategies, against a fake page reaching
+ * DOMContentLoaded after 20 ms and the load event after 200 ms. The fake driver holds its commands during a pending
+ * navigation the way chromedriver does, which is what makes DOM_CONTENT_LOADED useless under NORMAL.
+ *
+ * @author Andras Fuge
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NavigationBenchmark {
+    private static final Duration LATENCY = Duration.ofNanos(100_000);
+    private static final Duration DOM_CONTENT_LOADED = Duration.ofMillis(20);
+    private static final Duration LOAD = Duration.ofMillis(200);
+
+    @Param({"NORMAL", "EAGER", "NONE"})
+    public PageLoadStrategy pageLoadStrategy;
+
+    @Param({"LOAD", "DOM_CONTENT_LOADED"})
+    public NavigationMode navigationMode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FakeWebDriver driver = new FakeWebDriver(LATENCY);
+        driver.setPageLoad(pageLoadStrategy, DOM_CONTENT_LOADED, LOAD);
+
+        DriverManager.initDriver(driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DriverManager.destroyDriver();
+    }
+
+    @Benchmark
+    public void navigate() {
+        DriverMethods.navigate("https://example.com", navigationMode);
+    }
+}
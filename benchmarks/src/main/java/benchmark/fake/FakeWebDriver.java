@@ -0,0 +1,553 @@
+package benchmark.fake;
+
+import org.openqa.selenium.*;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.logging.Logs;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process WebDriver with a configurable DOM and a simulated latency per command.<br>
+ * It understands the scripts of the framework (bulk extraction, observer waits, window.open), which makes
+ * the framework overhead measurable without a browser.
+ *
+ * @author Andras Fuge
+ */
+public class FakeWebDriver implements WebDriver, JavascriptExecutor, TakesScreenshot, HasCapabilities {
+    private static final long SPIN_THRESHOLD_NANOS = 50_000;
+    private static final byte[] SCREENSHOT = new byte[]{(byte) 0x89, 'P', 'N', 'G'};
+
+    private final long latencyNanos;
+    private final AtomicLong commands = new AtomicLong();
+    private final Map<By, List<FakeWebElement>> dom = new HashMap<>();
+    private final Map<String, String> windows = new LinkedHashMap<>();
+    private String currentWindow;
+    private String currentUrl = "about:blank";
+    private int windowCounter = 0;
+    private final FakeTimeouts timeouts = new FakeTimeouts();
+    private PageLoadStrategy pageLoadStrategy = PageLoadStrategy.NORMAL;
+    private long domContentLoadedNanos = 0;
+    private long loadNanos = 0;
+    private long navigationStart = 0;
+
+    /**
+     * Creates a driver with one open window.
+     *
+     * @param latency the simulated duration of one command
+     */
+    public FakeWebDriver(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+        this.currentWindow = openWindow("Fake page");
+    }
+
+    /**
+     * Adds an element to the fake DOM.
+     *
+     * @param locator the locator the element is found by
+     * @param tagName the tag name of the element
+     * @param text    the text of the element
+     * @return the created element
+     */
+    public FakeWebElement addElement(By locator, String tagName, String text) {
+        FakeWebElement element = new FakeWebElement(this, tagName, text);
+        dom.computeIfAbsent(locator, key -> new ArrayList<>()).add(element);
+        return element;
+    }
+
+    /**
+     * Opens a window without switching to it.
+     *
+     * @param title the title of the window
+     * @return the handle of the window
+     */
+    public String openWindow(String title) {
+        String handle = String.format("window-%d", windowCounter++);
+        windows.put(handle, title);
+        return handle;
+    }
+
+    /**
+     * Simulates page loads: a navigation reaches DOMContentLoaded and the load event after the specified times.<br>
+     * Like chromedriver, every command waits for a pending navigation as far as the page load strategy requires.
+     *
+     * @param strategy         the page load strategy of the session
+     * @param domContentLoaded the time from the navigation to DOMContentLoaded
+     * @param load             the time from the navigation to the load event
+     */
+    public void setPageLoad(PageLoadStrategy strategy, Duration domContentLoaded, Duration load) {
+        this.pageLoadStrategy = strategy;
+        this.domContentLoadedNanos = domContentLoaded.toNanos();
+        this.loadNanos = load.toNanos();
+    }
+
+    /**
+     * Returns the number of commands executed since the creation of the driver.
+     *
+     * @return the command count
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * Simulates the network and browser time of one command.
+     */
+    void roundTrip() {
+        commands.incrementAndGet();
+        awaitPendingNavigation();
+
+        if (latencyNanos <= 0) {
+            return;
+        }
+
+        if (latencyNanos < SPIN_THRESHOLD_NANOS) {
+            long end = System.nanoTime() + latencyNanos;
+            while (System.nanoTime() < end) {
+                // busy spin, parking is too coarse for microsecond latencies
+            }
+        } else {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    private void startNavigation() {
+        navigationStart = System.nanoTime();
+    }
+
+    private void awaitPendingNavigation() {
+        if (navigationStart == 0 || pageLoadStrategy == PageLoadStrategy.NONE) {
+            return;
+        }
+
+        long pending = navigationStart + (pageLoadStrategy == PageLoadStrategy.EAGER ? domContentLoadedNanos : loadNanos) - System.nanoTime();
+        if (pending > 0) {
+            LockSupport.parkNanos(pending);
+        }
+    }
+
+    private boolean isDomContentLoaded() {
+        return System.nanoTime() - navigationStart >= domContentLoadedNanos;
+    }
+
+    static String[] toW3cLocator(By locator) {
+        if (!(locator instanceof By.Remotable)) {
+            return null;
+        }
+
+        By.Remotable.Parameters parameters = ((By.Remotable) locator).getRemoteParameters();
+        return new String[]{parameters.using(), String.valueOf(parameters.value())};
+    }
+
+    private List<FakeWebElement> lookup(String using, String value) {
+        for (Map.Entry<By, List<FakeWebElement>> entry : dom.entrySet()) {
+            String[] w3cLocator = toW3cLocator(entry.getKey());
+            if (w3cLocator != null && w3cLocator[0].equals(using) && w3cLocator[1].equals(value)) {
+                return entry.getValue();
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void get(String url) {
+        startNavigation();
+        roundTrip();
+        currentUrl = url;
+    }
+
+    @Override
+    public Capabilities getCapabilities() {
+        return new ImmutableCapabilities("browserName", "fake", "pageLoadStrategy", pageLoadStrategy.toString());
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        roundTrip();
+        return currentUrl;
+    }
+
+    @Override
+    public String getTitle() {
+        roundTrip();
+        return windows.get(currentWindow);
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        roundTrip();
+        return new ArrayList<>(dom.getOrDefault(by, Collections.emptyList()));
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        List<WebElement> found = findElements(by);
+
+        if (found.isEmpty()) {
+            throw new NoSuchElementException(String.format("No element found for: %s", by));
+        }
+
+        return found.get(0);
+    }
+
+    @Override
+    public String getPageSource() {
+        roundTrip();
+        return "<html><body></body></html>";
+    }
+
+    @Override
+    public void close() {
+        roundTrip();
+        windows.remove(currentWindow);
+    }
+
+    @Override
+    public void quit() {
+        roundTrip();
+        windows.clear();
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        roundTrip();
+        return new LinkedHashSet<>(windows.keySet());
+    }
+
+    @Override
+    public String getWindowHandle() {
+        roundTrip();
+        return currentWindow;
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        return new FakeTargetLocator();
+    }
+
+    @Override
+    public Navigation navigate() {
+        return new FakeNavigation();
+    }
+
+    @Override
+    public Options manage() {
+        return new FakeOptions();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object executeScript(String script, Object... args) {
+        roundTrip();
+
+        if (script.startsWith("window.open")) {
+            openWindow("");
+            return null;
+        }
+
+        if (script.startsWith("window.__sbNavigating")) {
+            startNavigation();
+            currentUrl = args[0] == null ? currentUrl : (String) args[0];
+            return null;
+        }
+
+        if (script.contains("document.readyState !== 'loading'")) {
+            return isDomContentLoaded();
+        }
+
+        if (script.contains("__sbEvaluate")) {
+            return evaluateBranches((List<List<Object>>) args[0], (String) args[1]);
+        }
+
+        if (script.contains("__sbFind") && args.length >= 5) {
+            List<FakeWebElement> elements = args[0] instanceof List
+                    ? (List<FakeWebElement>) args[0]
+                    : lookup((String) args[1], (String) args[2]);
+            List<String> attributes = args[4] instanceof List ? (List<String>) args[4] : Collections.emptyList();
+            List<Object> result = new ArrayList<>();
+
+            for (FakeWebElement element : elements) {
+                if (args[3] == null) {
+                    result.add(element.toScriptResult(attributes));
+                } else {
+                    for (FakeWebElement child : element.getChildren()) {
+                        result.add(child.toScriptResult(attributes));
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object executeAsyncScript(String script, Object... args) {
+        roundTrip();
+
+        if (script.contains("__sbEvaluate")) {
+            return evaluateBranches((List<List<Object>>) args[0], (String) args[1]);
+        }
+
+        if (script.contains("__sbObserve") && args.length >= 3) {
+            return !lookup((String) args[1], (String) args[2]).isEmpty() || "INVISIBLE".equals(args[0]);
+        }
+
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Evaluates the branches of a composite wait script in the order given, stopping at the first met one in FIRST_OF
+     * mode as the script does.
+     */
+    private List<Boolean> evaluateBranches(List<List<Object>> branches, String mode) {
+        List<Boolean> states = new ArrayList<>();
+
+        for (List<Object> branch : branches) {
+            String condition = (String) branch.get(0);
+            List<FakeWebElement> elements = lookup((String) branch.get(1), (String) branch.get(2));
+            boolean met = elements.isEmpty()
+                    ? "INVISIBLE".equals(condition)
+                    : elements.get(0).check(condition, (String) branch.get(3), (String) branch.get(4));
+
+            states.add(met);
+            if (met && "FIRST_OF".equals(mode)) {
+                break;
+            }
+        }
+
+        return states;
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        roundTrip();
+        return target.convertFromPngBytes(SCREENSHOT);
+    }
+
+    private class FakeTargetLocator implements TargetLocator {
+        @Override
+        public WebDriver frame(int index) {
+            roundTrip();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver frame(String nameOrId) {
+            roundTrip();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver frame(WebElement frameElement) {
+            roundTrip();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver parentFrame() {
+            roundTrip();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver window(String nameOrHandle) {
+            roundTrip();
+
+            if (!windows.containsKey(nameOrHandle)) {
+                throw new NoSuchWindowException(String.format("No window found: %s", nameOrHandle));
+            }
+
+            currentWindow = nameOrHandle;
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver newWindow(WindowType typeHint) {
+            roundTrip();
+            currentWindow = openWindow("");
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver defaultContent() {
+            roundTrip();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebElement activeElement() {
+            roundTrip();
+            return new FakeWebElement(FakeWebDriver.this, "body", "");
+        }
+
+        @Override
+        public Alert alert() {
+            roundTrip();
+            throw new NoAlertPresentException();
+        }
+    }
+
+    private class FakeNavigation implements Navigation {
+        @Override
+        public void back() {
+            roundTrip();
+        }
+
+        @Override
+        public void forward() {
+            roundTrip();
+        }
+
+        @Override
+        public void to(String url) {
+            get(url);
+        }
+
+        @Override
+        public void to(URL url) {
+            get(url.toString());
+        }
+
+        @Override
+        public void refresh() {
+            startNavigation();
+            roundTrip();
+        }
+    }
+
+    private class FakeOptions implements Options {
+        @Override
+        public void addCookie(Cookie cookie) {
+            roundTrip();
+        }
+
+        @Override
+        public void deleteCookieNamed(String name) {
+            roundTrip();
+        }
+
+        @Override
+        public void deleteCookie(Cookie cookie) {
+            roundTrip();
+        }
+
+        @Override
+        public void deleteAllCookies() {
+            roundTrip();
+        }
+
+        @Override
+        public Set<Cookie> getCookies() {
+            roundTrip();
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Cookie getCookieNamed(String name) {
+            roundTrip();
+            return null;
+        }
+
+        @Override
+        public Timeouts timeouts() {
+            return timeouts;
+        }
+
+        @Override
+        public ImeHandler ime() {
+            throw new UnsupportedOperationException("IME is not supported by the fake driver");
+        }
+
+        @Override
+        public Window window() {
+            return new FakeWindow();
+        }
+
+        @Override
+        public Logs logs() {
+            throw new UnsupportedOperationException("Logs are not supported by the fake driver");
+        }
+    }
+
+    private class FakeTimeouts implements Timeouts {
+        private Duration scriptTimeout = Duration.ofSeconds(30);
+
+        @Override
+        public Timeouts implicitlyWait(long time, TimeUnit unit) {
+            roundTrip();
+            return this;
+        }
+
+        @Override
+        public Timeouts setScriptTimeout(long time, TimeUnit unit) {
+            roundTrip();
+            scriptTimeout = Duration.ofNanos(unit.toNanos(time));
+            return this;
+        }
+
+        @Override
+        public Timeouts scriptTimeout(Duration duration) {
+            roundTrip();
+            scriptTimeout = duration;
+            return this;
+        }
+
+        @Override
+        public Duration getScriptTimeout() {
+            return scriptTimeout;
+        }
+
+        @Override
+        public Timeouts pageLoadTimeout(long time, TimeUnit unit) {
+            roundTrip();
+            return this;
+        }
+    }
+
+    private class FakeWindow implements Window {
+        @Override
+        public Dimension getSize() {
+            roundTrip();
+            return new Dimension(1920, 1080);
+        }
+
+        @Override
+        public void setSize(Dimension targetSize) {
+            roundTrip();
+        }
+
+        @Override
+        public Point getPosition() {
+            roundTrip();
+            return new Point(0, 0);
+        }
+
+        @Override
+        public void setPosition(Point targetPosition) {
+            roundTrip();
+        }
+
+        @Override
+        public void maximize() {
+            roundTrip();
+        }
+
+        @Override
+        public void minimize() {
+            roundTrip();
+        }
+
+        @Override
+        public void fullscreen() {
+            roundTrip();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package benchmark.fake;
+
+import org.openqa.selenium.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory WebElement of the FakeWebDriver. Every command costs the simulated latency of the driver.
+ *
+ * @author Andras Fuge
+ */
+public class FakeWebElement implements WebElement, TakesScreenshot {
+    private static final byte[] SCREENSHOT = new byte[]{(byte) 0x89, 'P', 'N', 'G'};
+
+    private final FakeWebDriver driver;
+    private final String tagName;
+    private final Map<String, String> attributes = new HashMap<>();
+    private final List<FakeWebElement> children = new ArrayList<>();
+    private String text;
+    private boolean displayed = true;
+    private boolean enabled = true;
+    private boolean selected = false;
+
+    FakeWebElement(FakeWebDriver driver, String tagName, String text) {
+        this.driver = driver;
+        this.tagName = tagName;
+        this.text = text;
+    }
+
+    /**
+     * Adds a child element, e.g. an option of a select.
+     *
+     * @param tagName the tag name of the child
+     * @param text    the text of the child
+     * @return the created child
+     */
+    public FakeWebElement addChild(String tagName, String text) {
+        FakeWebElement child = new FakeWebElement(driver, tagName, text);
+        children.add(child);
+        return child;
+    }
+
+    public FakeWebElement withAttribute(String name, String value) {
+        attributes.put(name, value);
+        return this;
+    }
+
+    public FakeWebElement withDisplayed(boolean status) {
+        displayed = status;
+        return this;
+    }
+
+    List<FakeWebElement> getChildren() {
+        return children;
+    }
+
+    /**
+     * Evaluates a wait condition the way the in-page __sbCheck script does, without a round trip.
+     */
+    boolean check(String condition, String attribute, String expected) {
+        String actual = attribute == null ? null : attributes.get(attribute);
+
+        switch (condition) {
+            case "VISIBLE":
+                return displayed;
+            case "INVISIBLE":
+                return !displayed;
+            case "CLICKABLE":
+                return displayed && enabled;
+            case "ATTRIBUTE_CONTAINS":
+                return actual != null && actual.contains(expected);
+            case "ATTRIBUTE_NOT_CONTAINS":
+                return actual == null || !actual.contains(expected);
+            default:
+                throw new IllegalArgumentException("Unsupported wait condition: " + condition);
+        }
+    }
+
+    Map<String, Object> toScriptResult(List<String> requestedAttributes) {
+        Map<String, Object> result = new HashMap<>();
+        Map<String, Object> requested = new HashMap<>();
+
+        for (String name : requestedAttributes) {
+            requested.put(name, attributes.get(name));
+        }
+
+        result.put("tagName", tagName);
+        result.put("text", displayed ? text : "");
+        result.put("value", attributes.get("value"));
+        result.put("displayed", displayed);
+        result.put("enabled", enabled);
+        result.put("selected", selected);
+        result.put("attributes", requested);
+
+        return result;
+    }
+
+    @Override
+    public void click() {
+        driver.roundTrip();
+        selected = !selected;
+    }
+
+    @Override
+    public void submit() {
+        driver.roundTrip();
+    }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) {
+        driver.roundTrip();
+        StringBuilder value = new StringBuilder(attributes.getOrDefault("value", ""));
+
+        for (CharSequence keys : keysToSend) {
+            value.append(keys);
+        }
+
+        attributes.put("value", value.toString());
+    }
+
+    @Override
+    public void clear() {
+        driver.roundTrip();
+        attributes.put("value", "");
+    }
+
+    @Override
+    public String getTagName() {
+        driver.roundTrip();
+        return tagName;
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        driver.roundTrip();
+        return attributes.get(name);
+    }
+
+    @Override
+    public String getDomAttribute(String name) {
+        driver.roundTrip();
+        return attributes.get(name);
+    }
+
+    @Override
+    public String getDomProperty(String name) {
+        driver.roundTrip();
+        return attributes.get(name);
+    }
+
+    @Override
+    public boolean isSelected() {
+        driver.roundTrip();
+        return selected;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        driver.roundTrip();
+        return enabled;
+    }
+
+    @Override
+    public String getText() {
+        driver.roundTrip();
+        return displayed ? text : "";
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        driver.roundTrip();
+        List<WebElement> found = new ArrayList<>();
+        String[] w3cLocator = FakeWebDriver.toW3cLocator(by);
+
+        for (FakeWebElement child : children) {
+            if (w3cLocator != null && "tag name".equals(w3cLocator[0]) && child.tagName.equals(w3cLocator[1])) {
+                found.add(child);
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        List<WebElement> found = findElements(by);
+
+        if (found.isEmpty()) {
+            throw new NoSuchElementException(String.format("No child element found for: %s", by));
+        }
+
+        return found.get(0);
+    }
+
+    @Override
+    public boolean isDisplayed() {
+        driver.roundTrip();
+        return displayed;
+    }
+
+    @Override
+    public Point getLocation() {
+        driver.roundTrip();
+        return new Point(10, 10);
+    }
+
+    @Override
+    public Dimension getSize() {
+        driver.roundTrip();
+        return new Dimension(100, 20);
+    }
+
+    @Override
+    public Rectangle getRect() {
+        driver.roundTrip();
+        return new Rectangle(new Point(10, 10), new Dimension(100, 20));
+    }
+
+    @Override
+    public String getCssValue(String propertyName) {
+        driver.roundTrip();
+        return "";
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        driver.roundTrip();
+        return target.convertFromPngBytes(SCREENSHOT);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FakeWebElement<%s>", tagName);
+    }
+}
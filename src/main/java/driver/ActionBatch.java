@@ -0,0 +1,282 @@
+package driver;
+
+import org.openqa.selenium.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records a sequence of element operations and runs them in the browser with a single script execution.<br>
+ * A form step of N operations costs one round trip instead of N lookups plus their commands. The operations
+ * dispatch the DOM events a user interaction would (input, change, click), but no native key or pointer input,
+ * so the single methods of DriverMethods remain the choice when the page relies on real keystrokes.<br>
+ * When an element is missing, the batch waits for it up to the implicit wait and resumes from that operation.
+ *
+ * @author Andras Fuge
+ */
+// the TraceRecorder span of execute is only opened and closed by try-with-resources, never referenced in the body
+@SuppressWarnings("try")
+public final class ActionBatch {
+
+    private static final String BATCH_SCRIPT = DomScripts.FIND_ELEMENTS + DomScripts.IS_VISIBLE + DomScripts.GET_TEXT + DomScripts.GET_ATTRIBUTE
+            + "var ops = arguments[0], results = [];"
+            + "var fire = function (el, type) { el.dispatchEvent(new Event(type, {bubbles: true})); };"
+            + "var setValue = function (el, text) {"
+            + "  var descriptor = Object.getOwnPropertyDescriptor(Object.getPrototypeOf(el), 'value');"
+            + "  if (descriptor && descriptor.set) { descriptor.set.call(el, text); } else { el.value = text; }"
+            + "};"
+            + "var interactable = function (el) { return __sbVisible(el) && !el.disabled; };"
+            + "var select = function (el, match) {"
+            + "  var options = Array.prototype.slice.call(el.options || []);"
+            + "  var option = options.filter(match)[0];"
+            + "  if (!option) { return false; }"
+            + "  option.selected = true; fire(el, 'input'); fire(el, 'change');"
+            + "  return true;"
+            + "};"
+            + "for (var i = 0; i < ops.length; i++) {"
+            + "  var op = ops[i];"
+            + "  var el = op.element || __sbFind(op.using, op.value)[0];"
+            + "  if (!el) { return {failed: i, error: 'missing', results: results}; }"
+            + "  var result = null, ok = true;"
+            + "  switch (op.type) {"
+            + "    case 'CLICK':"
+            + "      if (!(ok = interactable(el))) { break; }"
+            + "      el.scrollIntoView({block: 'center'}); el.click();"
+            + "      break;"
+            + "    case 'SET_TEXT':"
+            + "    case 'CLEAR':"
+            + "      if (!(ok = interactable(el))) { break; }"
+            + "      el.focus(); setValue(el, op.type === 'CLEAR' ? '' : op.arg); fire(el, 'input'); fire(el, 'change');"
+            + "      break;"
+            + "    case 'CHECKBOX':"
+            + "      if (!(ok = interactable(el))) { break; }"
+            + "      if (el.checked !== op.arg) { el.click(); }"
+            + "      break;"
+            + "    case 'SELECT_TEXT':"
+            + "      if (!(ok = interactable(el))) { break; }"
+            + "      if (!select(el, function (o) { return o.text.replace(/\\s+/g, ' ').trim() === op.arg; })) {"
+            + "        return {failed: i, error: 'Cannot locate option with text: ' + op.arg, results: results};"
+            + "      }"
+            + "      break;"
+            + "    case 'SELECT_INDEX':"
+            + "      if (!(ok = interactable(el))) { break; }"
+            + "      if (!select(el, function (o) { return o.index === op.arg; })) {"
+            + "        return {failed: i, error: 'Cannot locate option with index: ' + op.arg, results: results};"
+            + "      }"
+            + "      break;"
+            + "    case 'SELECT_VALUE':"
+            + "      if (!(ok = interactable(el))) { break; }"
+            + "      if (!select(el, function (o) { return o.value === op.arg; })) {"
+            + "        return {failed: i, error: 'Cannot locate option with value: ' + op.arg, results: results};"
+            + "      }"
+            + "      break;"
+            + "    case 'GET_TEXT':"
+            + "      result = __sbVisible(el) ? __sbText(el) : '';"
+            + "      break;"
+            + "    case 'GET_ATTRIBUTE':"
+            + "      result = __sbAttr(el, op.arg);"
+            + "      break;"
+            + "  }"
+            + "  if (!ok) { return {failed: i, error: 'not interactable', results: results}; }"
+            + "  results.push(result);"
+            + "}"
+            + "return {failed: -1, results: results};";
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    ActionBatch() {
+    }
+
+    /**
+     * Clicks on the specified element.
+     *
+     * @param locator By locator of the element to click on
+     * @return this batch
+     */
+    public ActionBatch clickElement(By locator) {
+        return add("CLICK", locator, null);
+    }
+
+    /**
+     * Clears and sets the text of an element.
+     *
+     * @param locator By locator of the element
+     * @param input   the specified text input
+     * @return this batch
+     */
+    public ActionBatch setText(By locator, String input) {
+        return add("SET_TEXT", locator, input);
+    }
+
+    /**
+     * Clears the content of an element.
+     *
+     * @param locator By locator of the element
+     * @return this batch
+     */
+    public ActionBatch clear(By locator) {
+        return add("CLEAR", locator, null);
+    }
+
+    /**
+     * Sets the status of a checkbox.
+     *
+     * @param locator By locator of the element
+     * @param status  status to be set
+     * @return this batch
+     */
+    public ActionBatch setCheckboxStatus(By locator, boolean status) {
+        return add("CHECKBOX", locator, status);
+    }
+
+    /**
+     * Selects an item from the dropdown options by its text.
+     *
+     * @param locator  By locator of the dropdown
+     * @param itemText text of the item to be selected
+     * @return this batch
+     */
+    public ActionBatch selectItemFromDropdown(By locator, String itemText) {
+        return add("SELECT_TEXT", locator, itemText);
+    }
+
+    /**
+     * Selects an item from the dropdown options by its order number.
+     *
+     * @param locator   By locator of the dropdown
+     * @param itemOrder order number of the item to be selected
+     * @return this batch
+     */
+    public ActionBatch selectItemFromDropdown(By locator, int itemOrder) {
+        return add("SELECT_INDEX", locator, itemOrder);
+    }
+
+    /**
+     * Selects an item from the dropdown options by its value.
+     *
+     * @param locator By locator of the dropdown
+     * @param value   value of the item to be selected
+     * @return this batch
+     */
+    public ActionBatch selectValueFromDropdown(By locator, String value) {
+        return add("SELECT_VALUE", locator, value);
+    }
+
+    /**
+     * Reads the text of an element, the text is returned at the operation's position by execute().
+     *
+     * @param locator By locator of the element
+     * @return this batch
+     */
+    public ActionBatch getText(By locator) {
+        return add("GET_TEXT", locator, null);
+    }
+
+    /**
+     * Reads an attribute of an element, the value is returned at the operation's position by execute().
+     *
+     * @param locator   By locator of the element
+     * @param attribute the attribute to be returned
+     * @return this batch
+     */
+    public ActionBatch getAttribute(By locator, String attribute) {
+        return add("GET_ATTRIBUTE", locator, attribute);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Runs the recorded operations in order and stops at the first failing one.
+     *
+     * @return the result of every operation: the value for the read operations, null for the others
+     * @throws NoSuchElementException          when an element does not appear within the implicit wait
+     * @throws ElementNotInteractableException when an element is hidden or disabled
+     * @throws WebDriverException              when an operation can not be performed
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> execute() throws WebDriverException {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "ActionBatch.execute", operations.size())) {
+            List<String> results = new ArrayList<>();
+            int next = 0;
+            int lastMissing = -1;
+
+            while (next < operations.size()) {
+                List<Operation> remaining = operations.subList(next, operations.size());
+                Map<String, Object> outcome = (Map<String, Object>) DriverMethods.executeJavaScript(BATCH_SCRIPT, toScriptArgument(remaining));
+
+                for (Object result : (List<Object>) outcome.get("results")) {
+                    results.add(result == null ? null : String.valueOf(result));
+                }
+
+                int failed = ((Number) outcome.get("failed")).intValue();
+                if (failed < 0) {
+                    break;
+                }
+
+                Operation operation = remaining.get(failed);
+                String error = (String) outcome.get("error");
+                next += failed;
+
+                if ("missing".equals(error)) {
+                    if (next == lastMissing || !DriverMethods.isPresent(operation.locator, Duration.ofSeconds(DriverManager.getImplicitWaitTimeout()))) {
+                        throw new NoSuchElementException(String.format("Batch operation %d (%s) found no element: %s", next, operation.type, operation.locator));
+                    }
+
+                    lastMissing = next;
+                } else if ("not interactable".equals(error)) {
+                    throw new ElementNotInteractableException(String.format("Batch operation %d (%s) element is hidden or disabled: %s", next, operation.type, operation.locator));
+                } else {
+                    throw new WebDriverException(String.format("Batch operation %d (%s) failed on %s: %s", next, operation.type, operation.locator, error));
+                }
+            }
+
+            return Collections.unmodifiableList(results);
+        }
+    }
+
+    private ActionBatch add(String type, By locator, Object argument) {
+        operations.add(new Operation(type, locator, argument));
+        return this;
+    }
+
+    private static List<Map<String, Object>> toScriptArgument(List<Operation> operations) {
+        List<Map<String, Object>> argument = new ArrayList<>();
+
+        for (Operation operation : operations) {
+            Map<String, Object> op = new HashMap<>();
+            String[] w3cLocator = DomScripts.toW3cLocator(operation.locator);
+
+            op.put("type", operation.type);
+            op.put("arg", operation.argument);
+
+            if (w3cLocator != null) {
+                op.put("using", w3cLocator[0]);
+                op.put("value", w3cLocator[1]);
+            } else {
+                op.put("element", DriverManager.getElement(operation.locator));
+            }
+
+            argument.add(op);
+        }
+
+        return argument;
+    }
+
+    private static final class Operation {
+        private final String type;
+        private final By locator;
+        private final Object argument;
+
+        private Operation(String type, By locator, Object argument) {
+            this.type = type;
+            this.locator = locator;
+            this.argument = argument;
+        }
+    }
+}
@@ -1,9 +1,23 @@
 package driver;
 
+import enums.BrowserProfile;
+import enums.NavigationMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.ChromiumOptions;
+import org.openqa.selenium.chromium.HasCdp;
 import org.openqa.selenium.edge.EdgeOptions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -12,6 +26,25 @@ import java.util.Map;
  * @author Andras Fuge
  */
 class BrowserOptions {
+    private static final Logger LOG = LogManager.getLogger(BrowserOptions.class);
+
+    private static final String DISABLE_ANIMATIONS_SCRIPT = ""
+            + "document.addEventListener('DOMContentLoaded', function () {"
+            + "  var style = document.createElement('style');"
+            + "  style.textContent = '*, *::before, *::after { animation: none !important; transition: none !important; "
+            + "scroll-behavior: auto !important; caret-color: transparent !important; }';"
+            + "  document.head.appendChild(style);"
+            + "});";
+
+    private static volatile Dimension windowSize = new Dimension(1920, 1080);
+    private static volatile PageLoadStrategy pageLoadStrategy;
+    private static volatile List<String> blockedUrlPatterns = Collections.unmodifiableList(Arrays.asList(
+            "*google-analytics.com*",
+            "*googletagmanager.com*",
+            "*doubleclick.net*",
+            "*facebook.net*",
+            "*hotjar.com*",
+            "*.woff", "*.woff2", "*.ttf"));
 
     /**
      * Returns default Chrome browser options
@@ -20,15 +53,19 @@ class BrowserOptions {
      * @return ChromeOptions
      */
     static ChromeOptions getDefaultChromeOptions() {
-        ChromeOptions options = new ChromeOptions();
-
-        Map<String, Object> prefs = new HashMap<>();
-        prefs.put("profile.default_content_settings.popus", 1);
+        return getChromeOptions(BrowserProfile.DEFAULT);
+    }
 
-        options.setExperimentalOption("prefs", prefs);
-        options.addArguments("disable-infobars");
-        options.addArguments("start-maximized");
-        options.addArguments("test-type");
+    /**
+     * Returns Chrome browser options for the specified profile
+     * <p>
+     *
+     * @param profile the launch profile
+     * @return ChromeOptions
+     */
+    static ChromeOptions getChromeOptions(BrowserProfile profile) {
+        ChromeOptions options = new ChromeOptions();
+        applyProfile(options, profile);
 
         return options;
     }
@@ -40,16 +77,134 @@ class BrowserOptions {
      * @return EdgeOptions
      */
     static EdgeOptions getDefaultEdgeOptions() {
+        return getEdgeOptions(BrowserProfile.DEFAULT);
+    }
+
+    /**
+     * Returns Edge browser options for the specified profile
+     * <p>
+     *
+     * @param profile the launch profile
+     * @return EdgeOptions
+     */
+    static EdgeOptions getEdgeOptions(BrowserProfile profile) {
         EdgeOptions options = new EdgeOptions();
+        applyProfile(options, profile);
 
+        return options;
+    }
+
+    private static void applyProfile(ChromiumOptions<?> options, BrowserProfile profile) {
         Map<String, Object> prefs = new HashMap<>();
         prefs.put("profile.default_content_settings.popus", 1);
 
+        if (profile.isImagesDisabled()) {
+            prefs.put("profile.managed_default_content_settings.images", 2);
+            options.addArguments("blink-settings=imagesEnabled=false");
+        }
+
         options.setExperimentalOption("prefs", prefs);
         options.addArguments("disable-infobars");
-        options.addArguments("start-maximized");
         options.addArguments("test-type");
 
-        return options;
+        if (profile.isFixedWindowSize()) {
+            options.addArguments(String.format("window-size=%d,%d", windowSize.getWidth(), windowSize.getHeight()));
+        } else {
+            options.addArguments("start-maximized");
+        }
+
+        if (profile.isHeadless()) {
+            options.setHeadless(true);
+        }
+
+        if (profile.isAnimationsDisabled()) {
+            options.addArguments("force-prefers-reduced-motion");
+            options.addArguments("disable-smooth-scrolling");
+        }
+
+        PageLoadStrategy strategy = getPageLoadStrategy(profile);
+        if (strategy != PageLoadStrategy.NORMAL) {
+            options.setPageLoadStrategy(strategy);
+        }
+    }
+
+    /**
+     * Returns the page load strategy a browser of the profile is launched with: the strategy set by
+     * setPageLoadStrategy, otherwise the profile's own.
+     *
+     * @param profile the launch profile
+     * @return the page load strategy
+     */
+    static PageLoadStrategy getPageLoadStrategy(BrowserProfile profile) {
+        PageLoadStrategy strategy = pageLoadStrategy != null ? pageLoadStrategy : profile.getPageLoadStrategy();
+
+        // chromedriver holds the commands after a navigation until the page load strategy is met, so DOMContentLoaded
+        // navigation only pays off in an EAGER session
+        if (strategy == PageLoadStrategy.NORMAL && DriverMethods.getNavigationMode() == NavigationMode.DOM_CONTENT_LOADED) {
+            return PageLoadStrategy.EAGER;
+        }
+
+        return strategy;
+    }
+
+    /**
+     * Applies the parts of the profile which can only be set on a running browser through DevTools:
+     * the URL blocklist and the animation disabling stylesheet.<br>
+     * DevTools commands reach the active window only, so the profile is applied again to every tab opened by openNewTab.<br>
+     * Drivers without DevTools access (e.g. remote drivers) only get the launch options.
+     *
+     * @param driver  the driver, switched to the window to set up
+     * @param profile the launch profile
+     */
+    static void applyRuntimeProfile(WebDriver driver, BrowserProfile profile) {
+        if (!profile.isUrlBlocking() && !profile.isAnimationsDisabled()) {
+            return;
+        }
+
+        if (!(driver instanceof HasCdp)) {
+            LOG.debug("DevTools is not available, {} profile is applied without URL blocking", profile);
+            return;
+        }
+
+        HasCdp cdp = (HasCdp) driver;
+
+        try {
+            if (profile.isUrlBlocking() && !blockedUrlPatterns.isEmpty()) {
+                Map<String, Object> blocked = new HashMap<>();
+                blocked.put("urls", new ArrayList<>(blockedUrlPatterns));
+
+                cdp.executeCdpCommand("Network.enable", new HashMap<>());
+                cdp.executeCdpCommand("Network.setBlockedURLs", blocked);
+            }
+
+            if (profile.isAnimationsDisabled()) {
+                Map<String, Object> script = new HashMap<>();
+                script.put("source", DISABLE_ANIMATIONS_SCRIPT);
+
+                cdp.executeCdpCommand("Page.addScriptToEvaluateOnNewDocument", script);
+            }
+        } catch (WebDriverException e) {
+            LOG.warn(String.format("Could not apply %s profile through DevTools: %s", profile, e.getMessage()));
+        }
+    }
+
+    static Dimension getWindowSize() {
+        return windowSize;
+    }
+
+    static void setWindowSize(Dimension size) {
+        windowSize = size;
+    }
+
+    static void setPageLoadStrategy(PageLoadStrategy strategy) {
+        pageLoadStrategy = strategy;
+    }
+
+    static List<String> getBlockedUrlPatterns() {
+        return blockedUrlPatterns;
+    }
+
+    static void setBlockedUrlPatterns(List<String> patterns) {
+        blockedUrlPatterns = Collections.unmodifiableList(new ArrayList<>(patterns));
     }
 }
@@ -0,0 +1,223 @@
+package driver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks the process tree of every local session and shared driver service and reaps only the trees this framework
+ * launched.<br>
+ * A tree is reaped when its session is quit, when the JVM shuts down and, for trees orphaned by a JVM which died
+ * without shutting down, on the next startup. The processes of the live trees are recorded in a file per JVM under
+ * the temporary directory for that purpose.
+ *
+ * @author Andras Fuge
+ */
+final class BrowserProcesses {
+    private static final Logger LOG = LogManager.getLogger(BrowserProcesses.class);
+
+    private static final Duration QUIT_GRACE = Duration.ofSeconds(3);
+    private static final Path RECORD_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "seleniumbase-processes");
+    private static final String RECORD_SUFFIX = ".pids";
+
+    private static final Map<Object, ProcessTree> TREES = Collections.synchronizedMap(new IdentityHashMap<>());
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
+
+    private BrowserProcesses() {
+    }
+
+    /**
+     * Starts tracking the process tree of a driver service: a session's own service or a shared one.
+     *
+     * @param owner       the driver or the service the tree belongs to
+     * @param servicePort the port of the driver service
+     */
+    static void track(Object owner, int servicePort) {
+        initialize();
+        register(owner, ProcessTree.ofService(servicePort).orElse(null), "driver service process on port " + servicePort);
+    }
+
+    /**
+     * Starts tracking the browser process tree of a session created on a shared driver service.
+     *
+     * @param driver      the created driver
+     * @param servicePort the port of the shared driver service
+     * @param userDataDir the profile directory the browser was launched with
+     */
+    static void trackBrowser(WebDriver driver, int servicePort, String userDataDir) {
+        if (userDataDir == null) {
+            return;
+        }
+
+        initialize();
+        register(driver, ProcessTree.ofBrowser(servicePort, userDataDir).orElse(null), "browser process using " + userDataDir);
+    }
+
+    private static void register(Object owner, ProcessTree tree, String description) {
+        if (tree == null) {
+            LOG.debug("No {} found, it is not tracked", description);
+            return;
+        }
+
+        TREES.put(owner, tree);
+        writeRecord();
+    }
+
+    /**
+     * Quits a session or stops a service and kills whatever is left of its process tree after a grace period.
+     *
+     * @param owner the undecorated driver or the service the tree is tracked for
+     * @param quit  the action quitting the session or stopping the service
+     */
+    static void quit(Object owner, Runnable quit) {
+        ProcessTree tree = TREES.remove(owner);
+
+        if (tree == null) {
+            quit.run();
+            return;
+        }
+
+        try {
+            int killed = tree.reap(quit, QUIT_GRACE);
+            if (killed > 0) {
+                LOG.warn(String.format("Killed %d browser processes left behind on quit", killed));
+            }
+        } finally {
+            writeRecord();
+        }
+    }
+
+    /**
+     * Returns the summed resident memory of a session's process tree.
+     *
+     * @param driver the undecorated driver
+     * @return the resident set size in bytes, -1 when the session is not tracked or the platform does not expose it
+     */
+    static long getResidentSetSize(WebDriver driver) {
+        ProcessTree tree = TREES.get(driver);
+        return tree == null ? -1 : tree.getResidentSetSize();
+    }
+
+    /**
+     * Returns the number of processes in a session's tree.
+     *
+     * @param driver the undecorated driver
+     * @return the process count, zero when the session is not tracked
+     */
+    static int getProcessCount(WebDriver driver) {
+        ProcessTree tree = TREES.get(driver);
+        return tree == null ? 0 : tree.size();
+    }
+
+    /**
+     * Kills the process trees recorded by JVMs which are not running any more.
+     *
+     * @return the number of reaped trees
+     */
+    static int reapOrphans() {
+        if (!Files.isDirectory(RECORD_DIRECTORY)) {
+            return 0;
+        }
+
+        int reaped = 0;
+        long currentPid = ProcessTree.currentPid();
+
+        try (DirectoryStream<Path> records = Files.newDirectoryStream(RECORD_DIRECTORY, "*" + RECORD_SUFFIX)) {
+            for (Path record : records) {
+                String name = record.getFileName().toString();
+                long ownerPid = Long.parseLong(name.substring(0, name.length() - RECORD_SUFFIX.length()));
+
+                if (ownerPid == currentPid || ProcessTree.isAlive(ownerPid)) {
+                    continue;
+                }
+
+                for (String line : Files.readAllLines(record, StandardCharsets.UTF_8)) {
+                    String[] fields = line.trim().split(" ");
+                    if (fields.length != 2) {
+                        continue;
+                    }
+
+                    ProcessTree tree = ProcessTree.ofRecord(Long.parseLong(fields[0]), Long.parseLong(fields[1])).orElse(null);
+                    if (tree != null) {
+                        tree.reap(() -> {
+                        }, Duration.ZERO);
+                        reaped++;
+                    }
+                }
+
+                Files.deleteIfExists(record);
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn(String.format("Could not reap orphaned browser processes: %s", e.getMessage()));
+        }
+
+        if (reaped > 0) {
+            LOG.info("Reaped {} browser process trees orphaned by earlier runs", reaped);
+        }
+
+        return reaped;
+    }
+
+    private static void initialize() {
+        if (!INITIALIZED.compareAndSet(false, true)) {
+            return;
+        }
+
+        reapOrphans();
+        Runtime.getRuntime().addShutdownHook(new Thread(BrowserProcesses::reapAll, "browser-process-reaper"));
+    }
+
+    private static void reapAll() {
+        List<ProcessTree> trees;
+        synchronized (TREES) {
+            trees = new ArrayList<>(TREES.values());
+            TREES.clear();
+        }
+
+        for (ProcessTree tree : trees) {
+            tree.reap(() -> {
+            }, Duration.ZERO);
+        }
+
+        writeRecord();
+    }
+
+    /**
+     * Records the processes of the live trees of this JVM, so the next startup can reap them if this JVM dies.
+     */
+    private static synchronized void writeRecord() {
+        Path record = RECORD_DIRECTORY.resolve(ProcessTree.currentPid() + RECORD_SUFFIX);
+        List<String> lines = new ArrayList<>();
+
+        synchronized (TREES) {
+            for (ProcessTree tree : TREES.values()) {
+                lines.addAll(tree.toRecords());
+            }
+        }
+
+        try {
+            if (lines.isEmpty()) {
+                Files.deleteIfExists(record);
+            } else {
+                Files.createDirectories(RECORD_DIRECTORY);
+                Files.write(record, lines, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not record the browser processes: {}", e.getMessage());
+        }
+    }
+}
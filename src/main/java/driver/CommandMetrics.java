@@ -0,0 +1,161 @@
+package driver;
+
+import enums.CommandType;
+import utils.LatencyHistogram;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process store of the command latency metrics of the test run.<br>
+ * Commands are recorded by the MetricsListener, waits by DriverWaits and stale element retries by DriverManager.
+ * The recorders are lock-free, so the metrics can stay on during every run.
+ *
+ * @author Andras Fuge
+ */
+public final class CommandMetrics {
+    private static final Map<CommandType, LatencyHistogram> HISTOGRAMS = new EnumMap<>(CommandType.class);
+    private static final LongAdder STALE_RETRIES = new LongAdder();
+    private static volatile boolean enabled = true;
+
+    static {
+        for (CommandType type : CommandType.values()) {
+            HISTOGRAMS.put(type, new LatencyHistogram());
+        }
+    }
+
+    private CommandMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean status) {
+        enabled = status;
+    }
+
+    /**
+     * Records the duration of one command.
+     *
+     * @param type  the category of the command
+     * @param nanos the duration in nanoseconds
+     */
+    public static void record(CommandType type, long nanos) {
+        if (enabled) {
+            HISTOGRAMS.get(type).record(nanos);
+        }
+    }
+
+    /**
+     * Returns the start timestamp of a measurement, or 0 when neither the metrics nor the TraceRecorder are on.<br>
+     * Also opens a section of the calling thread's TimeBreakdown, which stop closes.
+     *
+     * @return the current nano time
+     */
+    static long start() {
+        TimeBreakdown.enter();
+        return enabled || TraceRecorder.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since a timestamp returned by start(), also as a span of the TraceRecorder.
+     *
+     * @param type  the category of the measurement
+     * @param start the start timestamp
+     */
+    static void stop(CommandType type, long start) {
+        TimeBreakdown.exit(type, true);
+
+        if (start != 0) {
+            long nanos = System.nanoTime() - start;
+
+            if (enabled) {
+                HISTOGRAMS.get(type).record(nanos);
+            }
+            TraceRecorder.record("wait", type.name(), null, start, nanos);
+        }
+    }
+
+    static void staleRetry() {
+        if (enabled) {
+            STALE_RETRIES.increment();
+        }
+    }
+
+    public static LatencyHistogram getHistogram(CommandType type) {
+        return HISTOGRAMS.get(type);
+    }
+
+    public static long getStaleRetries() {
+        return STALE_RETRIES.sum();
+    }
+
+    /**
+     * Clears all recorded metrics.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+
+        STALE_RETRIES.reset();
+    }
+
+    /**
+     * Writes the metrics as a JSON document.
+     *
+     * @param file the target file
+     * @throws IOException when the file cannot be written
+     */
+    public static void writeJson(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"staleRetries\": " + getStaleRetries() + ",\n  \"commands\": {");
+
+            String separator = "\n";
+            for (CommandType type : CommandType.values()) {
+                LatencyHistogram histogram = HISTOGRAMS.get(type);
+
+                writer.write(separator);
+                writer.write(String.format(Locale.ROOT,
+                        "    \"%s\": {\"count\": %d, \"totalMs\": %.3f, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}",
+                        type, histogram.getCount(), histogram.getTotalMillis(), histogram.getMeanMillis(),
+                        histogram.getPercentileMillis(50), histogram.getPercentileMillis(90),
+                        histogram.getPercentileMillis(99), histogram.getMaxMillis()));
+                separator = ",\n";
+            }
+
+            writer.write("\n  }\n}\n");
+        }
+    }
+
+    /**
+     * Writes the metrics as a CSV table, one row per command category.
+     *
+     * @param file the target file
+     * @throws IOException when the file cannot be written
+     */
+    public static void writeCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("command,count,totalMs,meanMs,p50Ms,p90Ms,p99Ms,maxMs\n");
+
+            for (CommandType type : CommandType.values()) {
+                LatencyHistogram histogram = HISTOGRAMS.get(type);
+
+                writer.write(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                        type, histogram.getCount(), histogram.getTotalMillis(), histogram.getMeanMillis(),
+                        histogram.getPercentileMillis(50), histogram.getPercentileMillis(90),
+                        histogram.getPercentileMillis(99), histogram.getMaxMillis()));
+            }
+
+            writer.write(String.format("STALE_RETRIES,%d,,,,,,%n", getStaleRetries()));
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package driver;
+
+import enums.CommandType;
+import enums.WaitCondition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static driver.DriverManager.getDriver;
+import static driver.DriverManager.getImplicitWaitTimeout;
+
+/**
+ * Waits for several conditions at once with one shared timeout budget.<br>
+ * The branches are evaluated together: when every branch has a W3C locator, a single asynchronous script re-checks all
+ * of them on every DOM mutation, so the whole wait costs one command. Otherwise each tick runs one script for the
+ * locator branches and evaluates the remaining ones with the driver, with an adaptive backoff between the ticks.<br>
+ * Usage: DriverWaits.composite().invisible(spinner).visible(table).clickable(button).allOf()
+ *
+ * @author Andras Fuge
+ */
+public final class CompositeWait {
+    private static final Logger LOG = LogManager.getLogger(CompositeWait.class);
+
+    private static final long MIN_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 500;
+
+    private static final String EVALUATE = ""
+            + "var __sbEvaluate = function (branches, mode) {"
+            + "  var states = [];"
+            + "  for (var i = 0; i < branches.length; i++) {"
+            + "    var b = branches[i], met = __sbCheck(b[0], b[1], b[2], b[3], b[4]);"
+            + "    states.push(met);"
+            + "    if (met && mode === 'FIRST_OF') { break; }"
+            + "  }"
+            + "  return states;"
+            + "};"
+            + "var __sbSatisfied = function (states, count, mode) {"
+            + "  var met = states.filter(function (s) { return s; }).length;"
+            + "  return mode === 'ALL_OF' ? met === count : met > 0;"
+            + "};";
+
+    private static final String POLL_SCRIPT = DomScripts.FIND_ELEMENTS + DomScripts.IS_VISIBLE + DomScripts.GET_ATTRIBUTE
+            + DomScripts.CHECK_CONDITION + EVALUATE
+            + "return __sbEvaluate(arguments[0], arguments[1]);";
+
+    private static final String OBSERVE_SCRIPT = DomScripts.FIND_ELEMENTS + DomScripts.IS_VISIBLE + DomScripts.GET_ATTRIBUTE
+            + DomScripts.CHECK_CONDITION + DomScripts.OBSERVE + EVALUATE
+            + "var done = arguments[arguments.length - 1];"
+            + "var branches = arguments[0], mode = arguments[1], states = [];"
+            + "__sbObserve(function () {"
+            + "  states = __sbEvaluate(branches, mode);"
+            + "  return __sbSatisfied(states, branches.length, mode);"
+            + "}, arguments[2], function (result) { done(result && result.error ? result : states); });";
+
+    private enum Mode {
+        ANY_OF, ALL_OF, FIRST_OF
+    }
+
+    private final List<Branch> branches = new ArrayList<>();
+
+    CompositeWait() {
+    }
+
+    /**
+     * Adds a branch met when the element is visible.
+     *
+     * @param locator By locator of the element
+     * @return this wait
+     */
+    public CompositeWait visible(By locator) {
+        return add(WaitCondition.VISIBLE, locator, null, null);
+    }
+
+    /**
+     * Adds a branch met when the element is missing or hidden.
+     *
+     * @param locator By locator of the element
+     * @return this wait
+     */
+    public CompositeWait invisible(By locator) {
+        return add(WaitCondition.INVISIBLE, locator, null, null);
+    }
+
+    /**
+     * Adds a branch met when the element is visible and enabled.
+     *
+     * @param locator By locator of the element
+     * @return this wait
+     */
+    public CompositeWait clickable(By locator) {
+        return add(WaitCondition.CLICKABLE, locator, null, null);
+    }
+
+    /**
+     * Adds a branch met when the attribute of the element contains the value.
+     *
+     * @param locator   By locator of the element
+     * @param attribute the queried attribute's name
+     * @param value     the queried attribute's value
+     * @return this wait
+     */
+    public CompositeWait attributeContains(By locator, String attribute, String value) {
+        return add(WaitCondition.ATTRIBUTE_CONTAINS, locator, attribute, value);
+    }
+
+    /**
+     * Adds a branch met when the attribute of the element does not contain the value.
+     *
+     * @param locator   By locator of the element
+     * @param attribute the queried attribute's name
+     * @param value     the queried attribute's value
+     * @return this wait
+     */
+    public CompositeWait attributeNotContains(By locator, String attribute, String value) {
+        return add(WaitCondition.ATTRIBUTE_NOT_CONTAINS, locator, attribute, value);
+    }
+
+    /**
+     * Adds a branch met when the ExpectedCondition returns a value other than null or false.<br>
+     * Such a branch is evaluated by the driver, so the wait polls instead of observing the page.
+     *
+     * @param description the name of the branch in the result and in the timeout message
+     * @param condition   the ExpectedCondition
+     * @return this wait
+     */
+    public CompositeWait condition(String description, ExpectedCondition<?> condition) {
+        branches.add(new Branch(description, null, null, null, null, condition));
+        return this;
+    }
+
+    private CompositeWait add(WaitCondition condition, By locator, String attribute, String value) {
+        String description = attribute == null
+                ? String.format("%s %s", condition, locator)
+                : String.format("%s %s %s '%s'", condition, locator, attribute, value);
+
+        branches.add(new Branch(description, condition, DomScripts.toW3cLocator(locator), attribute, value,
+                ObserverWait.toExpectedCondition(condition, locator, attribute, value)));
+        return this;
+    }
+
+    public int size() {
+        return branches.size();
+    }
+
+    /**
+     * Waits up to the implicit wait timeout until any branch is met.
+     *
+     * @return the result listing every branch met at that moment
+     * @throws TimeoutException when no branch is met within the timeout
+     */
+    public Result anyOf() throws TimeoutException {
+        return anyOf(getImplicitWaitTimeout());
+    }
+
+    /**
+     * Waits until any branch is met.
+     *
+     * @param timeout the timeout duration in seconds
+     * @return the result listing every branch met at that moment
+     * @throws TimeoutException when no branch is met within the timeout
+     */
+    public Result anyOf(long timeout) throws TimeoutException {
+        return await(Mode.ANY_OF, timeout);
+    }
+
+    /**
+     * Waits up to the implicit wait timeout until every branch is met at the same time.
+     *
+     * @return the result
+     * @throws TimeoutException when the branches are not met together within the timeout
+     */
+    public Result allOf() throws TimeoutException {
+        return allOf(getImplicitWaitTimeout());
+    }
+
+    /**
+     * Waits until every branch is met at the same time.
+     *
+     * @param timeout the timeout duration in seconds
+     * @return the result
+     * @throws TimeoutException when the branches are not met together within the timeout, the message lists the
+     *                          branches which were not met
+     */
+    public Result allOf(long timeout) throws TimeoutException {
+        return await(Mode.ALL_OF, timeout);
+    }
+
+    /**
+     * Waits up to the implicit wait timeout until a branch is met, see firstOf(long).
+     *
+     * @return the result with the winning branch only
+     * @throws TimeoutException when no branch is met within the timeout
+     */
+    public Result firstOf() throws TimeoutException {
+        return firstOf(getImplicitWaitTimeout());
+    }
+
+    /**
+     * Waits until a branch is met. The branches are checked in the order they were added and the checking stops at
+     * the first met one, so the earlier branches take priority and the later ones cost nothing once one is met.
+     *
+     * @param timeout the timeout duration in seconds
+     * @return the result with the winning branch only
+     * @throws TimeoutException when no branch is met within the timeout
+     */
+    public Result firstOf(long timeout) throws TimeoutException {
+        return await(Mode.FIRST_OF, timeout);
+    }
+
+    private Result await(Mode mode, long timeout) throws TimeoutException {
+        if (branches.isEmpty()) {
+            throw new IllegalStateException("The composite wait has no branches");
+        }
+
+        long start = CommandMetrics.start();
+        long begin = System.nanoTime();
+        long deadline = begin + Duration.ofSeconds(timeout).toNanos();
+
+        try {
+            boolean[] states = null;
+
+            if (isObservable()) {
+                try {
+                    states = toStates(ObserverWait.executeAsync(OBSERVE_SCRIPT, Duration.ofSeconds(timeout),
+                            toScriptArgument(branches), mode.name(), Duration.ofSeconds(timeout).toMillis()));
+                } catch (TimeoutException | InvalidSelectorException e) {
+                    throw e;
+                } catch (WebDriverException e) {
+                    LOG.debug("Observer wait is not available, falling back to polling: {}", e.getMessage());
+                }
+            }
+
+            if (states == null) {
+                states = poll(mode, deadline);
+            }
+
+            if (!isSatisfied(mode, states)) {
+                throw timeoutException(mode, states, timeout);
+            }
+
+            return new Result(describe(), states, Duration.ofNanos(System.nanoTime() - begin));
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
+    }
+
+    private boolean isObservable() {
+        if (!DriverWaits.isObserverWaits() || !(getDriver() instanceof JavascriptExecutor)) {
+            return false;
+        }
+
+        for (Branch branch : branches) {
+            if (branch.w3cLocator == null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Evaluates every branch each tick until the mode is satisfied or the deadline passes.
+     */
+    private boolean[] poll(Mode mode, long deadline) {
+        List<Branch> scriptBranches = new ArrayList<>();
+        for (Branch branch : branches) {
+            if (branch.w3cLocator != null) {
+                scriptBranches.add(branch);
+            }
+        }
+
+        boolean useScript = !scriptBranches.isEmpty() && getDriver() instanceof JavascriptExecutor;
+        long interval = MIN_POLL_MILLIS;
+
+        while (true) {
+            boolean[] scriptStates = null;
+
+            if (useScript) {
+                try {
+                    scriptStates = toStates(((JavascriptExecutor) getDriver()).executeScript(POLL_SCRIPT,
+                            toScriptArgument(scriptBranches), Mode.ALL_OF.name()));
+                } catch (WebDriverException e) {
+                    LOG.debug("Script evaluation failed, evaluating the branches with the driver: {}", e.getMessage());
+                    useScript = false;
+                }
+            }
+
+            boolean[] states = evaluate(mode, scriptStates);
+            if (isSatisfied(mode, states)) {
+                return states;
+            }
+
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                return states;
+            }
+
+            try {
+                Thread.sleep(Math.min(interval, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting", e);
+            }
+
+            interval = Math.min(interval * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Combines the script results with the branches evaluated by the driver, in the order of the branches.
+     */
+    private boolean[] evaluate(Mode mode, boolean[] scriptStates) {
+        boolean[] states = new boolean[branches.size()];
+        boolean anyMet = false;
+        int scriptIndex = 0;
+
+        for (int i = 0; i < branches.size(); i++) {
+            Branch branch = branches.get(i);
+
+            if (mode == Mode.FIRST_OF && anyMet) {
+                break;
+            }
+
+            if (scriptStates != null && branch.w3cLocator != null) {
+                states[i] = scriptIndex < scriptStates.length && scriptStates[scriptIndex];
+                scriptIndex++;
+            } else {
+                states[i] = DriverManager.withoutImplicitWait(() -> ObserverWait.isMet(branch.expectedCondition));
+            }
+
+            anyMet |= states[i];
+        }
+
+        return states;
+    }
+
+    private static boolean isSatisfied(Mode mode, boolean[] states) {
+        int met = 0;
+        for (boolean state : states) {
+            met += state ? 1 : 0;
+        }
+
+        return mode == Mode.ALL_OF ? met == states.length : met > 0;
+    }
+
+    /**
+     * Converts the state array returned by a script to the states of the branches, missing entries are not met.
+     */
+    private boolean[] toStates(Object result) {
+        boolean[] states = new boolean[branches.size()];
+
+        if (result instanceof List) {
+            List<?> list = (List<?>) result;
+            for (int i = 0; i < list.size() && i < states.length; i++) {
+                states[i] = Boolean.TRUE.equals(list.get(i));
+            }
+        }
+
+        return states;
+    }
+
+    private static List<List<Object>> toScriptArgument(List<Branch> branches) {
+        List<List<Object>> argument = new ArrayList<>();
+
+        for (Branch branch : branches) {
+            argument.add(Arrays.asList(branch.condition.name(), branch.w3cLocator[0], branch.w3cLocator[1],
+                    branch.attribute, branch.value));
+        }
+
+        return argument;
+    }
+
+    private List<String> describe() {
+        List<String> descriptions = new ArrayList<>();
+        for (Branch branch : branches) {
+            descriptions.add(branch.description);
+        }
+
+        return descriptions;
+    }
+
+    private TimeoutException timeoutException(Mode mode, boolean[] states, long timeout) {
+        List<String> unmet = new ArrayList<>();
+        for (int i = 0; i < states.length; i++) {
+            if (!states[i]) {
+                unmet.add(branches.get(i).description);
+            }
+        }
+
+        String errorMessage = String.format("Composite condition %s was not met within %d seconds, unmet branches: %s",
+                mode, timeout, unmet);
+        LOG.error(errorMessage);
+        return new TimeoutException(errorMessage);
+    }
+
+    private static final class Branch {
+        private final String description;
+        private final WaitCondition condition;
+        private final String[] w3cLocator;
+        private final String attribute;
+        private final String value;
+        private final ExpectedCondition<?> expectedCondition;
+
+        private Branch(String description, WaitCondition condition, String[] w3cLocator, String attribute, String value,
+                       ExpectedCondition<?> expectedCondition) {
+            this.description = description;
+            this.condition = condition;
+            this.w3cLocator = w3cLocator;
+            this.attribute = attribute;
+            this.value = value;
+            this.expectedCondition = expectedCondition;
+        }
+    }
+
+    /**
+     * Outcome of a composite wait: the branches met when the wait returned and the time it took.
+     */
+    public static final class Result {
+        private final List<String> descriptions;
+        private final boolean[] states;
+        private final Duration elapsed;
+
+        private Result(List<String> descriptions, boolean[] states, Duration elapsed) {
+            this.descriptions = Collections.unmodifiableList(descriptions);
+            this.states = states;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * Returns the first met branch in the order the branches were added.
+         *
+         * @return the index of the winning branch
+         */
+        public int getWinner() {
+            for (int i = 0; i < states.length; i++) {
+                if (states[i]) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Returns the description of the winning branch, e.g. "VISIBLE By.id: table".
+         *
+         * @return the description of the first met branch
+         */
+        public String getWinnerDescription() {
+            int winner = getWinner();
+            return winner < 0 ? null : descriptions.get(winner);
+        }
+
+        public boolean isMet(int branch) {
+            return states[branch];
+        }
+
+        /**
+         * Returns the indexes of the branches met when the wait returned.
+         *
+         * @return the met branch indexes in ascending order
+         */
+        public List<Integer> getMetBranches() {
+            List<Integer> met = new ArrayList<>();
+            for (int i = 0; i < states.length; i++) {
+                if (states[i]) {
+                    met.add(i);
+                }
+            }
+
+            return met;
+        }
+
+        public List<String> getDescriptions() {
+            return descriptions;
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("met %s of %s in %d ms", getMetBranches(), descriptions, elapsed.toMillis());
+        }
+    }
+}
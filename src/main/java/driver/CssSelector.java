@@ -0,0 +1,450 @@
+package driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Matches the elements of a DomSnapshot against a CSS selector.<br>
+ * Supports selector groups, type, universal, id, class and attribute selectors (=, ~=, |=, ^=, $=, *= and the i flag),
+ * the descendant, child, next sibling and subsequent sibling combinators and the :first-child, :last-child,
+ * :only-child, :nth-child(), :nth-last-child(), :not(), :checked, :enabled and :disabled pseudo-classes. Anything else
+ * is left to the browser.
+ *
+ * @author Andras Fuge
+ */
+final class CssSelector {
+    private final List<Complex> complexes;
+
+    private CssSelector(List<Complex> complexes) {
+        this.complexes = complexes;
+    }
+
+    /**
+     * Parses the selector.
+     *
+     * @param selector the CSS selector
+     * @return the parsed selector, null when it uses a syntax which is not supported
+     */
+    static CssSelector parse(String selector) {
+        try {
+            Parser parser = new Parser(selector);
+            List<Complex> complexes = parser.selectorList();
+            if (!parser.atEnd()) {
+                return null;
+            }
+            return new CssSelector(complexes);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether the element matches any selector of the group.
+     *
+     * @param node the element
+     * @return true when the element matches
+     */
+    boolean matches(DomSnapshot.Node node) {
+        for (Complex complex : complexes) {
+            if (complex.matches(node, complex.compounds.size() - 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compound selectors from left to right, with the combinator before each of them.
+     */
+    private static final class Complex {
+        private final List<Predicate<DomSnapshot.Node>> compounds = new ArrayList<>();
+        private final List<Character> combinators = new ArrayList<>();
+
+        private boolean matches(DomSnapshot.Node node, int index) {
+            if (!compounds.get(index).test(node)) {
+                return false;
+            }
+            if (index == 0) {
+                return true;
+            }
+
+            switch (combinators.get(index)) {
+                case '>':
+                    return node.getParent() != null && matches(node.getParent(), index - 1);
+                case '+':
+                    DomSnapshot.Node previous = node.getPreviousElement();
+                    return previous != null && matches(previous, index - 1);
+                case '~':
+                    for (DomSnapshot.Node sibling = node.getPreviousElement(); sibling != null; sibling = sibling.getPreviousElement()) {
+                        if (matches(sibling, index - 1)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    for (DomSnapshot.Node ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                        if (matches(ancestor, index - 1)) {
+                            return true;
+                        }
+                    }
+                    return false;
+            }
+        }
+    }
+
+    private static final class Parser {
+        private final String input;
+        private int position = 0;
+
+        private Parser(String input) {
+            this.input = input;
+        }
+
+        private boolean atEnd() {
+            skipWhitespace();
+            return position >= input.length();
+        }
+
+        private List<Complex> selectorList() {
+            List<Complex> complexes = new ArrayList<>();
+            complexes.add(complex());
+
+            while (consume(',')) {
+                complexes.add(complex());
+            }
+
+            return complexes;
+        }
+
+        private Complex complex() {
+            Complex complex = new Complex();
+            skipWhitespace();
+            complex.combinators.add(' ');
+            complex.compounds.add(compound());
+
+            while (true) {
+                boolean whitespace = skipWhitespace();
+                if (position >= input.length() || peek() == ',' || peek() == ')') {
+                    return complex;
+                }
+
+                char combinator = peek();
+                if (combinator == '>' || combinator == '+' || combinator == '~') {
+                    position++;
+                    skipWhitespace();
+                } else if (whitespace) {
+                    combinator = ' ';
+                } else {
+                    throw new IllegalArgumentException("Unexpected character at " + position);
+                }
+
+                complex.combinators.add(combinator);
+                complex.compounds.add(compound());
+            }
+        }
+
+        private Predicate<DomSnapshot.Node> compound() {
+            List<Predicate<DomSnapshot.Node>> parts = new ArrayList<>();
+            boolean universal = position < input.length() && peek() == '*';
+
+            if (universal) {
+                position++;
+            } else if (position < input.length() && isNameChar(peek())) {
+                String tag = identifier().toLowerCase(Locale.ROOT);
+                parts.add(node -> tag.equals(node.getTagName()));
+            }
+
+            while (position < input.length()) {
+                char c = peek();
+                if (c == '#') {
+                    position++;
+                    String id = identifier();
+                    parts.add(node -> id.equals(node.getAttribute("id")));
+                } else if (c == '.') {
+                    position++;
+                    String className = identifier();
+                    parts.add(node -> node.hasClass(className));
+                } else if (c == '[') {
+                    position++;
+                    parts.add(attribute());
+                } else if (c == ':') {
+                    position++;
+                    parts.add(pseudoClass());
+                } else {
+                    break;
+                }
+            }
+
+            if (parts.isEmpty() && !universal) {
+                throw new IllegalArgumentException("Empty compound selector at " + position);
+            }
+
+            return node -> {
+                for (Predicate<DomSnapshot.Node> part : parts) {
+                    if (!part.test(node)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        private Predicate<DomSnapshot.Node> attribute() {
+            skipWhitespace();
+            String name = identifier().toLowerCase(Locale.ROOT);
+            skipWhitespace();
+
+            if (consume(']')) {
+                return node -> node.hasAttribute(name);
+            }
+
+            String operator;
+            if (consume('=')) {
+                operator = "=";
+            } else {
+                operator = String.valueOf(next());
+                if ("~|^$*".indexOf(operator.charAt(0)) < 0 || !consume('=')) {
+                    throw new IllegalArgumentException("Unsupported attribute operator at " + position);
+                }
+            }
+
+            skipWhitespace();
+            String value = peek() == '"' || peek() == '\'' ? string() : identifier();
+            skipWhitespace();
+
+            boolean ignoreCase = false;
+            if (position < input.length() && (peek() == 'i' || peek() == 'I' || peek() == 's' || peek() == 'S')) {
+                ignoreCase = Character.toLowerCase(next()) == 'i';
+                skipWhitespace();
+            }
+            if (!consume(']')) {
+                throw new IllegalArgumentException("Unclosed attribute selector at " + position);
+            }
+
+            String expected = ignoreCase ? value.toLowerCase(Locale.ROOT) : value;
+            boolean lowerCase = ignoreCase;
+
+            return node -> {
+                String actual = node.getAttribute(name);
+                if (actual == null) {
+                    return false;
+                }
+                if (lowerCase) {
+                    actual = actual.toLowerCase(Locale.ROOT);
+                }
+
+                switch (operator) {
+                    case "=":
+                        return actual.equals(expected);
+                    case "~":
+                        for (String token : actual.trim().split("\\s+")) {
+                            if (!expected.isEmpty() && token.equals(expected)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    case "|":
+                        return actual.equals(expected) || actual.startsWith(expected + "-");
+                    case "^":
+                        return !expected.isEmpty() && actual.startsWith(expected);
+                    case "$":
+                        return !expected.isEmpty() && actual.endsWith(expected);
+                    default:
+                        return !expected.isEmpty() && actual.contains(expected);
+                }
+            };
+        }
+
+        private Predicate<DomSnapshot.Node> pseudoClass() {
+            String name = identifier().toLowerCase(Locale.ROOT);
+
+            switch (name) {
+                case "first-child":
+                    return node -> node.getParent() != null && node.getElementIndex() == 0;
+                case "last-child":
+                    return node -> node.getParent() != null
+                            && node.getElementIndex() == node.getParent().getElementChildren().size() - 1;
+                case "only-child":
+                    return node -> node.getParent() != null && node.getParent().getElementChildren().size() == 1;
+                case "checked":
+                    return node -> node.is(DomSnapshot.SELECTED);
+                case "enabled":
+                    return node -> node.is(DomSnapshot.ENABLED);
+                case "disabled":
+                    return node -> !node.is(DomSnapshot.ENABLED);
+                case "nth-child":
+                case "nth-last-child":
+                    int[] formula = nth(argument());
+                    boolean fromEnd = "nth-last-child".equals(name);
+                    return node -> {
+                        if (node.getParent() == null) {
+                            return false;
+                        }
+                        int index = fromEnd
+                                ? node.getParent().getElementChildren().size() - node.getElementIndex()
+                                : node.getElementIndex() + 1;
+                        int offset = index - formula[1];
+                        return formula[0] == 0 ? offset == 0 : offset / formula[0] >= 0 && offset % formula[0] == 0;
+                    };
+                case "not":
+                    if (!consume('(')) {
+                        throw new IllegalArgumentException("Missing argument of :not at " + position);
+                    }
+                    List<Complex> negated = selectorList();
+                    skipWhitespace();
+                    if (!consume(')')) {
+                        throw new IllegalArgumentException("Unclosed :not at " + position);
+                    }
+                    CssSelector selector = new CssSelector(negated);
+                    return node -> !selector.matches(node);
+                default:
+                    throw new IllegalArgumentException("Unsupported pseudo-class :" + name);
+            }
+        }
+
+        private String argument() {
+            if (!consume('(')) {
+                throw new IllegalArgumentException("Missing argument at " + position);
+            }
+
+            int end = input.indexOf(')', position);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed argument at " + position);
+            }
+
+            String argument = input.substring(position, end);
+            position = end + 1;
+
+            return argument.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Parses an+b into {a, b}.
+         */
+        private static int[] nth(String formula) {
+            if ("odd".equals(formula)) {
+                return new int[]{2, 1};
+            }
+            if ("even".equals(formula)) {
+                return new int[]{2, 0};
+            }
+
+            try {
+                int n = formula.indexOf('n');
+                if (n < 0) {
+                    return new int[]{0, Integer.parseInt(formula)};
+                }
+
+                String a = formula.substring(0, n);
+                String b = formula.substring(n + 1);
+                int step = a.isEmpty() || "+".equals(a) ? 1 : "-".equals(a) ? -1 : Integer.parseInt(a);
+
+                return new int[]{step, b.isEmpty() ? 0 : Integer.parseInt(b.startsWith("+") ? b.substring(1) : b)};
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unsupported nth formula: " + formula, e);
+            }
+        }
+
+        private String identifier() {
+            StringBuilder builder = new StringBuilder();
+
+            while (position < input.length()) {
+                char c = peek();
+                if (c == '\\') {
+                    position++;
+                    builder.append(escape());
+                } else if (isNameChar(c)) {
+                    builder.append(c);
+                    position++;
+                } else {
+                    break;
+                }
+            }
+
+            if (builder.length() == 0) {
+                throw new IllegalArgumentException("Identifier expected at " + position);
+            }
+
+            return builder.toString();
+        }
+
+        private String string() {
+            char quote = next();
+            StringBuilder builder = new StringBuilder();
+
+            while (position < input.length()) {
+                char c = next();
+                if (c == quote) {
+                    return builder.toString();
+                }
+                builder.append(c == '\\' ? escape() : String.valueOf(c));
+            }
+
+            throw new IllegalArgumentException("Unclosed string");
+        }
+
+        /**
+         * Reads an escape sequence after the backslash: up to 6 hex digits with an optional whitespace, or a
+         * single character.
+         */
+        private String escape() {
+            if (position >= input.length()) {
+                throw new IllegalArgumentException("Unfinished escape");
+            }
+
+            int start = position;
+            while (position < input.length() && position - start < 6 && Character.digit(peek(), 16) >= 0) {
+                position++;
+            }
+
+            if (position == start) {
+                return String.valueOf(next());
+            }
+
+            int codePoint = Integer.parseInt(input.substring(start, position), 16);
+            if (position < input.length() && Character.isWhitespace(peek())) {
+                position++;
+            }
+
+            return codePoint == 0 || codePoint > Character.MAX_CODE_POINT
+                    ? "\uFFFD" : new String(Character.toChars(codePoint));
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c >= 0x80;
+        }
+
+        private boolean skipWhitespace() {
+            int start = position;
+            while (position < input.length() && Character.isWhitespace(peek())) {
+                position++;
+            }
+            return position > start;
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (position < input.length() && peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            if (position >= input.length()) {
+                throw new IllegalArgumentException("Unexpected end of selector");
+            }
+            return input.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+    }
+}
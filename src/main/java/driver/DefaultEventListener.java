@@ -2,169 +2,221 @@ package driver;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Alert;
 import org.openqa.selenium.By;
-import org.openqa.selenium.OutputType;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.events.WebDriverEventListener;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
 
 
 /**
  * Responsible for handling event listeners occured during test run.<br>
- * Possible usages: additional logging information, extended waiting mechanism
+ * Possible usages: additional logging information, extended waiting mechanism<br>
+ * Messages are only built when debug logging is enabled. The clickability check before every click is opt-in.
  *
  * @author Andras Fuge
  */
-public class DefaultEventListener implements WebDriverEventListener {
-    private static DefaultEventListener instance = null;
-    private static Logger logger = null;
+public class DefaultEventListener implements WebDriverListener {
+    private static final Logger LOGGER = LogManager.getLogger(DefaultEventListener.class);
+    private static final DefaultEventListener INSTANCE = new DefaultEventListener();
+
+    private volatile boolean clickabilityCheck = false;
+    private volatile long clickabilityTimeout = 0;
+    private volatile int maxScriptLength = 120;
 
     private DefaultEventListener() {
-        logger = LogManager.getLogger(this.getClass());
     }
 
     public static DefaultEventListener getInstance() {
-        if (instance == null) {
-            instance = new DefaultEventListener();
-        }
+        return INSTANCE;
+    }
 
-        return instance;
+    public boolean isClickabilityCheck() {
+        return clickabilityCheck;
     }
 
-    @Override
-    public void beforeAlertAccept(WebDriver webDriver) {
-        logger.debug("Accepting alert...");
+    /**
+     * Turns the clickability wait before every click on or off. It costs at least one extra round trip per click.
+     *
+     * @param status  the status to be set
+     * @param timeout the timeout of the clickability wait in seconds
+     */
+    public void setClickabilityCheck(boolean status, long timeout) {
+        clickabilityCheck = status;
+        clickabilityTimeout = timeout;
     }
 
-    @Override
-    public void afterAlertAccept(WebDriver webDriver) {
-        logger.debug("Alert accepted.");
+    public int getMaxScriptLength() {
+        return maxScriptLength;
     }
 
-    @Override
-    public void afterAlertDismiss(WebDriver webDriver) {
-        logger.debug("Dismissing alert...");
+    /**
+     * Sets the number of characters of a script body written to the log.
+     *
+     * @param length the maximum length
+     */
+    public void setMaxScriptLength(int length) {
+        maxScriptLength = length;
     }
 
-    @Override
-    public void beforeAlertDismiss(WebDriver webDriver) {
-        logger.debug("Alert dismissed.");
+    private String truncate(String script) {
+        if (script == null || script.length() <= maxScriptLength) {
+            return script;
+        }
+
+        return script.substring(0, maxScriptLength) + "...";
     }
 
     @Override
-    public void beforeNavigateTo(String s, WebDriver webDriver) {
-        logger.debug(String.format("Navigating to: %s", s));
+    public void beforeAccept(Alert alert) {
+        LOGGER.debug("Accepting alert...");
     }
 
     @Override
-    public void afterNavigateTo(String s, WebDriver webDriver) {
-        logger.debug(String.format("Navigated to: %s", s));
+    public void afterAccept(Alert alert) {
+        LOGGER.debug("Alert accepted.");
     }
 
     @Override
-    public void beforeNavigateBack(WebDriver webDriver) {
-        logger.debug("Navigating back...");
+    public void beforeDismiss(Alert alert) {
+        LOGGER.debug("Dismissing alert...");
     }
 
     @Override
-    public void afterNavigateBack(WebDriver webDriver) {
-        logger.debug("Navigated back.");
+    public void afterDismiss(Alert alert) {
+        LOGGER.debug("Alert dismissed.");
     }
 
     @Override
-    public void beforeNavigateForward(WebDriver webDriver) {
-        logger.debug("Navigating forward...");
+    public void beforeGet(WebDriver driver, String url) {
+        LOGGER.debug("Navigating to: {}", url);
     }
 
     @Override
-    public void afterNavigateForward(WebDriver webDriver) {
-        logger.debug("Navigated forward.");
+    public void afterGet(WebDriver driver, String url) {
+        LOGGER.debug("Navigated to: {}", url);
     }
 
     @Override
-    public void beforeNavigateRefresh(WebDriver webDriver) {
-        logger.debug("Refreshing...");
-
+    public void beforeTo(WebDriver.Navigation navigation, String url) {
+        LOGGER.debug("Navigating to: {}", url);
     }
 
     @Override
-    public void afterNavigateRefresh(WebDriver webDriver) {
-        logger.debug("Refreshed.");
+    public void afterTo(WebDriver.Navigation navigation, String url) {
+        LOGGER.debug("Navigated to: {}", url);
     }
 
     @Override
-    public void beforeFindBy(By by, WebElement webElement, WebDriver webDriver) {
-        logger.debug(String.format("Locating element: %s", by.toString()));
+    public void beforeBack(WebDriver.Navigation navigation) {
+        LOGGER.debug("Navigating back...");
     }
 
     @Override
-    public void afterFindBy(By by, WebElement webElement, WebDriver webDriver) {
-        logger.debug(String.format("Located element: %s", by.toString()));
+    public void afterBack(WebDriver.Navigation navigation) {
+        LOGGER.debug("Navigated back.");
     }
 
     @Override
-    public void beforeClickOn(WebElement webElement, WebDriver webDriver) {
-        DriverWaits.waitForElementToBeClickable(webElement);
-        logger.debug(String.format("Clicking element: %s", webElement.toString()));
+    public void beforeForward(WebDriver.Navigation navigation) {
+        LOGGER.debug("Navigating forward...");
     }
 
     @Override
-    public void afterClickOn(WebElement webElement, WebDriver webDriver) {
-        logger.debug(String.format("Clicked element: %s", webElement.toString()));
+    public void afterForward(WebDriver.Navigation navigation) {
+        LOGGER.debug("Navigated forward.");
     }
 
     @Override
-    public void beforeChangeValueOf(WebElement webElement, WebDriver webDriver, CharSequence[] charSequences) {
-        logger.debug(String.format("Changing element: %s", webElement.toString()));
+    public void beforeRefresh(WebDriver.Navigation navigation) {
+        LOGGER.debug("Refreshing...");
     }
 
     @Override
-    public void afterChangeValueOf(WebElement webElement, WebDriver webDriver, CharSequence[] charSequences) {
-        logger.debug(String.format("Changed element: %s", webElement.toString()));
+    public void afterRefresh(WebDriver.Navigation navigation) {
+        LOGGER.debug("Refreshed.");
     }
 
     @Override
-    public void beforeScript(String s, WebDriver webDriver) {
-        logger.debug(String.format("Executing script: %s", s));
+    public void beforeFindElement(WebDriver driver, By locator) {
+        LOGGER.debug("Locating element: {}", locator);
     }
 
     @Override
-    public void afterScript(String s, WebDriver webDriver) {
-        logger.debug(String.format("Executed script: %s", s));
+    public void afterFindElement(WebDriver driver, By locator, WebElement result) {
+        LOGGER.debug("Located element: {}", locator);
     }
 
     @Override
-    public void beforeSwitchToWindow(String windowName, WebDriver driver) {
-
+    public void beforeFindElements(WebDriver driver, By locator) {
+        LOGGER.debug("Locating elements: {}", locator);
     }
 
     @Override
-    public void afterSwitchToWindow(String windowName, WebDriver driver) {
-
+    public void afterFindElements(WebDriver driver, By locator, List<WebElement> result) {
+        LOGGER.debug("Located {} elements: {}", result.size(), locator);
     }
 
     @Override
-    public void onException(Throwable throwable, WebDriver webDriver) {
+    public void beforeClick(WebElement element) {
+        if (clickabilityCheck) {
+            DriverWaits.waitForElementToBeClickable(element, clickabilityTimeout);
+        }
 
+        LOGGER.debug("Clicking element: {}", element);
     }
 
     @Override
-    public <X> void beforeGetScreenshotAs(OutputType<X> target) {
+    public void afterClick(WebElement element) {
+        LOGGER.debug("Clicked element: {}", element);
+    }
 
+    @Override
+    public void beforeSendKeys(WebElement element, CharSequence... keysToSend) {
+        LOGGER.debug("Changing element: {}", element);
     }
 
     @Override
-    public <X> void afterGetScreenshotAs(OutputType<X> target, X screenshot) {
+    public void afterSendKeys(WebElement element, CharSequence... keysToSend) {
+        LOGGER.debug("Changed element: {}", element);
+    }
 
+    @Override
+    public void beforeExecuteScript(WebDriver driver, String script, Object[] args) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Executing script: {}", truncate(script));
+        }
     }
 
     @Override
-    public void beforeGetText(WebElement element, WebDriver driver) {
+    public void afterExecuteScript(WebDriver driver, String script, Object[] args, Object result) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Executed script: {}", truncate(script));
+        }
+    }
 
+    @Override
+    public void beforeExecuteAsyncScript(WebDriver driver, String script, Object[] args) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Executing async script: {}", truncate(script));
+        }
     }
 
     @Override
-    public void afterGetText(WebElement element, WebDriver driver, String text) {
+    public void afterExecuteAsyncScript(WebDriver driver, String script, Object[] args, Object result) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Executed async script: {}", truncate(script));
+        }
+    }
 
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Call {} failed: {}", method.getName(), e.getTargetException().getMessage());
+        }
     }
 }
@@ -0,0 +1,169 @@
+package driver;
+
+import org.openqa.selenium.By;
+
+/**
+ * Javascript snippets shared by the script based features of the framework.<br>
+ * The snippets resolve By locators inside the browser, so a locator can be evaluated without a findElement round trip.
+ *
+ * @author Andras Fuge
+ */
+final class DomScripts {
+
+    /**
+     * Defines the function __sbFind(using, value, root) which returns the array of elements matching a W3C locator.
+     */
+    static final String FIND_ELEMENTS = ""
+            + "var __sbFind = function (using, value, root) {"
+            + "  root = root || document;"
+            + "  var list = function (nodes) { return Array.prototype.slice.call(nodes); };"
+            + "  var links = function (match) {"
+            + "    return list(root.querySelectorAll('a')).filter(function (a) { return match((a.innerText || a.textContent || '').trim()); });"
+            + "  };"
+            + "  switch (using) {"
+            + "    case 'css selector': return list(root.querySelectorAll(value));"
+            + "    case 'id': return list(root.querySelectorAll('#' + CSS.escape(value)));"
+            + "    case 'name': return list(root.querySelectorAll('[name=\"' + CSS.escape(value) + '\"]'));"
+            + "    case 'class':"
+            + "    case 'class name': return list(root.querySelectorAll('.' + CSS.escape(value)));"
+            + "    case 'tag name': return list(root.getElementsByTagName(value));"
+            + "    case 'link text': return links(function (t) { return t === value; });"
+            + "    case 'partial link text': return links(function (t) { return t.indexOf(value) >= 0; });"
+            + "    case 'xpath':"
+            + "      var result = document.evaluate(value, root, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);"
+            + "      var found = [];"
+            + "      for (var i = 0; i < result.snapshotLength; i++) { found.push(result.snapshotItem(i)); }"
+            + "      return found;"
+            + "    default: throw new Error('Unsupported locator strategy: ' + using);"
+            + "  }"
+            + "};";
+
+    /**
+     * Defines the function __sbVisible(el) which approximates WebElement.isDisplayed().
+     */
+    static final String IS_VISIBLE = ""
+            + "var __sbVisible = function (el) {"
+            + "  if (!el || !el.isConnected) { return false; }"
+            + "  var style = window.getComputedStyle(el);"
+            + "  if (style.visibility === 'hidden' || style.visibility === 'collapse' || style.display === 'none') { return false; }"
+            + "  if (el.tagName === 'OPTION') { return true; }"
+            + "  return el.getClientRects().length > 0 && (el.offsetWidth > 0 || el.offsetHeight > 0);"
+            + "};";
+
+    /**
+     * Defines the function __sbText(el) which approximates WebElement.getText().
+     */
+    static final String GET_TEXT = ""
+            + "var __sbText = function (el) {"
+            + "  var text = el.tagName === 'OPTION' ? el.text : (el.innerText !== undefined ? el.innerText : el.textContent);"
+            + "  return (text || '').replace(/\\u00a0/g, ' ').trim();"
+            + "};";
+
+    /**
+     * Defines the function __sbAttr(el, name) which approximates WebElement.getAttribute(name).
+     */
+    static final String GET_ATTRIBUTE = ""
+            + "var __sbAttr = function (el, name) {"
+            + "  var value = name in el && typeof el[name] !== 'function' && typeof el[name] !== 'object' ? el[name] : el.getAttribute(name);"
+            + "  return value === null || value === undefined ? null : String(value);"
+            + "};";
+
+    /**
+     * Defines the function __sbCheck(condition, using, value, attribute, expected) which evaluates a WaitCondition.<br>
+     * Requires FIND_ELEMENTS, IS_VISIBLE and GET_ATTRIBUTE.
+     */
+    static final String CHECK_CONDITION = ""
+            + "var __sbCheck = function (condition, using, value, attribute, expected) {"
+            + "  var el = __sbFind(using, value)[0];"
+            + "  var attr = el && attribute ? __sbAttr(el, attribute) : null;"
+            + "  switch (condition) {"
+            + "    case 'VISIBLE': return !!el && __sbVisible(el);"
+            + "    case 'INVISIBLE': return !el || !__sbVisible(el);"
+            + "    case 'ATTRIBUTE_CONTAINS': return !!el && attr !== null && attr.indexOf(expected) >= 0;"
+            + "    case 'ATTRIBUTE_NOT_CONTAINS': return !!el && (attr === null || attr.indexOf(expected) < 0);"
+            + "    case 'CLICKABLE': return !!el && __sbVisible(el) && !el.disabled;"
+            + "    default: throw new Error('Unsupported wait condition: ' + condition);"
+            + "  }"
+            + "};";
+
+    /**
+     * Defines the function __sbObserve(check, timeoutMs, done) which calls done(true) as soon as check() holds,
+     * or done(check()) once the timeout elapses.<br>
+     * DOM mutations trigger a re-check; a slow in-page interval covers changes which are not mutations (e.g. layout).<br>
+     * A missing node counts as not met, any other error of check() (e.g. an invalid selector) ends the wait at once
+     * with done({error: name, message: message}).
+     */
+    static final String OBSERVE = ""
+            + "var __sbObserve = function (check, timeoutMs, done) {"
+            + "  var finished = false, scheduled = false, failure = null, observer, timer, deadline;"
+            + "  var safeCheck = function () {"
+            + "    try { return check(); } catch (e) {"
+            + "      if (e && e.name === 'NotFoundError') { return false; }"
+            + "      failure = { error: (e && e.name) || 'Error', message: String((e && e.message) || e) };"
+            + "      return true;"
+            + "    }"
+            + "  };"
+            + "  if (safeCheck()) { done(failure || true); return; }"
+            + "  var finish = function (result) {"
+            + "    if (finished) { return; }"
+            + "    finished = true;"
+            + "    observer.disconnect(); clearInterval(timer); clearTimeout(deadline);"
+            + "    done(failure || result);"
+            + "  };"
+            + "  var recheck = function () { scheduled = false; if (!finished && safeCheck()) { finish(true); } };"
+            + "  observer = new MutationObserver(function () {"
+            + "    if (!scheduled) { scheduled = true; setTimeout(recheck, 0); }"
+            + "  });"
+            + "  observer.observe(document.documentElement, {subtree: true, childList: true, attributes: true, characterData: true});"
+            + "  timer = setInterval(recheck, 250);"
+            + "  deadline = setTimeout(function () { finish(safeCheck()); }, timeoutMs);"
+            + "};";
+
+    /**
+     * Installs the in-page network tracker window.__sbNet counting the fetch and XMLHttpRequest calls in flight
+     * and the time of the last request start or end. Installing it twice is a no-op.
+     */
+    static final String NETWORK_TRACKER = ""
+            + "(function () {"
+            + "  if (window.__sbNet) { return; }"
+            + "  var net = window.__sbNet = { inflight: 0, last: Date.now() };"
+            + "  var start = function () { net.inflight++; net.last = Date.now(); };"
+            + "  var end = function () { net.inflight = Math.max(0, net.inflight - 1); net.last = Date.now(); };"
+            + "  if (window.fetch) {"
+            + "    var fetch = window.fetch;"
+            + "    window.fetch = function () {"
+            + "      start();"
+            + "      return fetch.apply(this, arguments).then(function (r) { end(); return r; }, function (e) { end(); throw e; });"
+            + "    };"
+            + "  }"
+            + "  if (window.XMLHttpRequest) {"
+            + "    var send = XMLHttpRequest.prototype.send;"
+            + "    XMLHttpRequest.prototype.send = function () {"
+            + "      var pending = true;"
+            + "      var finish = function () { if (pending) { pending = false; end(); } };"
+            + "      start();"
+            + "      this.addEventListener('loadend', finish);"
+            + "      try { return send.apply(this, arguments); } catch (e) { finish(); throw e; }"
+            + "    };"
+            + "  }"
+            + "})();";
+
+    private DomScripts() {
+    }
+
+    /**
+     * Converts a By locator to its W3C strategy and value.
+     *
+     * @param locator the By locator to convert
+     * @return the strategy and value pair, or null when the locator cannot be evaluated in the browser
+     */
+    static String[] toW3cLocator(By locator) {
+        if (!(locator instanceof By.Remotable)) {
+            return null;
+        }
+
+        By.Remotable.Parameters parameters = ((By.Remotable) locator).getRemoteParameters();
+
+        return new String[]{parameters.using(), String.valueOf(parameters.value())};
+    }
+}
@@ -0,0 +1,513 @@
+package driver;
+
+import org.openqa.selenium.By;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only copy of the current page's DOM, pulled with a single script execution, with the computed visibility,
+ * enabled and selected state of every element.<br>
+ * CSS (see CssSelector), XPath and the other By strategies are evaluated in-process against the copy. A locator which
+ * can not be evaluated here gives null, so the caller falls back to the browser.
+ *
+ * @author Andras Fuge
+ */
+final class DomSnapshot {
+
+    // texts longer than this are assembled in-process from the text nodes, so big containers are not serialized twice
+    private static final int MAX_SERIALIZED_TEXT = 256;
+
+    static final int VISIBLE = 1;
+    static final int ENABLED = 2;
+    static final int SELECTED = 4;
+    static final int BLOCK = 8;
+    static final int PRE = 16;
+
+    static final String SNAPSHOT_SCRIPT = DomScripts.GET_TEXT
+            + "var cap = arguments[0], out = [], index = new Map();"
+            + "var walker = document.createTreeWalker(document.documentElement, NodeFilter.SHOW_ELEMENT | NodeFilter.SHOW_TEXT);"
+            + "for (var node = walker.currentNode; node; node = walker.nextNode()) {"
+            + "  var parent = index.has(node.parentNode) ? index.get(node.parentNode) : -1;"
+            + "  if (node.nodeType === 3) {"
+            + "    if (parent >= 0) { out.push([parent, null, node.data.trim() === '' ? ' ' : node.data]); }"
+            + "    continue;"
+            + "  }"
+            + "  index.set(node, out.length);"
+            + "  var attrs = {};"
+            + "  for (var i = 0; i < node.attributes.length; i++) { attrs[node.attributes[i].name] = node.attributes[i].value; }"
+            + "  var selected = node.tagName === 'OPTION' ? node.selected : node.checked === true;"
+            + "  var style = window.getComputedStyle(node);"
+            + "  var visible = style.visibility !== 'hidden' && style.visibility !== 'collapse' && style.display !== 'none'"
+            + "      && (node.tagName === 'OPTION' || (node.getClientRects().length > 0 && (node.offsetWidth > 0 || node.offsetHeight > 0)));"
+            + "  var flags = (visible ? 1 : 0) | (node.disabled ? 0 : 2) | (selected ? 4 : 0)"
+            + "      | (style.display.indexOf('inline') === 0 || style.display === 'contents' ? 0 : 8)"
+            + "      | (style.whiteSpace.indexOf('pre') === 0 ? 16 : 0);"
+            + "  var text = '';"
+            + "  if (visible) { text = __sbText(node); if (text.length > cap) { text = null; } }"
+            + "  var value = node.value === undefined || node.value === null ? null : String(node.value);"
+            + "  out.push([parent, node.tagName.toLowerCase(), attrs, flags, text, value]);"
+            + "}"
+            + "return {base: document.baseURI, nodes: out};";
+
+    // boolean attributes, WebElement.getAttribute returns "true" or null for them
+    private static final Set<String> BOOLEAN_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "async", "autofocus", "autoplay", "compact", "complete", "controls", "declare", "default", "defaultchecked",
+            "defaultselected", "defer", "disabled", "draggable", "ended", "formnovalidate", "hidden", "indeterminate",
+            "iscontenteditable", "ismap", "itemscope", "loop", "multiple", "muted", "nohref", "noresize", "noshade",
+            "novalidate", "nowrap", "open", "paused", "pubdate", "readonly", "required", "reversed", "scoped",
+            "seamless", "seeking", "spellcheck", "truespeed", "willvalidate"));
+
+    private final String baseUri;
+    private final List<Node> elements = new ArrayList<>();
+    private final Map<By, List<Node>> queries = new HashMap<>();
+    private Document document;
+    private boolean xpathUnavailable = false;
+
+    private DomSnapshot(String baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * Returns the argument of SNAPSHOT_SCRIPT.
+     *
+     * @return the length above which the element texts are not serialized
+     */
+    static int getScriptArgument() {
+        return MAX_SERIALIZED_TEXT;
+    }
+
+    /**
+     * Builds the snapshot from the object returned by SNAPSHOT_SCRIPT.
+     *
+     * @param raw the document's base URI and its element and text node rows in document order
+     * @return the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    static DomSnapshot fromScriptResult(Map<String, Object> raw) {
+        List<Object> rows = (List<Object>) raw.get("nodes");
+        DomSnapshot snapshot = new DomSnapshot(String.valueOf(raw.get("base")));
+        List<Node> all = new ArrayList<>(rows.size());
+
+        for (Object rawRow : rows) {
+            List<Object> row = (List<Object>) rawRow;
+            int parentIndex = ((Number) row.get(0)).intValue();
+            Node parent = parentIndex >= 0 ? all.get(parentIndex) : null;
+            Node node;
+
+            if (row.get(1) == null) {
+                node = new Node(parent, null, Collections.emptyMap(), 0, String.valueOf(row.get(2)), null);
+            } else {
+                Map<String, String> attributes = new HashMap<>();
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) row.get(2)).entrySet()) {
+                    attributes.put(entry.getKey(), entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+                }
+
+                node = new Node(parent, (String) row.get(1), attributes, ((Number) row.get(3)).intValue(),
+                        (String) row.get(4), (String) row.get(5));
+                node.elementIndex = parent == null ? 0 : parent.elementChildren.size();
+                snapshot.elements.add(node);
+
+                if (parent != null) {
+                    parent.elementChildren.add(node);
+                }
+            }
+
+            all.add(node);
+            if (parent != null) {
+                parent.children.add(node);
+            }
+        }
+
+        return snapshot;
+    }
+
+    int size() {
+        return elements.size();
+    }
+
+    /**
+     * Tells whether readAttribute can answer for the name. Camel case names are DOM properties like textContent,
+     * which are not part of the snapshot.
+     *
+     * @param name the attribute name
+     * @return true when the attribute can be read from the snapshot
+     */
+    static boolean canReadAttribute(String name) {
+        return name.equals(name.toLowerCase(Locale.ROOT)) && !name.startsWith("inner") && !name.startsWith("outer")
+                && !"textcontent".equals(name);
+    }
+
+    /**
+     * Reads an attribute of the element as WebElement.getAttribute(name) would: the live value of form fields,
+     * "true" or null for boolean attributes and absolute URLs for href and src.
+     *
+     * @param node the element
+     * @param name the attribute name, see canReadAttribute
+     * @return the attribute value, null when the element has no such attribute
+     */
+    String readAttribute(Node node, String name) {
+        switch (name) {
+            case "value":
+                return node.value != null ? node.value : node.getAttribute(name);
+            case "checked":
+            case "selected":
+                return node.is(SELECTED) ? "true" : null;
+            case "class":
+            case "classname":
+                return node.getAttribute("class");
+            case "href":
+            case "src":
+                String url = node.getAttribute(name);
+                if (url == null) {
+                    return null;
+                }
+                try {
+                    return URI.create(baseUri).resolve(url.trim()).toString();
+                } catch (IllegalArgumentException e) {
+                    return url;
+                }
+            default:
+                if (BOOLEAN_ATTRIBUTES.contains(name)) {
+                    return "disabled".equals(name) ? (node.is(ENABLED) ? null : "true")
+                            : node.hasAttribute(name) ? "true" : null;
+                }
+                return node.getAttribute(name);
+        }
+    }
+
+    /**
+     * Converts the element to the ElementData the bulk extraction script would return for it.
+     *
+     * @param node       the element
+     * @param attributes the attributes to be read, see canReadAttribute
+     * @return the element data
+     */
+    ElementData toElementData(Node node, String... attributes) {
+        Map<String, String> values = new HashMap<>();
+
+        for (String attribute : attributes) {
+            values.put(attribute, readAttribute(node, attribute));
+        }
+
+        return new ElementData(node.tagName, node.getText(), node.value, node.is(VISIBLE), node.is(ENABLED),
+                node.is(SELECTED), values);
+    }
+
+    /**
+     * Returns the elements matching the locator in document order.
+     *
+     * @param locator the By locator
+     * @return the matching elements, null when the locator can not be evaluated in-process
+     */
+    List<Node> findElements(By locator) {
+        if (queries.containsKey(locator)) {
+            return queries.get(locator);
+        }
+
+        List<Node> found = evaluate(locator);
+        queries.put(locator, found);
+
+        return found;
+    }
+
+    private List<Node> evaluate(By locator) {
+        String[] w3cLocator = DomScripts.toW3cLocator(locator);
+        if (w3cLocator == null) {
+            return null;
+        }
+
+        String value = w3cLocator[1];
+
+        switch (w3cLocator[0]) {
+            case "css selector":
+                CssSelector selector = CssSelector.parse(value);
+                return selector == null ? null : filter(selector::matches);
+            case "id":
+                return filter(node -> value.equals(node.getAttribute("id")));
+            case "name":
+                return filter(node -> value.equals(node.getAttribute("name")));
+            case "class":
+            case "class name":
+                return value.trim().contains(" ") ? null : filter(node -> node.hasClass(value));
+            case "tag name":
+                return filter(node -> node.tagName.equalsIgnoreCase(value));
+            case "link text":
+                return filter(node -> "a".equals(node.tagName) && value.equals(node.getText()));
+            case "partial link text":
+                return filter(node -> "a".equals(node.tagName) && node.getText().contains(value));
+            case "xpath":
+                return evaluateXpath(value);
+            default:
+                return null;
+        }
+    }
+
+    private List<Node> filter(java.util.function.Predicate<Node> predicate) {
+        List<Node> found = new ArrayList<>();
+
+        for (Node node : elements) {
+            if (predicate.test(node)) {
+                found.add(node);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Evaluates an XPath expression with the JDK's XPath 1.0 engine on a W3C DOM copy of the snapshot, built on the
+     * first XPath query. Expressions selecting anything but elements are left to the browser.
+     */
+    private List<Node> evaluateXpath(String expression) {
+        if (xpathUnavailable) {
+            return null;
+        }
+
+        try {
+            if (document == null) {
+                document = toDocument();
+            }
+
+            NodeList result = (NodeList) XPathFactory.newInstance().newXPath()
+                    .evaluate(expression, document, XPathConstants.NODESET);
+            List<Node> found = new ArrayList<>(result.getLength());
+
+            for (int i = 0; i < result.getLength(); i++) {
+                Object node = result.item(i).getUserData(Node.class.getName());
+                if (!(node instanceof Node)) {
+                    return null;
+                }
+                found.add((Node) node);
+            }
+
+            return found;
+        } catch (XPathExpressionException e) {
+            return null;
+        } catch (ParserConfigurationException | DOMException e) {
+            xpathUnavailable = true;
+            return null;
+        }
+    }
+
+    private Document toDocument() throws ParserConfigurationException {
+        Document copy = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+
+        for (Node node : elements) {
+            if (node.parent == null) {
+                copy.appendChild(toElement(copy, node));
+            }
+        }
+
+        return copy;
+    }
+
+    private static Element toElement(Document document, Node node) {
+        Element element = document.createElement(node.tagName);
+        element.setUserData(Node.class.getName(), node, null);
+
+        for (Map.Entry<String, String> attribute : node.attributes.entrySet()) {
+            try {
+                element.setAttribute(attribute.getKey(), attribute.getValue());
+            } catch (DOMException e) {
+                // framework attributes like @click are not valid XML names, XPath can not refer to them anyway
+            }
+        }
+
+        for (Node child : node.children) {
+            if (child.tagName == null) {
+                element.appendChild(document.createTextNode(child.data));
+            } else {
+                element.appendChild(toElement(document, child));
+            }
+        }
+
+        return element;
+    }
+
+    /**
+     * An element or a text node of the snapshot.
+     */
+    static final class Node {
+        private final Node parent;
+        private final String tagName;
+        private final Map<String, String> attributes;
+        private final int flags;
+        private final String data;
+        private final String value;
+        private final List<Node> children = new ArrayList<>();
+        private final List<Node> elementChildren = new ArrayList<>();
+        private int elementIndex;
+        private String text;
+
+        private Node(Node parent, String tagName, Map<String, String> attributes, int flags, String data, String value) {
+            this.parent = parent;
+            this.tagName = tagName;
+            this.attributes = attributes;
+            this.flags = flags;
+            this.data = data;
+            this.value = value;
+        }
+
+        Node getParent() {
+            return parent;
+        }
+
+        String getTagName() {
+            return tagName;
+        }
+
+        Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        String getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        boolean hasAttribute(String name) {
+            return attributes.containsKey(name);
+        }
+
+        boolean hasClass(String className) {
+            String classes = attributes.get("class");
+            if (classes == null) {
+                return false;
+            }
+
+            for (String token : classes.trim().split("\\s+")) {
+                if (token.equals(className)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        boolean is(int flag) {
+            return (flags & flag) != 0;
+        }
+
+        /**
+         * Returns the descendant elements in document order.
+         *
+         * @param tagName the tag name of the elements to be returned, null for every element
+         * @return the matching descendants
+         */
+        List<Node> getDescendants(String tagName) {
+            List<Node> descendants = new ArrayList<>();
+            collectDescendants(this, tagName, descendants);
+            return descendants;
+        }
+
+        private static void collectDescendants(Node node, String tagName, List<Node> descendants) {
+            for (Node child : node.elementChildren) {
+                if (tagName == null || tagName.equals(child.tagName)) {
+                    descendants.add(child);
+                }
+                collectDescendants(child, tagName, descendants);
+            }
+        }
+
+        List<Node> getElementChildren() {
+            return elementChildren;
+        }
+
+        /**
+         * Returns the position of the element among the element children of its parent.
+         *
+         * @return the zero based index
+         */
+        int getElementIndex() {
+            return elementIndex;
+        }
+
+        /**
+         * Returns the sibling element before this one.
+         *
+         * @return the previous element sibling, null for the first child
+         */
+        Node getPreviousElement() {
+            return parent == null || elementIndex == 0 ? null : parent.elementChildren.get(elementIndex - 1);
+        }
+
+        /**
+         * Returns the visible text of the element as WebElement.getText() would. Long texts, which are not serialized
+         * by the snapshot script, are assembled from the visible text nodes with the block elements on their own line.
+         *
+         * @return the text, empty for hidden elements
+         */
+        String getText() {
+            if (data == null && text == null) {
+                StringBuilder builder = new StringBuilder();
+                appendText(this, builder, false);
+                text = normalize(builder);
+            }
+
+            return data == null ? text : data;
+        }
+
+        private static void appendText(Node node, StringBuilder builder, boolean pre) {
+            for (Node child : node.children) {
+                if (child.tagName == null) {
+                    builder.append(pre ? child.data : child.data.replaceAll("\\s+", " "));
+                } else if ("br".equals(child.tagName)) {
+                    builder.append('\n');
+                } else if (child.is(VISIBLE)) {
+                    boolean block = child.is(BLOCK);
+
+                    if (block) {
+                        builder.append('\n');
+                    }
+                    if (child.data != null) {
+                        builder.append(child.data);
+                    } else {
+                        appendText(child, builder, pre || child.is(PRE));
+                    }
+                    if (block) {
+                        builder.append('\n');
+                    }
+                }
+            }
+        }
+
+        private static String normalize(StringBuilder builder) {
+            StringBuilder normalized = new StringBuilder(builder.length());
+
+            for (String line : builder.toString().replace('\u00a0', ' ').split("\n")) {
+                String trimmed = line.trim();
+
+                if (!trimmed.isEmpty()) {
+                    if (normalized.length() > 0) {
+                        normalized.append('\n');
+                    }
+                    normalized.append(trimmed);
+                }
+            }
+
+            return normalized.toString();
+        }
+
+        @Override
+        public String toString() {
+            return tagName == null ? "#text" : "<" + tagName + attributes + ">";
+        }
+    }
+}
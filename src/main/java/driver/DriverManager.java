@@ -1,98 +1,171 @@
 package driver;
 
+import enums.BrowserProfile;
 import enums.BrowserType;
+import enums.CommandType;
+import enums.HubSelection;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.*;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
 import org.openqa.selenium.edge.EdgeOptions;
-import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.service.DriverService;
 import org.openqa.selenium.support.events.EventFiringDecorator;
 import org.openqa.selenium.support.events.WebDriverListener;
 import org.openqa.selenium.support.ui.FluentWait;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Responsible for handling the WebDriver during the test run.<br>
- * This class instantiates the driver as a singleton object.<br>
+ * This class instantiates one driver per thread, the sessions are kept in the DriverRegistry.<br>
  * Access to the driver can only happen via the getDriver() method.
  *
  * @author Andras Fuge
  */
 public class DriverManager {
-    private static long implicitWaitTimeout = 0;
-
-    private static WebDriver driver;
-
-    private static boolean closeBrowsers = false;
+    private static volatile boolean closeBrowsers = false;
+    private static volatile DriverPool driverPool;
+    private static volatile boolean elementCaching = false;
+    private static volatile long memoryBudget = 0;
+    private static volatile long defaultImplicitWaitTimeout = 0;
+    private static volatile boolean sharedDriverServices = false;
+    private static volatile boolean commandListening = false;
+    private static final Map<BrowserType, BrowserProfile> BROWSER_PROFILES = new ConcurrentHashMap<>();
+    private static final Map<List<String>, RemoteDriverFactory> REMOTE_DRIVER_FACTORIES = new ConcurrentHashMap<>();
     private static final Logger LOG = LogManager.getLogger(DriverManager.class);
 
+    private static DriverSession session() {
+        return DriverRegistry.current();
+    }
+
     /**
-     * Instantiates singleton WebDriver for the specified browser type.
+     * Instantiates the WebDriver of the calling thread for the specified browser type.
      *
      * @param browserType the browser type to be initialized
-     * @param gridHubUrl  the address of the selenium grid hub
+     * @param gridHubUrl  the addresses of the selenium grid hubs, one or more
      */
     public static void initDriver(BrowserType browserType, String... gridHubUrl) {
         if (closeBrowsers) {
             closeBrowsers(browserType);
         }
 
-        if (driver == null) {
-            if (gridHubUrl.length > 0) {
-                try {
-                    initRemoteDriver(browserType, gridHubUrl[0]);
-                } catch (MalformedURLException e) {
-                    LOG.error(String.format("Grid Url is not properly formatted: %s", gridHubUrl[0]));
-                    System.exit(1);
-                }
+        if (!session().hasDriver()) {
+            long start = System.nanoTime();
+
+            if (driverPool != null && driverPool.supports(browserType)) {
+                session().setPooledDriver(driverPool.lease());
+                getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(getImplicitWaitTimeout()));
             } else {
-                initLocalDriver(browserType);
+                session().setDriver(createDriver(browserType, getImplicitWaitTimeout(), gridHubUrl));
             }
+            session().setBrowserProfile(getBrowserProfile(browserType));
+
+            registerEventHandler(WindowTrackingListener.getInstance());
+            if (commandListening) {
+                long nanos = System.nanoTime() - start;
+                TimeBreakdown.command(nanos);
+                TraceRecorder.record("driver", "initDriver", browserType, start, nanos);
+                registerEventHandler(MetricsListener.getInstance());
+            }
+        }
+    }
 
-            driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(getImplicitWaitTimeout()));
-            driver.manage().window().maximize();
+    /**
+     * Binds an already created WebDriver to the calling thread, e.g. a custom or an in-memory driver.
+     *
+     * @param webDriver the driver to be used by the calling thread
+     * @throws IllegalStateException when the calling thread already has a driver
+     */
+    public static void initDriver(WebDriver webDriver) throws IllegalStateException {
+        if (session().hasDriver()) {
+            LOG.error("Driver is already present, IllegalStateException is thrown!");
+            throw new IllegalStateException("Driver is already present, it should be destroyed first!");
+        }
 
-            deleteAllCookies();
+        session().setDriver(webDriver);
+
+        registerEventHandler(WindowTrackingListener.getInstance());
+        if (commandListening) {
+            registerEventHandler(MetricsListener.getInstance());
         }
     }
 
-    private static void initLocalDriver(BrowserType browserType) {
-        if (BrowserType.EDGE.equals(browserType)) {
-            initLocalDriver(browserType, BrowserOptions.getDefaultEdgeOptions());
+    /**
+     * Creates a new, fully set up WebDriver for the specified browser type without binding it to any session.
+     *
+     * @param browserType         the browser type to be initialized
+     * @param implicitWaitTimeout the implicit wait timeout of the driver in seconds
+     * @param gridHubUrl          the addresses of the selenium grid hubs, one or more
+     * @return the created WebDriver
+     */
+    static WebDriver createDriver(BrowserType browserType, long implicitWaitTimeout, String... gridHubUrl) {
+        BrowserProfile profile = getBrowserProfile(browserType);
+        WebDriver driver = null;
+
+        if (gridHubUrl.length > 0) {
+            driver = initRemoteDriver(browserType, profile, getRemoteDriverFactory(gridHubUrl));
         } else {
-            initLocalDriver(browserType, BrowserOptions.getDefaultChromeOptions());
+            driver = initLocalDriver(browserType, profile);
         }
+
+        BrowserOptions.applyRuntimeProfile(driver, profile);
+
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWaitTimeout));
+        if (!profile.isFixedWindowSize()) {
+            driver.manage().window().maximize();
+        }
+        driver.manage().deleteAllCookies();
+
+        return driver;
     }
 
-    private static void initLocalDriver(BrowserType browserType, MutableCapabilities capabilities) {
-        if (driver == null) {
-            if (BrowserType.EDGE.equals(browserType)) {
-                driver = new EdgeDriver(new EdgeOptions().merge(capabilities));
-            } else {
-                driver = new ChromeDriver(new ChromeOptions().merge(capabilities));
-            }
+    private static WebDriver initLocalDriver(BrowserType browserType, BrowserProfile profile) {
+        if (BrowserType.EDGE.equals(browserType)) {
+            return initLocalDriver(browserType, BrowserOptions.getEdgeOptions(profile));
+        } else {
+            return initLocalDriver(browserType, BrowserOptions.getChromeOptions(profile));
         }
     }
 
-    private static void initRemoteDriver(BrowserType browserType, String gridHubUrl) throws MalformedURLException {
+    private static WebDriver initLocalDriver(BrowserType browserType, MutableCapabilities capabilities) {
+        if (sharedDriverServices) {
+            return DriverServices.createDriver(browserType, capabilities);
+        }
+
+        WebDriver driver;
+        DriverService service;
+
         if (BrowserType.EDGE.equals(browserType)) {
-            initRemoteDriver(gridHubUrl, BrowserOptions.getDefaultEdgeOptions());
+            service = EdgeDriverService.createDefaultService();
+            driver = new EdgeDriver((EdgeDriverService) service, new EdgeOptions().merge(capabilities));
         } else {
-            initRemoteDriver(gridHubUrl, BrowserOptions.getDefaultChromeOptions());
+            service = ChromeDriverService.createDefaultService();
+            driver = new ChromeDriver((ChromeDriverService) service, new ChromeOptions().merge(capabilities));
         }
+
+        BrowserProcesses.track(driver, service.getUrl().getPort());
+
+        return driver;
     }
 
-    private static void initRemoteDriver(String gridHubUrl, MutableCapabilities capabilities) throws MalformedURLException {
-        if (driver == null) {
-            driver = new RemoteWebDriver(new URL(gridHubUrl), capabilities);
+    private static WebDriver initRemoteDriver(BrowserType browserType, BrowserProfile profile, RemoteDriverFactory factory) {
+        if (BrowserType.EDGE.equals(browserType)) {
+            return factory.createDriver(BrowserOptions.getEdgeOptions(profile));
+        } else {
+            return factory.createDriver(BrowserOptions.getChromeOptions(profile));
         }
     }
 
@@ -102,41 +175,90 @@ public class DriverManager {
      * @throws IllegalStateException thrown when driver is not initialized
      */
     private static void whenDriverPresent() throws IllegalStateException {
-        if (driver == null) {
+        if (!session().hasDriver()) {
             LOG.error("Driver is not present, IllegalStateException is thrown!");
             throw new IllegalStateException("Driver is not present, it should be initialized first!");
         }
     }
 
     /**
-     * Clean-up method for quitting the running WebDriver instance.
+     * Clean-up method for quitting the WebDriver instance of the calling thread.
      */
     public static void destroyDriver() {
-        if (driver == null) {
+        if (!session().hasDriver()) {
             return;
         }
 
-        driver.quit();
-        driver = null;
+        if (session().getPooledDriver() != null) {
+            session().getPooledDriver().getPool().giveBack(session().getPooledDriver(), session().getVisitedOrigins());
+        } else {
+            BrowserProcesses.quit(session().getUndecoratedDriver(), getDriver()::quit);
+        }
+
+        session().setDriver(null);
+        DriverRegistry.release();
     }
 
     /**
-     * Closes all running browser instances of the type of specified browser.
+     * Resets the browser of the calling thread to a clean state, so it can serve the next scenario without a relaunch.<br>
+     * Clears the cookies of the browser and the storage of every origin the session visited (navigated to by the
+     * framework, in the history of the open tabs or of the tabs closed by closeCurrentTab, or holding a cookie), closes
+     * every tab but one, leaves it on about:blank, dismisses open alerts and restores the default frame and the implicit
+     * wait. Origins reached only in a tab closed by other means are not known to the reset.
      *
-     * @param browserType the browser type to be closed
+     * @throws IllegalStateException when the browser is not clean after the reset
      */
-    public static void closeBrowsers(BrowserType browserType) {
-        try {
-            if (BrowserType.EDGE.equals(browserType)) {
-                Runtime.getRuntime().exec("taskkill /F /IM msedgedriver.exe /T");
-            } else {
-                Runtime.getRuntime().exec("taskkill /F /IM chrome.exe /T");
-                Runtime.getRuntime().exec("taskkill /F /IM chromedriver.exe /T");
+    public static void resetSession() throws IllegalStateException {
+        whenDriverPresent();
 
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        try {
+            SessionReset.reset(getDriver(), getImplicitWaitTimeout(), session().getVisitedOrigins());
+            session().getVisitedOrigins().clear();
+        } finally {
+            invalidateElementCache();
         }
+
+        getWindowRegistry().sync(getDriver().getWindowHandles());
+    }
+
+    /**
+     * Reaps the browser and driver processes orphaned by earlier runs of this framework which died without
+     * shutting down. Browsers of other workers and of the user are left untouched.
+     *
+     * @param browserType the browser type to be closed, kept for compatibility, orphans of every type are reaped
+     */
+    public static void closeBrowsers(BrowserType browserType) {
+        BrowserProcesses.reapOrphans();
+    }
+
+    /**
+     * Returns the resident memory of the calling thread's browser: the driver service, the browser and all of its
+     * renderer and helper processes.
+     *
+     * @return the resident set size in bytes, -1 for remote sessions and on platforms without /proc
+     */
+    public static long getBrowserMemory() {
+        whenDriverPresent();
+
+        return BrowserProcesses.getResidentSetSize(session().getUndecoratedDriver());
+    }
+
+    /**
+     * Returns the memory budget of the pooled sessions.
+     *
+     * @return the budget in bytes, zero when sessions are not recycled on their memory use
+     */
+    public static long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the resident memory above which a pooled session is recycled when it is returned to the pool.
+     *
+     * @param bytes the budget in bytes, zero turns the check off
+     */
+    public static void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
     }
 
     /**
@@ -145,70 +267,267 @@ public class DriverManager {
      * @param cookieName the name of the cookie to be deleted
      */
     public static void deleteCookie(String cookieName) {
-        driver.manage().deleteCookieNamed(cookieName);
+        getDriver().manage().deleteCookieNamed(cookieName);
     }
 
     /**
      * Deletes all client-side cookies.
      */
     public static void deleteAllCookies() {
-        driver.manage().deleteAllCookies();
+        getDriver().manage().deleteAllCookies();
+    }
+
+    /**
+     * Returns the flight recorder of the calling thread.
+     *
+     * @return the FlightRecorder holding the last steps' artifacts
+     */
+    public static FlightRecorder getFlightRecorder() {
+        return FlightRecorder.current();
+    }
+
+    /**
+     * Makes the flight recorder log the WebDriver commands of the calling thread's driver, does nothing without a
+     * driver or when the recorder already listens.
+     */
+    public static void startFlightRecording() {
+        if (session().hasDriver()) {
+            registerEventHandler(FlightRecorder.current());
+        }
+    }
+
+    public static boolean isCommandListening() {
+        return commandListening;
     }
 
     /**
-     * Register specifies event listener to the driver.
+     * Sets whether initDriver registers the MetricsListener on every new driver right away and counts the browser
+     * startup, or the lease from the DriverPool, as a command in the TimeBreakdown and the TraceRecorder. Turned on by
+     * runner.TimeBreakdownPlugin and runner.TracePlugin for the run, so the startup is not left unaccounted.
+     *
+     * @param status true to listen to the commands of the new drivers, false by default
+     */
+    public static void setCommandListening(boolean status) {
+        commandListening = status;
+    }
+
+    /**
+     * Registers the MetricsListener on the calling thread's driver, so its commands are counted in the thread's
+     * TimeBreakdown. Does nothing without a driver.
+     */
+    public static void startTimeBreakdown() {
+        if (session().hasDriver()) {
+            registerEventHandler(MetricsListener.getInstance());
+        }
+    }
+
+    /**
+     * Registers the MetricsListener on the calling thread's driver, so its commands are recorded by the TraceRecorder.
+     * Does nothing without a driver.
+     */
+    public static void startTracing() {
+        startTimeBreakdown();
+    }
+
+    /**
+     * Captures a flight recorder frame of the calling thread's browser, does nothing without a driver.
+     *
+     * @param step the text of the finished step
+     */
+    public static void recordFlightFrame(String step) {
+        if (session().hasDriver()) {
+            FlightRecorder.current().capture(session().getUndecoratedDriver(), step);
+        }
+    }
+
+    /**
+     * Register specifies event listener to the driver.<br>
+     * The driver is decorated only at the first registration, further listeners are added to the same decorator.
      *
      * @param listener an instance of the listener class
      */
     public static void registerEventHandler(WebDriverListener listener) {
         whenDriverPresent();
 
-        driver = new EventFiringDecorator(listener).decorate(driver);
+        if (session().getListenerHub() == null) {
+            ListenerHub hub = new ListenerHub();
+            session().setDecoratedDriver(new EventFiringDecorator(hub.asListener()).decorate(getDriver()), hub);
+        }
+
+        session().getListenerHub().add(listener);
+        if (listener == WindowTrackingListener.getInstance()) {
+            getWindowRegistry().setTracked(true);
+        }
     }
 
     /**
-     * Un-register specifies event listener to the driver.
+     * Un-register specifies event listener from the driver.
+     *
+     * @param listener the listener to be removed
+     */
+    public static void unRegisterEventHandler(WebDriverListener listener) {
+        if (session().getListenerHub() != null) {
+            session().getListenerHub().remove(listener);
+        }
+        if (listener == WindowTrackingListener.getInstance()) {
+            getWindowRegistry().setTracked(false);
+        }
+    }
+
+    /**
+     * Un-register all event listeners from the driver.
      */
     public static void unRegisterEventHandler() {
-        driver = new EventFiringDecorator().decorate(driver);
+        if (session().getListenerHub() != null) {
+            session().getListenerHub().clear();
+        }
+        getWindowRegistry().setTracked(false);
     }
 
     /**
-     * Provides the singleton WebDriver object to the consumers.
+     * Provides the WebDriver object of the calling thread to the consumers.
      *
      * @return the active WebDriver instance
      */
     public static WebDriver getDriver() {
-        return driver;
+        return session().getDriver();
     }
 
     /**
-     * Provides default framework wait to consumers.
+     * Provides default framework wait to consumers.<br>
+     * The time spent in until is accounted as wait time in the thread's TimeBreakdown when the condition needed more
+     * than one poll.
      *
      * @return FluentWait with default parameters
      */
     protected static FluentWait<WebDriver> getDefaultWait(long implicitWaitTimeout) {
-        return new FluentWait<>(getDriver())
+        return new TimedWait(getDriver())
                 .withTimeout(Duration.ofSeconds((implicitWaitTimeout)))
                 .pollingEvery(Duration.ofMillis(100))
                 .ignoring(StaleElementReferenceException.class);
     }
 
     /**
-     * Returns a particular WebElement for the specified locator.
+     * Returns a particular WebElement for the specified locator, always resolved in the browser, never from the element cache.
      *
      * @param locator the By locator of the element
      * @return the located WebElement
      * @throws NoSuchElementException when the element is not found
      */
     public static WebElement getElement(By locator) throws NoSuchElementException {
+        return findElement(locator);
+    }
+
+    /**
+     * Returns the element of the locator from the element cache when caching is on, resolving and caching it on a miss.
+     */
+    private static WebElement getCachedElement(By locator) throws NoSuchElementException {
+        if (!elementCaching) {
+            return findElement(locator);
+        }
+
+        WebElement element = getElementCache().get(locator);
+
+        if (element == null) {
+            element = findElement(locator);
+            getElementCache().put(locator, element);
+        }
+
+        return element;
+    }
+
+    private static WebElement findElement(By locator) throws NoSuchElementException {
         try {
             return getDefaultWait(getImplicitWaitTimeout()).until((getDriver) -> getDriver.findElement(locator));
         } catch (StaleElementReferenceException e) {
-            return getElement(locator);
+            CommandMetrics.staleRetry();
+            return findElement(locator);
         }
     }
 
+    /**
+     * Applies an action to the element of the specified locator, the only place the element cache is used.<br>
+     * When the element turns out to be stale, it is dropped from the element cache, resolved again and the action is retried once.
+     *
+     * @param locator the By locator of the element
+     * @param action  the action to apply
+     * @return the result of the action
+     */
+    static <T> T withElement(By locator, Function<WebElement, T> action) {
+        try {
+            return action.apply(getCachedElement(locator));
+        } catch (StaleElementReferenceException e) {
+            CommandMetrics.staleRetry();
+            getElementCache().invalidate(locator);
+            return action.apply(getCachedElement(locator));
+        }
+    }
+
+    /**
+     * Applies an action without result to the element of the specified locator, see withElement.
+     *
+     * @param locator the By locator of the element
+     * @param action  the action to apply
+     */
+    static void onElement(By locator, Consumer<WebElement> action) {
+        invalidateDomSnapshot();
+        withElement(locator, element -> {
+            action.accept(element);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the element cache of the calling thread's session.
+     *
+     * @return the ElementCache of the session
+     */
+    public static ElementCache getElementCache() {
+        return session().getElementCache();
+    }
+
+    /**
+     * Drops every cached element and the DOM snapshot of the calling thread's session. Called on navigation, frame and
+     * window switch.
+     */
+    public static void invalidateElementCache() {
+        getElementCache().clear();
+        invalidateDomSnapshot();
+    }
+
+    /**
+     * Drops the DOM snapshot of the calling thread's session, so element reads go to the browser again. Called before
+     * every operation which may change the page.
+     */
+    static void invalidateDomSnapshot() {
+        session().setDomSnapshot(null);
+    }
+
+    /**
+     * Returns the window registry of the calling thread's session.
+     *
+     * @return the WindowRegistry of the session
+     */
+    public static WindowRegistry getWindowRegistry() {
+        return session().getWindowRegistry();
+    }
+
+    public static boolean isElementCaching() {
+        return elementCaching;
+    }
+
+    /**
+     * Turns the element cache of the DriverMethods element operations on or off, it is off by default.<br>
+     * A cached element is reused until it turns stale or the page, frame or window changes. An element which was
+     * re-rendered in place, e.g. a re-sorted list, may still be served for its old locator, so turn the cache on only
+     * for pages which replace their elements instead of reusing them.
+     *
+     * @param status true to cache the resolved elements
+     */
+    public static void setElementCaching(boolean status) {
+        elementCaching = status;
+    }
+
     /**
      * Returns all matching WebElements for the specified locator.
      *
@@ -219,19 +538,79 @@ public class DriverManager {
         try {
             return getDriver().findElements(locator);
         } catch (StaleElementReferenceException e) {
+            CommandMetrics.staleRetry();
             return getElements(locator);
         }
     }
 
+    /**
+     * Runs an action with the driver's implicit wait turned off and restores the session's implicit wait afterwards,
+     * even when the action fails.
+     *
+     * @param action the action to run
+     * @return the result of the action
+     */
+    static <T> T withoutImplicitWait(Supplier<T> action) {
+        long implicitWait = getImplicitWaitTimeout();
+
+        if (implicitWait == 0) {
+            return action.get();
+        }
+
+        getDriver().manage().timeouts().implicitlyWait(Duration.ZERO);
+        try {
+            return action.get();
+        } finally {
+            getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWait));
+        }
+    }
+
     public static long getImplicitWaitTimeout() {
-        return implicitWaitTimeout;
+        return session().getImplicitWaitTimeout();
     }
 
+    /**
+     * Returns the implicit wait timeout new sessions start with.
+     *
+     * @return the timeout in seconds
+     */
+    public static long getDefaultImplicitWaitTimeout() {
+        return defaultImplicitWaitTimeout;
+    }
+
+    /**
+     * Sets the implicit wait timeout new sessions start with, without touching the drivers already running.
+     *
+     * @param amount the timeout in seconds
+     */
+    public static void setDefaultImplicitWaitTimeout(long amount) {
+        defaultImplicitWaitTimeout = amount;
+    }
+
+    /**
+     * Sets the implicit wait timeout of the calling thread's driver. The timeout also applies to the drivers the thread
+     * initializes later, so it survives destroyDriver and initDriver on this thread only, other threads keep the default.
+     *
+     * @param amount the timeout in seconds
+     */
     public static void setImplicitWaitTimeout(int amount) {
         whenDriverPresent();
 
-        implicitWaitTimeout = amount;
-        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(getImplicitWaitTimeout()));
+        DriverRegistry.setImplicitWaitTimeout(amount);
+        getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(getImplicitWaitTimeout()));
+    }
+
+    /**
+     * Sets the script timeout of the calling thread's driver.<br>
+     * The observer waits cache the script timeout, so it should be changed through this method.
+     *
+     * @param timeout the script timeout
+     */
+    public static void setScriptTimeout(Duration timeout) {
+        whenDriverPresent();
+
+        getDriver().manage().timeouts().scriptTimeout(timeout);
+        session().setScriptTimeout(timeout);
     }
 
     public static boolean isCloseBrowsers() {
@@ -242,6 +621,135 @@ public class DriverManager {
         closeBrowsers = status;
     }
 
+    /**
+     * Returns the launch profile used by initDriver for the specified browser type.
+     *
+     * @param browserType the browser type
+     * @return the selected profile, DEFAULT when none is set
+     */
+    public static BrowserProfile getBrowserProfile(BrowserType browserType) {
+        return BROWSER_PROFILES.getOrDefault(browserType, BrowserProfile.DEFAULT);
+    }
+
+    /**
+     * Selects the launch profile used by initDriver for the specified browser type.
+     *
+     * @param browserType the browser type
+     * @param profile     the profile to launch the browser with
+     */
+    public static void setBrowserProfile(BrowserType browserType, BrowserProfile profile) {
+        BROWSER_PROFILES.put(browserType, profile);
+    }
+
+    /**
+     * Sets the window size of the profiles which do not maximize the browser.
+     *
+     * @param width  the window width in pixels
+     * @param height the window height in pixels
+     */
+    public static void setProfileWindowSize(int width, int height) {
+        BrowserOptions.setWindowSize(new Dimension(width, height));
+    }
+
+    /**
+     * Overrides the page load strategy of every profile, e.g. NONE to leave the whole page load to the navigation waits.
+     *
+     * @param strategy the page load strategy, null restores the strategy of each profile
+     */
+    public static void setProfilePageLoadStrategy(PageLoadStrategy strategy) {
+        BrowserOptions.setPageLoadStrategy(strategy);
+    }
+
+    /**
+     * Sets the URL patterns blocked by the profiles with URL blocking, e.g. "*google-analytics.com*".
+     *
+     * @param patterns the URL patterns, wildcards are allowed
+     */
+    public static void setBlockedUrlPatterns(List<String> patterns) {
+        BrowserOptions.setBlockedUrlPatterns(patterns);
+    }
+
+    public static boolean isSharedDriverServices() {
+        return sharedDriverServices;
+    }
+
+    /**
+     * Sets whether the local sessions share one long-lived driver service per browser type, or each session starts
+     * and stops its own chromedriver or msedgedriver process (default). Sharing saves the driver process start per
+     * session, it is opt-in.
+     *
+     * @param status true to share the driver services
+     */
+    public static void setSharedDriverServices(boolean status) {
+        sharedDriverServices = status;
+    }
+
+    /**
+     * Starts the shared driver services up front, e.g. at suite start, so the first sessions do not pay for it.
+     * The services are stopped when the JVM shuts down.
+     *
+     * @param browserTypes the browser types whose services are started
+     * @throws WebDriverException when a service can not be started
+     */
+    public static void startDriverServices(BrowserType... browserTypes) throws WebDriverException {
+        for (BrowserType browserType : browserTypes) {
+            DriverServices.start(browserType);
+        }
+    }
+
+    /**
+     * Stops the shared driver services, the sessions still open on them are lost.
+     * The next local session starts them again.
+     */
+    public static void stopDriverServices() {
+        DriverServices.stopAll();
+    }
+
+    public static DriverPool getDriverPool() {
+        return driverPool;
+    }
+
+    /**
+     * Sets the session pool used by initDriver and destroyDriver. Passing null turns pooling off.
+     *
+     * @param pool the pool to lease sessions from
+     */
+    public static void setDriverPool(DriverPool pool) {
+        driverPool = pool;
+    }
+
+    /**
+     * Returns the factory creating the remote sessions on the specified hubs.<br>
+     * When none is registered, one with the default transport settings and least outstanding sessions
+     * hub selection is created.
+     *
+     * @param gridHubUrl the addresses of the selenium grid hubs
+     * @return the RemoteDriverFactory of the hubs
+     * @throws IllegalArgumentException when a hub address is not a valid URL
+     */
+    public static RemoteDriverFactory getRemoteDriverFactory(String... gridHubUrl) throws IllegalArgumentException {
+        return REMOTE_DRIVER_FACTORIES.computeIfAbsent(Arrays.asList(gridHubUrl),
+                hubs -> new RemoteDriverFactory(HubSelection.LEAST_OUTSTANDING, gridHubUrl));
+    }
+
+    /**
+     * Registers a tuned factory for its hubs, initDriver uses it whenever it is called with the same hub addresses.
+     * The factory previously registered for the hubs is shut down.
+     *
+     * @param factory the factory to be used
+     */
+    public static void setRemoteDriverFactory(RemoteDriverFactory factory) {
+        List<String> hubs = new ArrayList<>();
+        for (RemoteDriverFactory.Hub hub : factory.getHubs()) {
+            hubs.add(hub.getUrl().toString());
+        }
+
+        RemoteDriverFactory previous = REMOTE_DRIVER_FACTORIES.put(hubs, factory);
+        if (previous != null && previous != factory) {
+            previous.shutdown();
+        }
+    }
+
     public static String getUrl() {
         return getDriver().getCurrentUrl();
     }
@@ -249,4 +757,31 @@ public class DriverManager {
     public static String getTitle() {
         return getDriver().getTitle();
     }
+
+    /**
+     * FluentWait reporting its time to the TimeBreakdown of the calling thread.
+     */
+    private static final class TimedWait extends FluentWait<WebDriver> {
+        private TimedWait(WebDriver driver) {
+            super(driver);
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        public <V> V until(Function<? super WebDriver, V> isTrue) {
+            int[] polls = {0};
+
+            TimeBreakdown.enter();
+            try (TraceRecorder.Span span = TraceRecorder.span("wait", "FluentWait")) {
+                return super.until(driver -> {
+                    polls[0]++;
+                    try (TraceRecorder.Span poll = TraceRecorder.span("wait", "poll")) {
+                        return isTrue.apply(driver);
+                    }
+                });
+            } finally {
+                TimeBreakdown.exit(CommandType.WAIT, polls[0] > 1);
+            }
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package driver;
 
+import enums.ImageFormat;
 import enums.MouseEvent;
+import enums.NavigationMode;
 import io.cucumber.java.Scenario;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -12,14 +14,25 @@ import ru.yandex.qatools.ashot.AShot;
 import ru.yandex.qatools.ashot.shooting.ShootingStrategies;
 
 import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static driver.DriverManager.getDriver;
 import static driver.DriverManager.getElement;
+import static driver.DriverManager.getWindowRegistry;
+import static driver.DriverManager.invalidateElementCache;
+import static driver.DriverManager.onElement;
+import static driver.DriverManager.withElement;
 
 /**
  * DriverManager class is responsible for handling the WebDriver during the test run.<br>
@@ -28,24 +41,139 @@ import static driver.DriverManager.getElement;
  *
  * @author Andras Fuge
  */
+// the TraceRecorder spans are only opened and closed by try-with-resources, never referenced in the body
+@SuppressWarnings("try")
 public class DriverMethods {
 
     private static final Logger LOG = LogManager.getLogger(DriverMethods.class);
 
+    private static final long MIN_PRESENCE_POLL_MILLIS = 10;
+    private static final long MAX_PRESENCE_POLL_MILLIS = 200;
+
+    private static volatile NavigationMode navigationMode = NavigationMode.LOAD;
+    private static volatile Duration networkQuietPeriod = Duration.ofMillis(500);
+    private static volatile Duration navigationTimeout = Duration.ofSeconds(30);
+    private static volatile VisualDiff visualDiff;
+
+    private static final String COUNT_SCRIPT = DomScripts.FIND_ELEMENTS
+            + "return __sbFind(arguments[0], arguments[1]).length;";
+
+    private static final String DOCUMENT_RECTS_SCRIPT = DomScripts.FIND_ELEMENTS
+            + "var rects = [];"
+            + "arguments[0].forEach(function (locator) {"
+            + "  __sbFind(locator[0], locator[1]).forEach(function (el) {"
+            + "    var r = el.getBoundingClientRect();"
+            + "    rects.push([Math.floor(r.left + window.pageXOffset), Math.floor(r.top + window.pageYOffset), r.width, r.height]);"
+            + "  });"
+            + "});"
+            + "return rects;";
+
+    private static final String BULK_EXTRACT_SCRIPT = DomScripts.FIND_ELEMENTS + DomScripts.IS_VISIBLE + DomScripts.GET_TEXT + DomScripts.GET_ATTRIBUTE
+            + "var els = arguments[0] || __sbFind(arguments[1], arguments[2]);"
+            + "var child = arguments[3], attrs = arguments[4];"
+            + "if (child) {"
+            + "  els = els.reduce(function (all, el) { return all.concat(Array.prototype.slice.call(el.querySelectorAll(child))); }, []);"
+            + "}"
+            + "return els.map(function (el) {"
+            + "  var attributes = {};"
+            + "  attrs.forEach(function (name) { attributes[name] = __sbAttr(el, name); });"
+            + "  return {"
+            + "    tagName: el.tagName.toLowerCase(),"
+            + "    text: __sbVisible(el) ? __sbText(el) : '',"
+            + "    value: el.value === undefined ? null : el.value,"
+            + "    displayed: __sbVisible(el),"
+            + "    enabled: !el.disabled,"
+            + "    selected: !!(el.selected || el.checked),"
+            + "    attributes: attributes"
+            + "  };"
+            + "});";
+
+    /**
+     * Returns the condition on which navigate and refresh return.
+     *
+     * @return the NavigationMode, LOAD by default
+     */
+    public static NavigationMode getNavigationMode() {
+        return navigationMode;
+    }
+
+    /**
+     * Sets the condition on which navigate and refresh return. Set DOM_CONTENT_LOADED before the driver is initialized,
+     * the browser is then launched with the EAGER page load strategy the mode needs.
+     *
+     * @param mode the NavigationMode
+     */
+    public static void setNavigationMode(NavigationMode mode) {
+        navigationMode = mode;
+    }
+
+    /**
+     * Returns the time without fetch/XHR activity after which the page counts as idle in NETWORK_IDLE mode.
+     *
+     * @return the quiet period
+     */
+    public static Duration getNetworkQuietPeriod() {
+        return networkQuietPeriod;
+    }
+
+    public static void setNetworkQuietPeriod(Duration quietPeriod) {
+        networkQuietPeriod = quietPeriod;
+    }
+
+    /**
+     * Returns the maximum time the DOM_CONTENT_LOADED and NETWORK_IDLE modes wait after the navigation command.
+     *
+     * @return the navigation timeout
+     */
+    public static Duration getNavigationTimeout() {
+        return navigationTimeout;
+    }
+
+    public static void setNavigationTimeout(Duration timeout) {
+        navigationTimeout = timeout;
+    }
+
     /**
      * Navigates to the specified url.
      *
      * @param url the url to navigate to
      */
     public static void navigate(String url) {
-        getDriver().navigate().to(url);
+        navigate(url, navigationMode);
+    }
+
+    /**
+     * Navigates to the specified url and returns when the navigation mode's condition holds.
+     *
+     * @param url  the url to navigate to
+     * @param mode the condition on which the navigation is complete
+     */
+    public static void navigate(String url, NavigationMode mode) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "navigate", url)) {
+            invalidateElementCache();
+            getWindowRegistry().invalidateCurrent();
+            NavigationWait.navigate(url, mode, networkQuietPeriod, navigationTimeout);
+        }
     }
 
     /**
      * Refreshes the active page.
      */
     public static void refresh() {
-        getDriver().navigate().refresh();
+        refresh(navigationMode);
+    }
+
+    /**
+     * Refreshes the active page and returns when the navigation mode's condition holds.
+     *
+     * @param mode the condition on which the navigation is complete
+     */
+    public static void refresh(NavigationMode mode) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "refresh")) {
+            invalidateElementCache();
+            getWindowRegistry().invalidateCurrent();
+            NavigationWait.navigate(null, mode, networkQuietPeriod, navigationTimeout);
+        }
     }
 
     /**
@@ -54,28 +182,52 @@ public class DriverMethods {
      * @return the set of window handles
      */
     public static Set<String> getTabs() {
-        return getDriver().getWindowHandles();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getTabs")) {
+            Set<String> windows = getDriver().getWindowHandles();
+            getWindowRegistry().sync(windows);
+
+            return windows;
+        }
     }
 
     /**
-     * Switches the active window to the specified browser tab based on the title of the tab.
+     * Switches the active window to the specified browser tab based on the title of the tab.<br>
+     * Tabs with a known title are matched without a round trip, only tabs whose title may have changed are probed.
      *
      * @param windowTitle the title of the tab to switch to
      * @throws NoSuchWindowException when the tab is not found
      */
     public static void switchToTab(String windowTitle) throws NoSuchWindowException {
-        Set<String> windows = getDriver().getWindowHandles();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "switchToTab", windowTitle)) {
+            WindowRegistry registry = getWindowRegistry();
+            String known = registry.findByKnownTitle(windowTitle);
 
-        for (String window : windows) {
-            getDriver().switchTo().window(window);
-            if (getDriver().getTitle().contains(windowTitle)) {
+            if (known != null && trySwitchToWindow(known)) {
                 return;
             }
-        }
 
-        String errorMessage = String.format("No window found with title: [%s]", windowTitle);
-        LOG.error(errorMessage);
-        throw new NoSuchWindowException(errorMessage);
+            registry.sync(getDriver().getWindowHandles());
+            if (registry.getCurrent() == null) {
+                registry.setCurrent(getDriver().getWindowHandle());
+            }
+
+            for (String window : registry.getUnknownTitles()) {
+                if (!window.equals(registry.getCurrent())) {
+                    switchToWindowHandle(window);
+                }
+
+                String title = getDriver().getTitle();
+                registry.titleProbed(window, title);
+
+                if (title.contains(windowTitle)) {
+                    return;
+                }
+            }
+
+            String errorMessage = String.format("No window found with title: [%s]", windowTitle);
+            LOG.error(errorMessage);
+            throw new NoSuchWindowException(errorMessage);
+        }
     }
 
     /**
@@ -85,37 +237,56 @@ public class DriverMethods {
      * @throws NoSuchWindowException when the tab is not found
      */
     public static void switchToWindowHandle(String windowHandler) throws NoSuchWindowException {
-        Set<String> windows = getDriver().getWindowHandles();
-
-        for (String window : windows) {
-            getDriver().switchTo().window(window);
-            if (windowHandler.equals(getDriver().getWindowHandle())) {
-                return;
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "switchToWindowHandle", windowHandler)) {
+            if (!trySwitchToWindow(windowHandler)) {
+                String errorMessage = String.format("No window found with handle: [%s]", windowHandler);
+                LOG.error(errorMessage);
+                throw new NoSuchWindowException(errorMessage);
             }
         }
+    }
+
+    private static boolean trySwitchToWindow(String windowHandler) {
+        invalidateElementCache();
 
-        String errorMessage = String.format("No window found with title: [%s]", windowHandler);
-        LOG.error(errorMessage);
-        throw new NoSuchWindowException(errorMessage);
+        try {
+            getDriver().switchTo().window(windowHandler);
+        } catch (NoSuchWindowException e) {
+            getWindowRegistry().closed(windowHandler);
+            return false;
+        }
+
+        getWindowRegistry().setCurrent(windowHandler);
+        return true;
     }
 
     /**
      * Creates and switches to a new browser tab.
      */
     public static void openNewTab() {
-        Set<String> oldWindows = getDriver().getWindowHandles();
-
-        executeJavaScript("window.open();");
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "openNewTab")) {
+            invalidateElementCache();
+            getDriver().switchTo().newWindow(WindowType.TAB);
+            if (DriverRegistry.current().getBrowserProfile() != null) {
+                BrowserOptions.applyRuntimeProfile(getDriver(), DriverRegistry.current().getBrowserProfile());
+            }
 
-        Set<String> newWindows = getDriver().getWindowHandles();
-        switchToTab(getNewestWindowTitle(oldWindows, newWindows));
+            String handle = getDriver().getWindowHandle();
+            getWindowRegistry().opened(handle);
+            getWindowRegistry().setCurrent(handle);
+        }
     }
 
     /**
      * Closes the active browser tab.
      */
     public static void closeCurrentTab() {
-        getDriver().close();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "closeCurrentTab")) {
+            invalidateElementCache();
+            SessionReset.recordHistory(getDriver(), DriverRegistry.current().getVisitedOrigins());
+            getWindowRegistry().closed(getWindowRegistry().getCurrent());
+            getDriver().close();
+        }
     }
 
     /**
@@ -141,7 +312,12 @@ public class DriverMethods {
      * @param locator By locator of the frame to switch to
      */
     public static void setFrame(By locator) {
-        getDriver().switchTo().defaultContent().switchTo().frame(getElement(locator));
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "setFrame", locator)) {
+            WebElement frame = getElement(locator);
+
+            invalidateElementCache();
+            getDriver().switchTo().defaultContent().switchTo().frame(frame);
+        }
     }
 
     /**
@@ -150,47 +326,63 @@ public class DriverMethods {
      * @param locator By locator of the element to click on
      */
     public static void clickElement(By locator) {
-        DriverManager.getElement(locator).click();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "clickElement", locator)) {
+            onElement(locator, WebElement::click);
+        }
     }
 
     /**
-     * Executes the specified mouse action.
+     * Executes the specified mouse action.<br>
+     * MOUSE_TO_ORIGO moves the pointer to the top left corner of the viewport.
      *
-     * @param locator By locator of the element to execute the action on.
+     * @param locator By locator of the element to execute the action on, not used by MOUSE_UP and MOUSE_TO_ORIGO
      * @param event   the specified mouse action of the type MouseEvent
      * @see MouseEvent
      */
     public static void mouseAction(By locator, MouseEvent event) {
-        PointerInput mouse = new PointerInput(PointerInput.Kind.MOUSE, "Mouse");
-        Actions actions = new Actions(getDriver());
-        WebElement element = DriverManager.getElement(locator);
-
-        switch (event) {
-            case CLICK:
-                clickElement(locator);
-                break;
-            case DOUBLE_CLICK:
-                actions.doubleClick(element).build().perform();
-                break;
-            case RIGHT_CLICK:
-                actions.contextClick(element).build().perform();
-                break;
-            case MOUSE_UP:
-                actions.release();
-                break;
-            case MOUSE_DOWN:
-                actions.clickAndHold(element);
-                break;
-            case MOUSE_HOVER:
-                actions.moveToElement(element);
-                break;
-            case MOUSE_TO_ORIGO:
-                actions.moveByOffset(-element.getLocation().getX(), -element.getLocation().getY());
-                break;
-            default:
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "mouseAction", locator)) {
+            DriverManager.invalidateDomSnapshot();
+            // same input source id as the Actions' own mouse, so the pointer keeps its position and pressed buttons
+            PointerInput mouse = new PointerInput(PointerInput.Kind.MOUSE, "default mouse");
+
+            // every branch builds its own Actions, so a stale element retry does not replay the previous attempt
+            switch (event) {
+                case CLICK:
+                    clickElement(locator);
+                    break;
+                case DOUBLE_CLICK:
+                    onElement(locator, element -> new Actions(getDriver()).doubleClick(element).build().perform());
+                    break;
+                case RIGHT_CLICK:
+                    onElement(locator, element -> new Actions(getDriver()).contextClick(element).build().perform());
+                    break;
+                case MOUSE_UP:
+                    new Actions(getDriver()).release().perform();
+                    break;
+                case MOUSE_DOWN:
+                    onElement(locator, element -> new Actions(getDriver()).clickAndHold(element).perform());
+                    break;
+                case MOUSE_HOVER:
+                    onElement(locator, element -> new Actions(getDriver()).moveToElement(element).perform());
+                    break;
+                case MOUSE_TO_ORIGO:
+                    new Actions(getDriver()).tick(mouse.createPointerMove(Duration.ZERO, PointerInput.Origin.viewport(), 0, 0)).perform();
+                    break;
+                default:
+            }
         }
     }
 
+    /**
+     * Starts a batch of element operations which are run with a single script execution.
+     *
+     * @return a new, empty ActionBatch
+     * @see ActionBatch
+     */
+    public static ActionBatch batch() {
+        return new ActionBatch();
+    }
+
     /**
      * Sends a specified key to the element.
      *
@@ -198,7 +390,9 @@ public class DriverMethods {
      * @param key     the specified key of type Keys
      */
     public static void sendKey(By locator, Keys key) {
-        getElement(locator).sendKeys(key);
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "sendKey", locator)) {
+            onElement(locator, element -> element.sendKeys(key));
+        }
     }
 
     /**
@@ -208,8 +402,12 @@ public class DriverMethods {
      * @param input   the specified text input
      */
     public static void setText(By locator, String input) {
-        clear(locator);
-        getElement(locator).sendKeys(input);
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "setText", locator)) {
+            onElement(locator, element -> {
+                element.clear();
+                element.sendKeys(input);
+            });
+        }
     }
 
     /**
@@ -218,7 +416,9 @@ public class DriverMethods {
      * @param locator By locator of the element
      */
     public static void clear(By locator) {
-        getElement(locator).clear();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "clear", locator)) {
+            onElement(locator, WebElement::clear);
+        }
     }
 
     /**
@@ -228,9 +428,12 @@ public class DriverMethods {
      * @param status  status to be set
      */
     public static void setCheckboxStatus(By locator, boolean status) {
-        WebElement checkbox = getElement(locator);
-        if (status != checkbox.isSelected()) {
-            checkbox.click();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "setCheckboxStatus", locator)) {
+            onElement(locator, checkbox -> {
+                if (status != checkbox.isSelected()) {
+                    checkbox.click();
+                }
+            });
         }
     }
 
@@ -241,11 +444,12 @@ public class DriverMethods {
      * @param itemText text of the item to be selected
      */
     public static void selectItemFromDropdown(By locator, String itemText) {
-        try {
-            Select select = new Select(getElement(locator));
-            select.selectByVisibleText(itemText);
-        } catch (Exception e) {
-            e.printStackTrace();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "selectItemFromDropdown", locator)) {
+            try {
+                onElement(locator, element -> new Select(element).selectByVisibleText(itemText));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -256,11 +460,12 @@ public class DriverMethods {
      * @param itemOrder order number of the item to be selected
      */
     public static void selectItemFromDropdown(By locator, int itemOrder) {
-        try {
-            Select select = new Select(getElement(locator));
-            select.selectByIndex(itemOrder);
-        } catch (Exception e) {
-            e.printStackTrace();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "selectItemFromDropdown", locator)) {
+            try {
+                onElement(locator, element -> new Select(element).selectByIndex(itemOrder));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -271,11 +476,12 @@ public class DriverMethods {
      * @param value   value of the item to be selected
      */
     public static void selectValueFromDropdown(By locator, String value) {
-        try {
-            Select select = new Select(getElement(locator));
-            select.selectByVisibleText(value);
-        } catch (Exception e) {
-            e.printStackTrace();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "selectValueFromDropdown", locator)) {
+            try {
+                onElement(locator, element -> new Select(element).selectByVisibleText(value));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -286,9 +492,18 @@ public class DriverMethods {
      * @return text of the selected option
      */
     public static String getSelectedOption(By locator) {
-        Select select = new Select(getElement(locator));
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getSelectedOption", locator)) {
+            List<DomSnapshot.Node> dropdowns = fromSnapshot(locator);
+            if (dropdowns != null) {
+                for (DomSnapshot.Node option : dropdowns.get(0).getDescendants("option")) {
+                    if (option.is(DomSnapshot.SELECTED)) {
+                        return option.getText();
+                    }
+                }
+            }
 
-        return select.getFirstSelectedOption().getText();
+            return withElement(locator, element -> new Select(element).getFirstSelectedOption().getText());
+        }
     }
 
     /**
@@ -298,15 +513,28 @@ public class DriverMethods {
      * @return the list of option texts
      */
     public static List<String> getOptions(By locator) {
-        Select select = new Select(getElement(locator));
-        List<WebElement> elements = select.getOptions();
-        List<String> options = new ArrayList<>();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getOptions", locator)) {
+            List<DomSnapshot.Node> dropdowns = fromSnapshot(locator);
+            if (dropdowns != null) {
+                List<String> options = new ArrayList<>();
 
-        for (WebElement element : elements) {
-            options.add(element.getText());
-        }
+                for (DomSnapshot.Node option : dropdowns.get(0).getDescendants("option")) {
+                    options.add(option.getText());
+                }
+
+                return options;
+            }
+
+            return withElement(locator, dropdown -> {
+                List<String> options = new ArrayList<>();
 
-        return options;
+                for (WebElement element : new Select(dropdown).getOptions()) {
+                    options.add(element.getText());
+                }
+
+                return options;
+            });
+        }
     }
 
     /**
@@ -317,7 +545,14 @@ public class DriverMethods {
      * @return value of the element's attribute
      */
     public static String getAttribute(By locator, String attribute) {
-        return getElement(locator).getAttribute(attribute);
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getAttribute", locator)) {
+            List<DomSnapshot.Node> elements = fromSnapshot(locator);
+            if (elements != null && DomSnapshot.canReadAttribute(attribute)) {
+                return getDomSnapshot().readAttribute(elements.get(0), attribute);
+            }
+
+            return withElement(locator, element -> element.getAttribute(attribute));
+        }
     }
 
     /**
@@ -327,7 +562,192 @@ public class DriverMethods {
      * @return text of the element
      */
     public static String getText(By locator) {
-        return getElement(locator).getText();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getText", locator)) {
+            List<DomSnapshot.Node> elements = fromSnapshot(locator);
+            if (elements != null) {
+                return elements.get(0).getText();
+            }
+
+            return withElement(locator, WebElement::getText);
+        }
+    }
+
+    /* Bulk extraction */
+
+    /**
+     * Returns the properties of every element matching the locator in a single script execution.
+     *
+     * @param locator    By locator of the elements
+     * @param attributes the attributes to be read from each element
+     * @return the list of element data, empty when no element matches
+     */
+    public static List<ElementData> getElementData(By locator, String... attributes) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getElementData", locator)) {
+            return extractElementData(locator, null, attributes);
+        }
+    }
+
+    /**
+     * Returns the texts of every element matching the locator in a single script execution.
+     *
+     * @param locator By locator of the elements
+     * @return the list of element texts
+     */
+    public static List<String> getTexts(By locator) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getTexts", locator)) {
+            List<String> texts = new ArrayList<>();
+
+            for (ElementData data : getElementData(locator)) {
+                texts.add(data.getText());
+            }
+
+            return texts;
+        }
+    }
+
+    /**
+     * Returns the specified attribute of every element matching the locator in a single script execution.
+     *
+     * @param locator   By locator of the elements
+     * @param attribute the attribute to be returned
+     * @return the list of attribute values
+     */
+    public static List<String> getAttributes(By locator, String attribute) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getAttributes", locator)) {
+            List<String> values = new ArrayList<>();
+
+            for (ElementData data : getElementData(locator, attribute)) {
+                values.add(data.getAttribute(attribute));
+            }
+
+            return values;
+        }
+    }
+
+    /**
+     * Returns all option texts of the specified dropdown in a single script execution.
+     *
+     * @param locator By locator of the dropdown
+     * @return the list of option texts
+     */
+    public static List<String> getOptionTexts(By locator) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "getOptionTexts", locator)) {
+            List<String> options = new ArrayList<>();
+
+            for (ElementData data : extractElementData(locator, "option")) {
+                options.add(data.getText());
+            }
+
+            return options;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ElementData> extractElementData(By locator, String childSelector, String... attributes) {
+        List<ElementData> fromSnapshot = extractFromSnapshot(locator, childSelector, attributes);
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+
+        String[] w3cLocator = DomScripts.toW3cLocator(locator);
+        Object result;
+
+        if (w3cLocator != null) {
+            result = runScript(BULK_EXTRACT_SCRIPT, null, w3cLocator[0], w3cLocator[1],
+                    childSelector, Arrays.asList(attributes));
+        } else {
+            result = runScript(BULK_EXTRACT_SCRIPT, DriverManager.getElements(locator), null, null,
+                    childSelector, Arrays.asList(attributes));
+        }
+
+        List<ElementData> elements = new ArrayList<>();
+
+        if (result instanceof List) {
+            for (Object raw : (List<Object>) result) {
+                elements.add(ElementData.fromScriptResult((Map<String, Object>) raw));
+            }
+        }
+
+        return elements;
+    }
+
+    private static List<ElementData> extractFromSnapshot(By locator, String childSelector, String... attributes) {
+        List<DomSnapshot.Node> elements = fromSnapshot(locator);
+        CssSelector children = childSelector == null ? null : CssSelector.parse(childSelector);
+
+        if (elements == null || (childSelector != null && children == null)) {
+            return null;
+        }
+        for (String attribute : attributes) {
+            if (!DomSnapshot.canReadAttribute(attribute)) {
+                return null;
+            }
+        }
+
+        List<ElementData> data = new ArrayList<>();
+        for (DomSnapshot.Node element : elements) {
+            for (DomSnapshot.Node node : children == null ? Collections.singletonList(element) : element.getDescendants(null)) {
+                if (children == null || children.matches(node)) {
+                    data.add(getDomSnapshot().toElementData(node, attributes));
+                }
+            }
+        }
+
+        return data;
+    }
+
+    /* DOM snapshot */
+
+    /**
+     * Pulls the DOM of the current page, with the visibility, enabled and selected state of every element, in a single
+     * script execution.<br>
+     * Until the next navigation, frame or window switch, alert, element interaction or executeJavaScript call, the
+     * read-only methods (getText, getAttribute, isDisplayed, isEnabled, the dropdown reads, the bulk extraction and
+     * the presence checks) evaluate CSS, XPath and the other locators against the snapshot without a browser round
+     * trip. Locators the snapshot can not evaluate and locators matching nothing in it are still sent to the browser.
+     *
+     * @return the number of elements in the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static int takeDomSnapshot() {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "takeDomSnapshot")) {
+            DomSnapshot snapshot = DomSnapshot.fromScriptResult(
+                    (Map<String, Object>) runScript(DomSnapshot.SNAPSHOT_SCRIPT, DomSnapshot.getScriptArgument()));
+
+            DriverRegistry.current().setDomSnapshot(snapshot);
+
+            return snapshot.size();
+        }
+    }
+
+    /**
+     * Drops the DOM snapshot, so the element reads go to the browser again, e.g. after the page changed on its own.
+     */
+    public static void releaseDomSnapshot() {
+        DriverManager.invalidateDomSnapshot();
+    }
+
+    /**
+     * Returns whether the element reads are served from a DOM snapshot, see takeDomSnapshot.
+     *
+     * @return true when the session has a valid snapshot
+     */
+    public static boolean hasDomSnapshot() {
+        return getDomSnapshot() != null;
+    }
+
+    private static DomSnapshot getDomSnapshot() {
+        return DriverRegistry.current().getDomSnapshot();
+    }
+
+    /**
+     * Returns the snapshot elements matching the locator, or null when the browser has to be asked.
+     */
+    private static List<DomSnapshot.Node> fromSnapshot(By locator) {
+        DomSnapshot snapshot = getDomSnapshot();
+        List<DomSnapshot.Node> elements = snapshot == null ? null : snapshot.findElements(locator);
+
+        return elements == null || elements.isEmpty() ? null : elements;
     }
 
     /* Element status */
@@ -339,7 +759,14 @@ public class DriverMethods {
      * @return boolean value of the display status
      */
     public static boolean isDisplayed(By locator) {
-        return getElement(locator).isDisplayed();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "isDisplayed", locator)) {
+            List<DomSnapshot.Node> elements = fromSnapshot(locator);
+            if (elements != null) {
+                return elements.get(0).is(DomSnapshot.VISIBLE);
+            }
+
+            return withElement(locator, WebElement::isDisplayed);
+        }
     }
 
     /**
@@ -349,38 +776,133 @@ public class DriverMethods {
      * @return boolean value of the enabled status
      */
     public static boolean isEnabled(By locator) {
-        return getElement(locator).isEnabled();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "isEnabled", locator)) {
+            List<DomSnapshot.Node> elements = fromSnapshot(locator);
+            if (elements != null) {
+                return elements.get(0).is(DomSnapshot.ENABLED);
+            }
+
+            return withElement(locator, WebElement::isEnabled);
+        }
     }
 
     /**
-     * Returns the presence status of an element.
+     * Returns the presence status of an element, waiting up to the implicit wait timeout for it to appear.
      *
      * @param locator By locator of the element
      * @return boolean value of the presence status
      */
     public static boolean isPresent(By locator) {
-        try {
-            getElement(locator);
+        return isPresent(locator, Duration.ofSeconds(DriverManager.getImplicitWaitTimeout()));
+    }
+
+    /**
+     * Returns the presence status of an element, waiting up to the specified budget for it to appear.<br>
+     * The check does not use the driver's implicit wait, so the budget is the only time spent waiting.
+     *
+     * @param locator By locator of the element
+     * @param budget  the maximum time to wait, zero checks once
+     * @return boolean value of the presence status
+     */
+    public static boolean isPresent(By locator, Duration budget) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "isPresent", locator)) {
+            return pollMatchCount(locator, budget, true);
+        }
+    }
+
+    /**
+     * Returns whether no element matches the locator right now, without paying any implicit wait.
+     *
+     * @param locator By locator of the element
+     * @return true when the element does not exist
+     */
+    public static boolean isAbsent(By locator) {
+        return isAbsent(locator, Duration.ZERO);
+    }
+
+    /**
+     * Returns whether no element matches the locator, waiting up to the specified budget for it to go away.
+     *
+     * @param locator By locator of the element
+     * @param budget  the maximum time to wait, zero checks once
+     * @return true when the element does not exist
+     */
+    public static boolean isAbsent(By locator, Duration budget) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "isAbsent", locator)) {
+            return pollMatchCount(locator, budget, false);
+        }
+    }
+
+    private static boolean pollMatchCount(By locator, Duration budget, boolean expectPresent) {
+        // a snapshot answers only when it already satisfies the condition, waiting for a change needs the live page
+        DomSnapshot snapshot = getDomSnapshot();
+        List<DomSnapshot.Node> snapshotMatches = snapshot == null ? null : snapshot.findElements(locator);
+        if (snapshotMatches != null && snapshotMatches.isEmpty() != expectPresent) {
             return true;
-        } catch (NoSuchElementException e) {
-            return false;
         }
+
+        long deadline = System.nanoTime() + budget.toNanos();
+        long interval = MIN_PRESENCE_POLL_MILLIS;
+
+        while (true) {
+            if ((countMatches(locator) > 0) == expectPresent) {
+                return true;
+            }
+
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(Math.min(interval, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            interval = Math.min(interval * 2, MAX_PRESENCE_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Counts the elements matching the locator with a script probe, or with findElements and no implicit wait.
+     */
+    private static int countMatches(By locator) {
+        String[] w3cLocator = DomScripts.toW3cLocator(locator);
+
+        if (w3cLocator != null && getDriver() instanceof JavascriptExecutor) {
+            try {
+                Object count = runScript(COUNT_SCRIPT, w3cLocator[0], w3cLocator[1]);
+                return ((Number) count).intValue();
+            } catch (JavascriptException e) {
+                LOG.debug("Script probe failed, falling back to findElements: {}", e.getMessage());
+            }
+        }
+
+        return DriverManager.withoutImplicitWait(() -> getDriver().findElements(locator).size());
     }
 
     /**
      * Accepts a standard browser alert.
      */
     public static void acceptAlert() {
-        getDriver().switchTo().alert().accept();
-        getDriver().switchTo().defaultContent();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "acceptAlert")) {
+            getDriver().switchTo().alert().accept();
+            getDriver().switchTo().defaultContent();
+            invalidateElementCache();
+        }
     }
 
     /**
      * Dismisses a standard browser alert
      */
     public static void dismissAlert() {
-        getDriver().switchTo().alert().dismiss();
-        getDriver().switchTo().defaultContent();
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "dismissAlert")) {
+            getDriver().switchTo().alert().dismiss();
+            getDriver().switchTo().defaultContent();
+            invalidateElementCache();
+        }
     }
 
     /**
@@ -390,12 +912,89 @@ public class DriverMethods {
      * @throws IOException when the output image cannot be created
      */
     public static byte[] takeScreenShot() throws IOException {
-        ByteArrayOutputStream screenshot = new ByteArrayOutputStream();
-        ImageIO.write(new AShot().shootingStrategy(ShootingStrategies.viewportNonRetina(100, 0, 0)).takeScreenshot(getDriver()).getImage(), "png", screenshot);
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "takeScreenShot")) {
+            ByteArrayOutputStream screenshot = new ByteArrayOutputStream();
+            ImageIO.write(captureFullPage(), "png", screenshot);
+
+            screenshot.flush();
+
+            return screenshot.toByteArray();
+        }
+    }
+
+    private static BufferedImage captureFullPage() {
+        return new AShot().shootingStrategy(ShootingStrategies.viewportNonRetina(100, 0, 0)).takeScreenshot(getDriver()).getImage();
+    }
+
+    /**
+     * Captures the entire page and compares it with its baseline, see VisualDiff.
+     *
+     * @param name            the name of the baseline
+     * @param ignoredElements By locators of the elements excluded from the comparison, e.g. clocks or ads
+     * @return the result of the comparison
+     * @see VisualDiff
+     */
+    public static VisualDiff.Result compareScreenShot(String name, By... ignoredElements) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "compareScreenShot", name)) {
+            List<Rectangle> ignoredRegions = getDocumentRects(ignoredElements);
+
+            return getVisualDiff().compare(name, captureFullPage(), ignoredRegions);
+        }
+    }
+
+    /**
+     * Returns the areas of the matching elements in document coordinates, the coordinates of the full page capture.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Rectangle> getDocumentRects(By... locators) {
+        List<Rectangle> rects = new ArrayList<>();
+        List<List<String>> w3cLocators = new ArrayList<>();
+
+        for (By locator : locators) {
+            String[] w3cLocator = DomScripts.toW3cLocator(locator);
+
+            if (w3cLocator != null) {
+                w3cLocators.add(Arrays.asList(w3cLocator));
+            } else {
+                for (WebElement element : DriverManager.withoutImplicitWait(() -> DriverManager.getElements(locator))) {
+                    org.openqa.selenium.Rectangle rect = element.getRect();
+                    rects.add(new Rectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()));
+                }
+            }
+        }
+
+        if (!w3cLocators.isEmpty()) {
+            for (List<Number> rect : (List<List<Number>>) runScript(DOCUMENT_RECTS_SCRIPT, w3cLocators)) {
+                rects.add(new Rectangle(rect.get(0).intValue(), rect.get(1).intValue(),
+                        (int) Math.ceil(rect.get(2).doubleValue()), (int) Math.ceil(rect.get(3).doubleValue())));
+            }
+        }
+
+        return rects;
+    }
 
-        screenshot.flush();
+    public static VisualDiff getVisualDiff() {
+        VisualDiff engine = visualDiff;
 
-        return screenshot.toByteArray();
+        if (engine == null) {
+            synchronized (DriverMethods.class) {
+                if (visualDiff == null) {
+                    visualDiff = new VisualDiff();
+                }
+                engine = visualDiff;
+            }
+        }
+
+        return engine;
+    }
+
+    /**
+     * Sets the engine used by compareScreenShot, e.g. one with other directories or tolerances.
+     *
+     * @param engine the visual diff engine
+     */
+    public static void setVisualDiff(VisualDiff engine) {
+        visualDiff = engine;
     }
 
     /**
@@ -405,7 +1004,35 @@ public class DriverMethods {
      * @return the screenshot as a byte array
      */
     public static byte[] takeScreenShotOfElement(By locator) {
-        return getElement(locator).getScreenshotAs(OutputType.BYTES);
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "takeScreenShotOfElement", locator)) {
+            return withElement(locator, element -> element.getScreenshotAs(OutputType.BYTES));
+        }
+    }
+
+    /**
+     * Captures screenshot of the viewport, only the capture happens on the calling thread.
+     *
+     * @param format the output format of the image
+     * @param scale  the downscale factor between 0 and 1, 1 keeps the original size
+     * @return future of the screenshot image as a byte array
+     * @see ScreenshotService
+     */
+    public static CompletableFuture<byte[]> takeScreenShotAsync(ImageFormat format, double scale) {
+        return ScreenshotService.capture(format, scale);
+    }
+
+    /**
+     * Captures screenshot of the viewport, encodes it in the background and attaches it to a Cucumber scenario on the
+     * calling thread. Call ScreenshotService.awaitPending in an After hook to attach the last ones.
+     *
+     * @param scenario the specified scenario to get extended with screenshot
+     * @param format   the output format of the image
+     * @param scale    the downscale factor between 0 and 1, 1 keeps the original size
+     * @return future completing once the screenshot is encoded
+     * @see ScreenshotService
+     */
+    public static CompletableFuture<Void> addScreenshotToScenarioAsync(Scenario scenario, ImageFormat format, double scale) {
+        return ScreenshotService.captureToScenario(scenario, format, scale);
     }
 
     /**
@@ -430,6 +1057,17 @@ public class DriverMethods {
      * @return return value of the Javascript command
      */
     public static Object executeJavaScript(String script, Object... args) {
+        try (TraceRecorder.Span span = TraceRecorder.span("DriverMethods", "executeJavaScript")) {
+            DriverManager.invalidateDomSnapshot();
+
+            return runScript(script, args);
+        }
+    }
+
+    /**
+     * Executes a read-only script of the framework, keeping the DOM snapshot.
+     */
+    private static Object runScript(String script, Object... args) {
         JavascriptExecutor executor;
         if (getDriver() instanceof JavascriptExecutor) {
             executor = (JavascriptExecutor) getDriver();
@@ -0,0 +1,344 @@
+package driver;
+
+import enums.BrowserType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-launched browser sessions.<br>
+ * Browsers are launched in the background and leased to scenarios by DriverManager.initDriver,
+ * DriverManager.destroyDriver returns them to the pool instead of quitting them.<br>
+ * Returned sessions are reset, health-checked and recycled after a number of uses, when idle for too long or
+ * when over the memory budget set in DriverManager. A failed launch is retried with an increasing delay, so a transient
+ * grid or driver error does not shrink the pool.
+ *
+ * @author Andras Fuge
+ */
+public class DriverPool {
+    private static final Logger LOG = LogManager.getLogger(DriverPool.class);
+    private static final long MIN_RELAUNCH_DELAY_MILLIS = 1_000;
+    private static final long MAX_RELAUNCH_DELAY_MILLIS = 60_000;
+
+    private final BrowserType browserType;
+    private final String[] gridHubUrl;
+    private final int size;
+    private final int maxUses;
+    private final Duration maxIdle;
+    private final Duration leaseTimeout;
+
+    private final LinkedBlockingDeque<PooledDriver> idle = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService launcher;
+    private final AtomicInteger alive = new AtomicInteger();
+    private volatile boolean shutdown = false;
+
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong leaseWaitNanos = new AtomicLong();
+    private final AtomicLong launchCount = new AtomicLong();
+    private final AtomicLong launchNanos = new AtomicLong();
+    private final AtomicLong launchFailureCount = new AtomicLong();
+    private final AtomicLong recycleCount = new AtomicLong();
+
+    /**
+     * Creates a pool and starts launching its browsers in the background.
+     *
+     * @param browserType  the browser type of the pooled sessions
+     * @param size         the number of sessions kept alive
+     * @param maxUses      the number of leases after which a session is recycled
+     * @param maxIdle      the idle time after which a session is recycled
+     * @param leaseTimeout the maximum time to wait for a free session
+     * @param gridHubUrl   the address of the selenium grid hub
+     */
+    public DriverPool(BrowserType browserType, int size, int maxUses, Duration maxIdle, Duration leaseTimeout, String... gridHubUrl) {
+        if (size < 1 || maxUses < 1) {
+            throw new IllegalArgumentException("Pool size and maximum uses must be positive!");
+        }
+
+        this.browserType = browserType;
+        this.gridHubUrl = gridHubUrl;
+        this.size = size;
+        this.maxUses = maxUses;
+        this.maxIdle = maxIdle;
+        this.leaseTimeout = leaseTimeout;
+        this.launcher = Executors.newScheduledThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "driver-pool-launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < size; i++) {
+            launchInBackground();
+        }
+    }
+
+    /**
+     * Returns whether the pool serves sessions of the specified browser type.
+     *
+     * @param type the requested browser type
+     * @return true when the pool can serve the browser type
+     */
+    public boolean supports(BrowserType type) {
+        return browserType.equals(type);
+    }
+
+    /**
+     * Leases a healthy session from the pool, waiting for one to become available if necessary.
+     *
+     * @return the leased session
+     * @throws IllegalStateException when no session becomes available within the lease timeout
+     */
+    PooledDriver lease() throws IllegalStateException {
+        long start = System.nanoTime();
+        long deadline = start + leaseTimeout.toNanos();
+
+        try {
+            while (!shutdown) {
+                PooledDriver pooled = idle.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                if (pooled == null) {
+                    break;
+                }
+
+                if (pooled.isIdleFor(maxIdle) || !pooled.isHealthy()) {
+                    recycle(pooled);
+                    continue;
+                }
+
+                pooled.uses++;
+                leaseCount.incrementAndGet();
+                leaseWaitNanos.addAndGet(System.nanoTime() - start);
+
+                return pooled;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String errorMessage = String.format("No pooled %s session became available within %d ms", browserType, leaseTimeout.toMillis());
+        LOG.error(errorMessage);
+        throw new IllegalStateException(errorMessage);
+    }
+
+    /**
+     * Returns a leased session to the pool.
+     *
+     * @param pooled         the session to return
+     * @param visitedOrigins the origins the session visited, cleared by the reset
+     */
+    void giveBack(PooledDriver pooled, Set<String> visitedOrigins) {
+        if (shutdown || pooled.uses >= maxUses || !pooled.isHealthy() || isOverMemoryBudget(pooled)) {
+            recycle(pooled);
+            return;
+        }
+
+        try {
+            SessionReset.reset(pooled.driver, 0, visitedOrigins);
+        } catch (WebDriverException | IllegalStateException e) {
+            LOG.debug("Pooled session could not be reset, recycling it: {}", e.getMessage());
+            recycle(pooled);
+            return;
+        }
+
+        pooled.lastReturned = System.nanoTime();
+        idle.offerLast(pooled);
+    }
+
+    private boolean isOverMemoryBudget(PooledDriver pooled) {
+        long budget = DriverManager.getMemoryBudget();
+        if (budget <= 0) {
+            return false;
+        }
+
+        long rss = BrowserProcesses.getResidentSetSize(pooled.driver);
+        if (rss > budget) {
+            LOG.info("Recycling pooled {} session using {} MB, over the {} MB budget", browserType, rss >> 20, budget >> 20);
+            return true;
+        }
+
+        return false;
+    }
+
+    private void recycle(PooledDriver pooled) {
+        recycleCount.incrementAndGet();
+        quit(pooled);
+
+        if (!shutdown) {
+            launchInBackground();
+        }
+    }
+
+    private void quit(PooledDriver pooled) {
+        alive.decrementAndGet();
+
+        try {
+            BrowserProcesses.quit(pooled.driver, pooled.driver::quit);
+        } catch (WebDriverException e) {
+            LOG.warn(String.format("Could not quit pooled session: %s", e.getMessage()));
+        }
+    }
+
+    private void launchInBackground() {
+        launchInBackground(0);
+    }
+
+    /**
+     * Launches a session on the launcher threads, after a delay doubling with the number of failed attempts.
+     *
+     * @param failures the number of launches of this slot which failed in a row
+     */
+    private void launchInBackground(int failures) {
+        long delay = failures == 0 ? 0 : Math.min(MIN_RELAUNCH_DELAY_MILLIS << Math.min(failures - 1, 16), MAX_RELAUNCH_DELAY_MILLIS);
+        alive.incrementAndGet();
+
+        try {
+            launcher.schedule(() -> launch(failures), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            alive.decrementAndGet();
+        }
+    }
+
+    private void launch(int failures) {
+        if (shutdown) {
+            alive.decrementAndGet();
+            return;
+        }
+
+        long start = System.nanoTime();
+        WebDriver driver;
+
+        try {
+            driver = DriverManager.createDriver(browserType, 0, gridHubUrl);
+        } catch (RuntimeException e) {
+            alive.decrementAndGet();
+            launchFailureCount.incrementAndGet();
+            LOG.error(String.format("Could not launch pooled %s session (attempt %d), retrying: %s", browserType, failures + 1, e.getMessage()));
+
+            if (!shutdown) {
+                launchInBackground(failures + 1);
+            }
+            return;
+        }
+
+        launchCount.incrementAndGet();
+        launchNanos.addAndGet(System.nanoTime() - start);
+
+        if (shutdown) {
+            alive.decrementAndGet();
+            BrowserProcesses.quit(driver, driver::quit);
+        } else {
+            idle.offerLast(new PooledDriver(this, driver));
+        }
+    }
+
+    /**
+     * Quits every idle session and stops launching new ones. Leased sessions are quit when they are returned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        launcher.shutdown();
+
+        PooledDriver pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            quit(pooled);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getAliveCount() {
+        return alive.get();
+    }
+
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    public long getRecycleCount() {
+        return recycleCount.get();
+    }
+
+    public long getLaunchCount() {
+        return launchCount.get();
+    }
+
+    public long getLaunchFailureCount() {
+        return launchFailureCount.get();
+    }
+
+    /**
+     * Returns the average time scenarios waited for a session.
+     *
+     * @return the average lease wait in milliseconds
+     */
+    public double getAverageLeaseWaitMillis() {
+        long count = leaseCount.get();
+        return count == 0 ? 0 : leaseWaitNanos.get() / 1_000_000d / count;
+    }
+
+    /**
+     * Returns the average time a browser launch took.
+     *
+     * @return the average launch time in milliseconds
+     */
+    public double getAverageLaunchMillis() {
+        long count = launchCount.get();
+        return count == 0 ? 0 : launchNanos.get() / 1_000_000d / count;
+    }
+
+    /**
+     * One browser session owned by the pool.
+     */
+    static final class PooledDriver {
+        private final DriverPool pool;
+        private final WebDriver driver;
+        private int uses = 0;
+        private long lastReturned = System.nanoTime();
+
+        private PooledDriver(DriverPool pool, WebDriver driver) {
+            this.pool = pool;
+            this.driver = driver;
+        }
+
+        DriverPool getPool() {
+            return pool;
+        }
+
+        WebDriver getDriver() {
+            return driver;
+        }
+
+        int getUses() {
+            return uses;
+        }
+
+        private boolean isIdleFor(Duration duration) {
+            return System.nanoTime() - lastReturned > duration.toNanos();
+        }
+
+        private boolean isHealthy() {
+            try {
+                driver.getWindowHandle();
+                return true;
+            } catch (WebDriverException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the WebDriver sessions used during the test run.<br>
+ * Every thread is bound to its own DriverSession, so parallel scenarios never share a driver.<br>
+ * A session can be detached from one thread and attached to another when a scenario context moves between threads.
+ *
+ * @author Andras Fuge
+ */
+public final class DriverRegistry {
+    private static final Set<DriverSession> SESSIONS = ConcurrentHashMap.newKeySet();
+    private static final ThreadLocal<DriverSession> CURRENT = ThreadLocal.withInitial(DriverRegistry::newSession);
+    private static final ThreadLocal<Long> IMPLICIT_WAIT_TIMEOUT = new ThreadLocal<>();
+
+    private DriverRegistry() {
+    }
+
+    private static DriverSession newSession() {
+        DriverSession session = new DriverSession();
+        Long implicitWaitTimeout = IMPLICIT_WAIT_TIMEOUT.get();
+
+        if (implicitWaitTimeout != null) {
+            session.setImplicitWaitTimeout(implicitWaitTimeout);
+        }
+        SESSIONS.add(session);
+
+        return session;
+    }
+
+    /**
+     * Returns the session bound to the calling thread, creating an empty one on first access.
+     *
+     * @return the current DriverSession
+     */
+    public static DriverSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the specified session to the calling thread.
+     *
+     * @param session the session to bind
+     */
+    public static void attach(DriverSession session) {
+        SESSIONS.add(session);
+        CURRENT.set(session);
+    }
+
+    /**
+     * Unbinds the session of the calling thread without quitting its driver.
+     *
+     * @return the session that was bound to the thread
+     */
+    public static DriverSession detach() {
+        DriverSession session = CURRENT.get();
+        CURRENT.remove();
+
+        return session;
+    }
+
+    /**
+     * Sets the implicit wait timeout of the calling thread's session and keeps it for the sessions the thread creates
+     * later, so it survives destroyDriver and initDriver on this thread only.
+     *
+     * @param amount the timeout in seconds
+     */
+    static void setImplicitWaitTimeout(long amount) {
+        IMPLICIT_WAIT_TIMEOUT.set(amount);
+        current().setImplicitWaitTimeout(amount);
+    }
+
+    /**
+     * Forgets the session of the calling thread entirely.<br>
+     * The driver of the session must already be quit.
+     */
+    static void release() {
+        SESSIONS.remove(CURRENT.get());
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns every known session which currently has a driver.
+     *
+     * @return the list of active sessions
+     */
+    public static List<DriverSession> getActiveSessions() {
+        List<DriverSession> active = new ArrayList<>();
+
+        for (DriverSession session : SESSIONS) {
+            if (session.hasDriver()) {
+                active.add(session);
+            }
+        }
+
+        return active;
+    }
+}
@@ -0,0 +1,328 @@
+package driver;
+
+import enums.BrowserType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.ChromiumDriver;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.os.CommandLine;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one long-lived chromedriver and msedgedriver process which every local session of the JVM shares, so
+ * creating a session does not spawn and port-bind a driver executable.<br>
+ * A service is started on first use or by start(), checked before every session it serves, restarted when it died
+ * and stopped when the JVM shuts down. The health check runs without a lock, only a restart locks, and only the
+ * browser type being restarted.<br>
+ * The sessions are real ChromeDriver and EdgeDriver instances, each created on its own view of the shared service: the
+ * executor of ChromeDriver and EdgeDriver waits for the process of its service and stops the service when the session
+ * quits, the view ends that wait at stop() and leaves the shared process running.
+ *
+ * @author Andras Fuge
+ */
+final class DriverServices {
+    private static final Logger LOG = LogManager.getLogger(DriverServices.class);
+
+    private static final int HEALTH_CHECK_TIMEOUT = 1000;
+
+    private static final Map<BrowserType, DriverService> SERVICES = new ConcurrentHashMap<>();
+    private static final Map<BrowserType, Object> LOCKS = new EnumMap<>(BrowserType.class);
+    private static volatile boolean shutdownHookAdded = false;
+
+    static {
+        for (BrowserType browserType : BrowserType.values()) {
+            LOCKS.put(browserType, new Object());
+        }
+    }
+
+    private DriverServices() {
+    }
+
+    /**
+     * Starts the service of the browser type unless it already runs.
+     *
+     * @param browserType the browser type
+     * @throws WebDriverException when the service can not be started
+     */
+    static void start(BrowserType browserType) throws WebDriverException {
+        get(browserType);
+    }
+
+    /**
+     * Stops every running service, the sessions still open on them are lost.
+     */
+    static void stopAll() {
+        for (BrowserType browserType : BrowserType.values()) {
+            synchronized (LOCKS.get(browserType)) {
+                DriverService service = SERVICES.remove(browserType);
+
+                if (service != null) {
+                    stop(service);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a local session on the shared service of the browser type. When the session can not be created and the
+     * service turns out to be dead, the service is restarted and the session creation is retried once.
+     *
+     * @param browserType  the browser type
+     * @param capabilities the browser options
+     * @return the created driver
+     */
+    static WebDriver createDriver(BrowserType browserType, MutableCapabilities capabilities) {
+        DriverService service = get(browserType);
+        WebDriver driver;
+
+        try {
+            driver = newDriver(browserType, service, capabilities);
+        } catch (WebDriverException e) {
+            if (isHealthy(service)) {
+                throw e;
+            }
+
+            LOG.warn(String.format("Shared %s driver service died during the session creation, restarting it", browserType));
+            service = get(browserType);
+            driver = newDriver(browserType, service, capabilities);
+        }
+
+        BrowserProcesses.trackBrowser(driver, service.getUrl().getPort(), getUserDataDir(browserType, driver));
+
+        return driver;
+    }
+
+    static WebDriver newDriver(BrowserType browserType, DriverService service, MutableCapabilities capabilities) {
+        try {
+            if (BrowserType.EDGE.equals(browserType)) {
+                return new EdgeDriver(new EdgeSessionService(service), new EdgeOptions().merge(capabilities));
+            } else {
+                return new ChromeDriver(new ChromeSessionService(service), new ChromeOptions().merge(capabilities));
+            }
+        } catch (IOException e) {
+            throw new WebDriverException(String.format("Shared %s driver service can not be used", browserType), e);
+        }
+    }
+
+    /**
+     * Returns the running service of the browser type, starts it on first use and restarts it when it died. The
+     * health check runs unlocked, the start locks the browser type only.
+     */
+    private static DriverService get(BrowserType browserType) throws WebDriverException {
+        DriverService checked = SERVICES.get(browserType);
+
+        if (checked != null && isHealthy(checked)) {
+            return checked;
+        }
+
+        synchronized (LOCKS.get(browserType)) {
+            DriverService service = SERVICES.get(browserType);
+
+            if (service != null && service != checked) {
+                return service;
+            }
+
+            if (service != null) {
+                LOG.warn(String.format("Shared %s driver service at %s is not responding, restarting it", browserType, service.getUrl()));
+                SERVICES.remove(browserType);
+                stop(service);
+            }
+
+            return startService(browserType);
+        }
+    }
+
+    private static DriverService startService(BrowserType browserType) throws WebDriverException {
+        DriverService service;
+
+        service = BrowserType.EDGE.equals(browserType)
+                ? EdgeDriverService.createDefaultService()
+                : ChromeDriverService.createDefaultService();
+
+        try {
+            service.start();
+        } catch (IOException e) {
+            throw new WebDriverException(String.format("Shared %s driver service could not be started", browserType), e);
+        }
+
+        BrowserProcesses.track(service, service.getUrl().getPort());
+        SERVICES.put(browserType, service);
+        addShutdownHook();
+
+        LOG.debug("Shared {} driver service started at {}", browserType, service.getUrl());
+
+        return service;
+    }
+
+    private static void stop(DriverService service) {
+        try {
+            BrowserProcesses.quit(service, service::stop);
+        } catch (RuntimeException e) {
+            LOG.debug("Shared driver service could not be stopped cleanly: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that the service process runs and answers its status endpoint.
+     */
+    private static boolean isHealthy(DriverService service) {
+        if (!service.isRunning()) {
+            return false;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(service.getUrl(), "/status").openConnection();
+            connection.setConnectTimeout(HEALTH_CHECK_TIMEOUT);
+            connection.setReadTimeout(HEALTH_CHECK_TIMEOUT);
+
+            return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static synchronized void addShutdownHook() {
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread(DriverServices::stopAll, "driver-service-shutdown"));
+            shutdownHookAdded = true;
+        }
+    }
+
+    /**
+     * Returns the profile directory the driver launched the browser with, it identifies the browser process among
+     * the children of the shared service.
+     */
+    private static String getUserDataDir(BrowserType browserType, WebDriver driver) {
+        Object browserCapability = ((ChromiumDriver) driver).getCapabilities()
+                .getCapability(BrowserType.EDGE.equals(browserType) ? "msedge" : "chrome");
+
+        if (browserCapability instanceof Map) {
+            Object userDataDir = ((Map<?, ?>) browserCapability).get("userDataDir");
+            return userDataDir == null ? null : String.valueOf(userDataDir);
+        }
+
+        return null;
+    }
+
+    /**
+     * One ChromeDriver session's view of the shared chromedriver service.
+     */
+    private static final class ChromeSessionService extends ChromeDriverService {
+        private final DriverService shared;
+
+        private ChromeSessionService(DriverService shared) throws IOException {
+            // the view never launches an executable, it uses the port of the shared service
+            super(new File(""), shared.getUrl().getPort(), DEFAULT_TIMEOUT, Collections.emptyList(), Collections.emptyMap());
+            this.shared = shared;
+            this.process = new SessionProcess();
+        }
+
+        @Override
+        public URL getUrl() {
+            return shared.getUrl();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return shared.isRunning();
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+            ((SessionProcess) process).end();
+        }
+    }
+
+    /**
+     * One EdgeDriver session's view of the shared msedgedriver service.
+     */
+    private static final class EdgeSessionService extends EdgeDriverService {
+        private final DriverService shared;
+
+        private EdgeSessionService(DriverService shared) throws IOException {
+            // the view never launches an executable, it uses the port of the shared service
+            super(new File(""), shared.getUrl().getPort(), DEFAULT_TIMEOUT, Collections.emptyList(), Collections.emptyMap());
+            this.shared = shared;
+            this.process = new SessionProcess();
+        }
+
+        @Override
+        public URL getUrl() {
+            return shared.getUrl();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return shared.isRunning();
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+            ((SessionProcess) process).end();
+        }
+    }
+
+    /**
+     * Stands for the driver process of a session view, it is never executed. Quitting the session waits for it in the
+     * background until the view is stopped.
+     */
+    private static final class SessionProcess extends CommandLine {
+        private final CountDownLatch ended = new CountDownLatch(1);
+
+        private SessionProcess() {
+            // never executed, the command only has to exist
+            super(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        }
+
+        private void end() {
+            ended.countDown();
+        }
+
+        @Override
+        public void waitFor(long timeout) {
+            try {
+                ended.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return ended.getCount() > 0;
+        }
+    }
+}
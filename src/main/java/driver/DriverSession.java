@@ -0,0 +1,212 @@
+package driver;
+
+import enums.BrowserProfile;
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Holds the state belonging to a single WebDriver session.<br>
+ * A session is owned by one thread (or one scenario context) at a time, see DriverRegistry.
+ *
+ * @author Andras Fuge
+ */
+public class DriverSession {
+    private WebDriver driver;
+    private WebDriver undecoratedDriver;
+    private long implicitWaitTimeout = DriverManager.getDefaultImplicitWaitTimeout();
+    private Duration scriptTimeout;
+    private DriverPool.PooledDriver pooledDriver;
+    private BrowserProfile browserProfile;
+    private final ElementCache elementCache = new ElementCache();
+    private final WindowRegistry windowRegistry = new WindowRegistry();
+    private final Set<String> visitedOrigins = new LinkedHashSet<>();
+    private ListenerHub listenerHub;
+    private boolean networkTrackerInstalled = false;
+    private DomSnapshot domSnapshot;
+
+    DriverSession() {
+    }
+
+    /**
+     * Returns the WebDriver of this session.
+     *
+     * @return the WebDriver instance, or null when the session has no driver yet
+     */
+    public WebDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Returns the driver as it was created, before any listener decoration.
+     *
+     * @return the undecorated WebDriver, or null when the session has no driver
+     */
+    WebDriver getUndecoratedDriver() {
+        return undecoratedDriver;
+    }
+
+    void setDriver(WebDriver driver) {
+        this.driver = driver;
+        this.undecoratedDriver = driver;
+        this.listenerHub = null;
+        this.networkTrackerInstalled = false;
+        this.domSnapshot = null;
+        this.scriptTimeout = null;
+        this.elementCache.clear();
+        this.windowRegistry.clear();
+        this.visitedOrigins.clear();
+
+        this.browserProfile = null;
+
+        if (driver == null) {
+            this.pooledDriver = null;
+        }
+    }
+
+    /**
+     * Returns the pool entry this session leased its driver from.
+     *
+     * @return the leased pool entry, or null when the driver is not pooled
+     */
+    DriverPool.PooledDriver getPooledDriver() {
+        return pooledDriver;
+    }
+
+    void setPooledDriver(DriverPool.PooledDriver pooledDriver) {
+        this.pooledDriver = pooledDriver;
+        this.driver = pooledDriver.getDriver();
+        this.undecoratedDriver = pooledDriver.getDriver();
+        this.listenerHub = null;
+        this.networkTrackerInstalled = false;
+        this.domSnapshot = null;
+        this.scriptTimeout = null;
+        this.elementCache.clear();
+        this.windowRegistry.clear();
+        this.visitedOrigins.clear();
+    }
+
+    /**
+     * Returns the launch profile the driver of this session was created with.
+     *
+     * @return the BrowserProfile, or null when the driver was not created by initDriver
+     */
+    BrowserProfile getBrowserProfile() {
+        return browserProfile;
+    }
+
+    void setBrowserProfile(BrowserProfile browserProfile) {
+        this.browserProfile = browserProfile;
+    }
+
+    /**
+     * Returns the window registry of this session.
+     *
+     * @return the WindowRegistry instance
+     */
+    public WindowRegistry getWindowRegistry() {
+        return windowRegistry;
+    }
+
+    /**
+     * Returns the origins the browser of this session visited since its last reset, cleared by SessionReset.
+     *
+     * @return the mutable set of origins, e.g. https://example.com
+     */
+    Set<String> getVisitedOrigins() {
+        return visitedOrigins;
+    }
+
+    /**
+     * Returns the listener hub the driver of this session is decorated with.
+     *
+     * @return the ListenerHub, or null when the driver is not decorated yet
+     */
+    ListenerHub getListenerHub() {
+        return listenerHub;
+    }
+
+    /**
+     * Replaces the driver with its decorated version, keeping the pool entry it was leased from.
+     *
+     * @param decoratedDriver the driver decorated with the hub
+     * @param listenerHub     the hub the driver is decorated with
+     */
+    void setDecoratedDriver(WebDriver decoratedDriver, ListenerHub listenerHub) {
+        this.driver = decoratedDriver;
+        this.listenerHub = listenerHub;
+        this.elementCache.clear();
+    }
+
+    /**
+     * Returns the element cache of this session.
+     *
+     * @return the ElementCache instance
+     */
+    public ElementCache getElementCache() {
+        return elementCache;
+    }
+
+    /**
+     * Returns whether the network tracker is registered to run on every new document of this session's browser.
+     *
+     * @return true when the tracker is registered through DevTools
+     */
+    boolean isNetworkTrackerInstalled() {
+        return networkTrackerInstalled;
+    }
+
+    void setNetworkTrackerInstalled(boolean networkTrackerInstalled) {
+        this.networkTrackerInstalled = networkTrackerInstalled;
+    }
+
+    /**
+     * Returns the DOM snapshot the read-only element methods are served from.
+     *
+     * @return the DomSnapshot, or null when the session has no valid snapshot
+     */
+    DomSnapshot getDomSnapshot() {
+        return domSnapshot;
+    }
+
+    void setDomSnapshot(DomSnapshot domSnapshot) {
+        this.domSnapshot = domSnapshot;
+    }
+
+    /**
+     * Returns the implicit wait timeout of this session, a new session starts with the configured default.
+     *
+     * @return the timeout in seconds
+     */
+    public long getImplicitWaitTimeout() {
+        return implicitWaitTimeout;
+    }
+
+    void setImplicitWaitTimeout(long implicitWaitTimeout) {
+        this.implicitWaitTimeout = implicitWaitTimeout;
+    }
+
+    /**
+     * Returns the script timeout of the driver as last read or set by the framework.
+     *
+     * @return the script timeout, or null when it is not known yet
+     */
+    Duration getScriptTimeout() {
+        return scriptTimeout;
+    }
+
+    void setScriptTimeout(Duration scriptTimeout) {
+        this.scriptTimeout = scriptTimeout;
+    }
+
+    /**
+     * Returns whether this session has an initialized driver.
+     *
+     * @return true when a driver is present
+     */
+    public boolean hasDriver() {
+        return driver != null;
+    }
+}
@@ -1,10 +1,14 @@
 package driver;
 
+import enums.CommandType;
+import enums.WaitCondition;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 
+import java.time.Duration;
+
 import static driver.DriverManager.*;
 
 /**
@@ -13,22 +17,42 @@ import static driver.DriverManager.*;
  * @author andris17
  */
 public final class DriverWaits {
+    private static volatile boolean observerWaits = true;
 
     private DriverWaits() {
     }
 
+    /**
+     * Returns whether the element waits are evaluated by the push based ObserverWait engine.
+     *
+     * @return true when observer waits are used, false when the default FluentWait polling is used
+     */
+    public static boolean isObserverWaits() {
+        return observerWaits;
+    }
+
+    public static void setObserverWaits(boolean status) {
+        observerWaits = status;
+    }
+
     /**
      * Waits for a specified amount of time.
      *
      * @param amountInSeconds The specified wait amount in seconds.
      */
     public static void waitForSeconds(Integer amountInSeconds) {
+        long start = CommandMetrics.start();
+
         try {
-            synchronized (getDriver()) {
-                getDriver().wait(amountInSeconds * 1000);
+            try {
+                synchronized (getDriver()) {
+                    getDriver().wait(amountInSeconds * 1000);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } finally {
+            CommandMetrics.stop(CommandType.SLEEP, start);
         }
     }
 
@@ -46,7 +70,13 @@ public final class DriverWaits {
      * @param timeout The timeout duration in seconds.
      */
     public static void waitForAlertToAppear(long timeout) {
-        getDefaultWait(timeout).until(ExpectedConditions.alertIsPresent());
+        long start = CommandMetrics.start();
+
+        try {
+            getDefaultWait(timeout).until(ExpectedConditions.alertIsPresent());
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -65,7 +95,18 @@ public final class DriverWaits {
      * @param timeout The timeout duration in seconds.
      */
     public static void waitForElementToAppear(By locator, long timeout) {
-        getDefaultWait(timeout).until(ExpectedConditions.visibilityOfElementLocated(locator));
+        long start = CommandMetrics.start();
+
+        try {
+            if (observerWaits) {
+                ObserverWait.until(WaitCondition.VISIBLE, locator, null, null, timeout);
+                return;
+            }
+
+            getDefaultWait(timeout).until(ExpectedConditions.visibilityOfElementLocated(locator));
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -84,7 +125,18 @@ public final class DriverWaits {
      * @param timeout The timeout duration in seconds.
      */
     public static void waitForElementToDisappear(By locator, long timeout) {
-        getDefaultWait(timeout).until(ExpectedConditions.invisibilityOfElementLocated(locator));
+        long start = CommandMetrics.start();
+
+        try {
+            if (observerWaits) {
+                ObserverWait.until(WaitCondition.INVISIBLE, locator, null, null, timeout);
+                return;
+            }
+
+            getDefaultWait(timeout).until(ExpectedConditions.invisibilityOfElementLocated(locator));
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -107,10 +159,21 @@ public final class DriverWaits {
      * @param timeout   The timeout duration in seconds.
      */
     public static void waitForAttributeToContain(By locator, String attribute, String value, long timeout) {
-        getDefaultWait(timeout).until((ExpectedCondition<Boolean>) driver -> {
-            assert driver != null;
-            return driver.findElement(locator).getAttribute(attribute).contains(value);
-        });
+        long start = CommandMetrics.start();
+
+        try {
+            if (observerWaits) {
+                ObserverWait.until(WaitCondition.ATTRIBUTE_CONTAINS, locator, attribute, value, timeout);
+                return;
+            }
+
+            getDefaultWait(timeout).until((ExpectedCondition<Boolean>) driver -> {
+                assert driver != null;
+                return driver.findElement(locator).getAttribute(attribute).contains(value);
+            });
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -133,10 +196,21 @@ public final class DriverWaits {
      * @param timeout   The timeout duration in seconds.
      */
     public static void waitForAttributeNotToContain(By locator, String attribute, String value, long timeout) {
-        getDefaultWait(timeout).until((ExpectedCondition<Boolean>) driver -> {
-            assert driver != null;
-            return !driver.findElement(locator).getAttribute(attribute).contains(value);
-        });
+        long start = CommandMetrics.start();
+
+        try {
+            if (observerWaits) {
+                ObserverWait.until(WaitCondition.ATTRIBUTE_NOT_CONTAINS, locator, attribute, value, timeout);
+                return;
+            }
+
+            getDefaultWait(timeout).until((ExpectedCondition<Boolean>) driver -> {
+                assert driver != null;
+                return !driver.findElement(locator).getAttribute(attribute).contains(value);
+            });
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -155,7 +229,18 @@ public final class DriverWaits {
      * @param timeout The timeout duration in seconds.
      */
     public static void waitForElementToBeClickable(By locator, long timeout) {
-        getDefaultWait(timeout).until(ExpectedConditions.elementToBeClickable(locator));
+        long start = CommandMetrics.start();
+
+        try {
+            if (observerWaits) {
+                ObserverWait.until(WaitCondition.CLICKABLE, locator, null, null, timeout);
+                return;
+            }
+
+            getDefaultWait(timeout).until(ExpectedConditions.elementToBeClickable(locator));
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -174,7 +259,13 @@ public final class DriverWaits {
      * @param timeout The timeout duration in seconds.
      */
     public static void waitForElementToBeClickable(WebElement element, long timeout) {
-        getDefaultWait(timeout).until(ExpectedConditions.elementToBeClickable(element));
+        long start = CommandMetrics.start();
+
+        try {
+            getDefaultWait(timeout).until(ExpectedConditions.elementToBeClickable(element));
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
     }
 
     /**
@@ -193,6 +284,40 @@ public final class DriverWaits {
      * @param timeout The timeout duration in seconds.
      */
     public static <T> void waitForConditionToMeet(ExpectedCondition<T> isTrue, long timeout) {
-        getDefaultWait(timeout).until(isTrue);
+        long start = CommandMetrics.start();
+
+        try {
+            getDefaultWait(timeout).until(isTrue);
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
+    }
+
+    /**
+     * Starts a wait for several conditions with one shared timeout, evaluated together in the browser.
+     *
+     * @return a new CompositeWait without branches
+     * @see CompositeWait
+     */
+    public static CompositeWait composite() {
+        return new CompositeWait();
+    }
+
+    /**
+     * Waits until the active page has no fetch or XHR request in flight for the network quiet period
+     * configured in DriverMethods.
+     */
+    public static void waitForNetworkIdle() {
+        waitForNetworkIdle(getImplicitWaitTimeout());
+    }
+
+    /**
+     * Waits until the active page has no fetch or XHR request in flight for the network quiet period
+     * configured in DriverMethods.
+     *
+     * @param timeout The timeout duration in seconds.
+     */
+    public static void waitForNetworkIdle(long timeout) {
+        NavigationWait.waitForNetworkIdle(DriverMethods.getNetworkQuietPeriod(), Duration.ofSeconds(timeout));
     }
 }
@@ -0,0 +1,89 @@
+package driver;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of resolved WebElements of one session, keyed by their By locator.<br>
+ * The cache belongs to the current page and frame, it is cleared on navigation, frame and window switch.
+ * Entries which turn out to be stale are dropped by DriverManager and resolved again.<br>
+ * Only the element operations of DriverMethods use the cache, and only when DriverManager.setElementCaching is on.
+ *
+ * @author Andras Fuge
+ */
+public class ElementCache {
+    private static final int MAX_ENTRIES = 256;
+
+    private final Map<By, WebElement> elements = new LinkedHashMap<By, WebElement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<By, WebElement> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    ElementCache() {
+    }
+
+    WebElement get(By locator) {
+        WebElement element = elements.get(locator);
+
+        if (element == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return element;
+    }
+
+    void put(By locator, WebElement element) {
+        elements.put(locator, element);
+    }
+
+    void invalidate(By locator) {
+        if (elements.remove(locator) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    void clear() {
+        if (!elements.isEmpty()) {
+            invalidations.addAndGet(elements.size());
+            elements.clear();
+        }
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Returns the share of lookups which were served from the cache.
+     *
+     * @return the hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+}
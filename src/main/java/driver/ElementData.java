@@ -0,0 +1,101 @@
+package driver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the properties of one element, as read by the bulk extraction methods of DriverMethods.
+ *
+ * @author Andras Fuge
+ */
+public final class ElementData {
+    private final String tagName;
+    private final String text;
+    private final String value;
+    private final boolean displayed;
+    private final boolean enabled;
+    private final boolean selected;
+    private final Map<String, String> attributes;
+
+    ElementData(String tagName, String text, String value, boolean displayed, boolean enabled, boolean selected, Map<String, String> attributes) {
+        this.tagName = tagName;
+        this.text = text;
+        this.value = value;
+        this.displayed = displayed;
+        this.enabled = enabled;
+        this.selected = selected;
+        this.attributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+    }
+
+    /**
+     * Creates the element data from the object returned by the extraction script.
+     *
+     * @param raw the map returned by the browser
+     * @return the element data
+     */
+    @SuppressWarnings("unchecked")
+    static ElementData fromScriptResult(Map<String, Object> raw) {
+        Map<String, String> attributes = new HashMap<>();
+        Object rawAttributes = raw.get("attributes");
+
+        if (rawAttributes instanceof Map) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) rawAttributes).entrySet()) {
+                attributes.put(entry.getKey(), entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+            }
+        }
+
+        return new ElementData(
+                (String) raw.get("tagName"),
+                (String) raw.get("text"),
+                raw.get("value") == null ? null : String.valueOf(raw.get("value")),
+                Boolean.TRUE.equals(raw.get("displayed")),
+                Boolean.TRUE.equals(raw.get("enabled")),
+                Boolean.TRUE.equals(raw.get("selected")),
+                attributes);
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isDisplayed() {
+        return displayed;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSelected() {
+        return selected;
+    }
+
+    /**
+     * Returns one of the requested attributes of the element.
+     *
+     * @param name the name of the attribute
+     * @return the attribute value, or null when the element does not have it
+     */
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ElementData{tagName=%s, text=%s, displayed=%s, enabled=%s, selected=%s, attributes=%s}",
+                tagName, text, displayed, enabled, selected, attributes);
+    }
+}
@@ -0,0 +1,540 @@
+package driver;
+
+import enums.ImageFormat;
+import io.cucumber.java.Scenario;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.HasCdp;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Flight recorder of a test thread's session: keeps the artifacts of the last steps in a ring buffer, so a failure can be
+ * investigated without capturing on every step into the report.<br>
+ * Every captured frame holds the URL, the WebDriver commands of the step, the gzipped DOM and optionally a downscaled
+ * JPEG screenshot. The compression runs on the background executor of the ScreenshotService. The oldest frames are
+ * dropped beyond the frame count or the memory cap, so a session never holds more than the cap.<br>
+ * Every step pays for the capture on the test thread: one round trip for the URL and one which serializes the whole
+ * DOM, its cost growing with the page. A screenshot adds two more round trips and the encoding in the browser, on
+ * Chromium a JPEG of the viewport scaled by the browser, elsewhere a full resolution PNG scaled afterwards. This is
+ * usually the most expensive command of a step, so the screenshots are off by default.<br>
+ * The frames are flushed to the scenario or to disk when the scenario fails, and cleared otherwise, see
+ * runner.FlightRecorderPlugin.
+ *
+ * @author Andras Fuge
+ */
+public final class FlightRecorder implements WebDriverListener {
+    private static final Logger LOG = LogManager.getLogger(FlightRecorder.class);
+
+    private static final String DOM_SCRIPT = "return document.documentElement ? document.documentElement.outerHTML : '';";
+    private static final int MAX_COMMANDS_PER_STEP = 200;
+    private static final int MAX_COMMAND_LENGTH = 160;
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(10);
+    private static final int SCREENSHOT_QUALITY = 80;
+
+    private static volatile int maxFrames = 10;
+    private static volatile long memoryCap = 16L * 1024 * 1024;
+    private static volatile boolean screenshots = false;
+    private static volatile double screenshotScale = 0.5;
+
+    private static final ThreadLocal<FlightRecorder> CURRENT = ThreadLocal.withInitial(FlightRecorder::new);
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final List<String> commands = new ArrayList<>();
+    private long[] callStarts = new long[16];
+    private int callDepth = 0;
+    private int droppedCommands = 0;
+    private long stepStart = System.nanoTime();
+    private int sequence = 0;
+
+    private FlightRecorder() {
+    }
+
+    /**
+     * Returns the recorder of the calling thread. It outlives the thread's driver session, so the frames are still
+     * there when the session is destroyed in an After hook.
+     *
+     * @return the FlightRecorder of the thread
+     */
+    static FlightRecorder current() {
+        return CURRENT.get();
+    }
+
+    public static int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * Sets the number of steps the recorders keep.
+     *
+     * @param frames the number of frames per session, 10 by default
+     */
+    public static void setMaxFrames(int frames) {
+        maxFrames = Math.max(1, frames);
+    }
+
+    public static long getMemoryCap() {
+        return memoryCap;
+    }
+
+    /**
+     * Sets the memory a recorder may hold, the oldest frames are dropped above it.
+     *
+     * @param bytes the cap per session in bytes, 16 MB by default
+     */
+    public static void setMemoryCap(long bytes) {
+        memoryCap = bytes;
+    }
+
+    public static boolean isScreenshots() {
+        return screenshots;
+    }
+
+    /**
+     * Sets whether the frames include a downscaled screenshot. It costs two more round trips and an image encoding in
+     * the browser on every step, on non-Chromium browsers a full resolution PNG.
+     *
+     * @param status true to capture screenshots, false by default
+     */
+    public static void setScreenshots(boolean status) {
+        screenshots = status;
+    }
+
+    public static double getScreenshotScale() {
+        return screenshotScale;
+    }
+
+    /**
+     * Sets the downscale factor of the frame screenshots.
+     *
+     * @param scale the factor between 0 and 1, 0.5 by default
+     */
+    public static void setScreenshotScale(double scale) {
+        screenshotScale = scale;
+    }
+
+    /**
+     * Captures a frame of the session's browser at the end of a step and adds it to the buffer.<br>
+     * A browser which does not respond any more gives a frame with the command log only.
+     *
+     * @param driver the driver of the session
+     * @param step   the text of the step
+     */
+    void capture(WebDriver driver, String step) {
+        Frame frame = new Frame(++sequence, step, Instant.now(), System.nanoTime() - stepStart, takeCommands());
+
+        try {
+            frame.url = driver.getCurrentUrl();
+
+            if (driver instanceof JavascriptExecutor) {
+                String dom = String.valueOf(((JavascriptExecutor) driver).executeScript(DOM_SCRIPT));
+                frame.domRawBytes = dom.length() * 2L;
+                frame.dom = ScreenshotService.supplyInBackground(() -> gzip(dom));
+            }
+
+            if (screenshots && driver instanceof HasCdp) {
+                byte[] jpeg = captureScaledScreenshot((HasCdp) driver);
+                frame.screenshotRawBytes = jpeg.length;
+                frame.screenshot = CompletableFuture.completedFuture(jpeg);
+            } else if (screenshots && driver instanceof TakesScreenshot) {
+                byte[] raw = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+                frame.screenshotRawBytes = raw.length;
+                frame.screenshot = ScreenshotService.supplyInBackground(
+                        () -> ScreenshotService.transform(raw, ImageFormat.JPEG, screenshotScale));
+            }
+        } catch (WebDriverException e) {
+            frame.error = e.getClass().getSimpleName();
+            LOG.debug("Flight recorder frame of step {} is incomplete: {}", step, e.getMessage());
+        }
+
+        synchronized (this) {
+            frames.addLast(frame);
+            trim();
+        }
+
+        stepStart = System.nanoTime();
+    }
+
+    /**
+     * Captures the viewport as a JPEG which the browser already scaled, so no full resolution image is transferred.
+     */
+    private static byte[] captureScaledScreenshot(HasCdp cdp) {
+        Map<String, Object> metrics = cdp.executeCdpCommand("Page.getLayoutMetrics", Collections.emptyMap());
+        Object viewport = metrics.containsKey("cssVisualViewport") ? metrics.get("cssVisualViewport") : metrics.get("visualViewport");
+
+        if (!(viewport instanceof Map)) {
+            throw new WebDriverException("Page.getLayoutMetrics returned no viewport");
+        }
+
+        Map<?, ?> size = (Map<?, ?>) viewport;
+        Map<String, Object> clip = new HashMap<>();
+        clip.put("x", size.get("pageX"));
+        clip.put("y", size.get("pageY"));
+        clip.put("width", size.get("clientWidth"));
+        clip.put("height", size.get("clientHeight"));
+        clip.put("scale", screenshotScale);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("format", "jpeg");
+        parameters.put("quality", SCREENSHOT_QUALITY);
+        parameters.put("clip", clip);
+
+        Object data = cdp.executeCdpCommand("Page.captureScreenshot", parameters).get("data");
+        return Base64.getDecoder().decode(String.valueOf(data));
+    }
+
+    /**
+     * Returns the number of frames in the buffer.
+     *
+     * @return the frame count
+     */
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    /**
+     * Returns the memory the buffer holds, the artifacts still being compressed counted with their raw size.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        long total = 0;
+        for (Frame frame : frames) {
+            total += frame.size();
+        }
+
+        return total;
+    }
+
+    /**
+     * Drops every frame and the commands recorded since the last frame, e.g. when a scenario passed.
+     */
+    public synchronized void clear() {
+        for (Frame frame : frames) {
+            frame.discard();
+        }
+
+        frames.clear();
+        commands.clear();
+        droppedCommands = 0;
+        sequence = 0;
+        stepStart = System.nanoTime();
+    }
+
+    /**
+     * Attaches the frames to the scenario, the oldest first, then clears the buffer.
+     *
+     * @param scenario the failed scenario
+     */
+    public void flush(Scenario scenario) {
+        for (Frame frame : drain()) {
+            String prefix = String.format("step %02d", frame.sequence);
+
+            scenario.attach(frame.describe(), "text/plain", prefix + " log");
+
+            byte[] dom = frame.await(frame.dom);
+            if (dom != null) {
+                scenario.attach(dom, "application/gzip", prefix + " dom.html.gz");
+            }
+
+            byte[] screenshot = frame.await(frame.screenshot);
+            if (screenshot != null) {
+                scenario.attach(screenshot, ImageFormat.JPEG.getMediaType(), prefix + " screenshot");
+            }
+        }
+    }
+
+    /**
+     * Writes the frames into a directory, the log, the DOM and the screenshot of every frame in its own file,
+     * then clears the buffer.
+     *
+     * @param directory the directory to write to, created when missing
+     * @throws UncheckedIOException when the files can not be written
+     */
+    public void flush(Path directory) throws UncheckedIOException {
+        List<Frame> drained = drain();
+
+        try {
+            Files.createDirectories(directory);
+
+            for (Frame frame : drained) {
+                String prefix = String.format("%02d-", frame.sequence);
+                Files.write(directory.resolve(prefix + "log.txt"), frame.describe().getBytes(StandardCharsets.UTF_8));
+
+                byte[] dom = frame.await(frame.dom);
+                if (dom != null) {
+                    Files.write(directory.resolve(prefix + "dom.html.gz"), dom);
+                }
+
+                byte[] screenshot = frame.await(frame.screenshot);
+                if (screenshot != null) {
+                    Files.write(directory.resolve(prefix + "screenshot." + ImageFormat.JPEG.getFormatName()), screenshot);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized List<Frame> drain() {
+        List<Frame> drained = new ArrayList<>(frames);
+        frames.clear();
+        commands.clear();
+        droppedCommands = 0;
+        sequence = 0;
+        stepStart = System.nanoTime();
+
+        return drained;
+    }
+
+    /**
+     * Drops the oldest frames above the frame count and the memory cap. When the newest frame alone is above the cap,
+     * its screenshot and then its DOM are dropped. Compression only shrinks the frames, so trimming on add is enough.
+     */
+    private void trim() {
+        long total = 0;
+        for (Frame frame : frames) {
+            total += frame.size();
+        }
+
+        while (frames.size() > maxFrames || (total > memoryCap && frames.size() > 1)) {
+            Frame oldest = frames.removeFirst();
+            total -= oldest.size();
+            oldest.discard();
+        }
+
+        Frame newest = frames.peekLast();
+        if (newest != null && total > memoryCap && newest.screenshot != null) {
+            newest.screenshot.cancel(false);
+            newest.screenshot = null;
+            total = newest.size();
+        }
+        if (newest != null && total > memoryCap && newest.dom != null) {
+            newest.dom.cancel(false);
+            newest.dom = null;
+        }
+    }
+
+    private List<String> takeCommands() {
+        List<String> taken = new ArrayList<>(commands);
+        if (droppedCommands > 0) {
+            taken.add(String.format("... %d more commands", droppedCommands));
+        }
+
+        commands.clear();
+        droppedCommands = 0;
+
+        return taken;
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        if (callDepth == callStarts.length) {
+            callStarts = Arrays.copyOf(callStarts, callDepth * 2);
+        }
+
+        callStarts[callDepth++] = System.nanoTime();
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        record(method, args, null);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        record(method, args, e.getCause() == null ? e : e.getCause());
+    }
+
+    private void record(Method method, Object[] args, Throwable error) {
+        long start = callDepth == 0 ? System.nanoTime() : callStarts[--callDepth];
+
+        if (MetricsListener.categorize(method.getName()) == null) {
+            return;
+        }
+
+        if (commands.size() >= MAX_COMMANDS_PER_STEP) {
+            droppedCommands++;
+            return;
+        }
+
+        long now = System.nanoTime();
+        String line = String.format("+%dms %s%s %dms%s", (start - stepStart) / 1_000_000, method.getName(),
+                describeArguments(method.getName(), args), (now - start) / 1_000_000,
+                error == null ? "" : " failed: " + firstLine(error));
+
+        commands.add(line.length() > MAX_COMMAND_LENGTH ? line.substring(0, MAX_COMMAND_LENGTH) + "..." : line);
+    }
+
+    private static String describeArguments(String methodName, Object[] args) {
+        if (args == null || args.length == 0) {
+            return "";
+        }
+
+        switch (methodName) {
+            case "sendKeys":
+                // the typed text may be a password, only its length is logged
+                int length = 0;
+                for (Object arg : args) {
+                    if (arg instanceof CharSequence[]) {
+                        for (CharSequence keys : (CharSequence[]) arg) {
+                            length += keys == null ? 0 : keys.length();
+                        }
+                    }
+                }
+                return String.format(" (%d chars)", length);
+            case "executeScript":
+            case "executeAsyncScript":
+                return " (" + firstLine(String.valueOf(args[0])) + ")";
+            default:
+                return args[0] instanceof By || args[0] instanceof String ? " (" + args[0] + ")" : "";
+        }
+    }
+
+    private static String firstLine(Throwable error) {
+        return error.getClass().getSimpleName() + ": " + firstLine(String.valueOf(error.getMessage()));
+    }
+
+    private static String firstLine(String text) {
+        int end = text.indexOf('\n');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    private static byte[] gzip(String text) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(512, text.length() / 8));
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * The artifacts of one step.
+     */
+    private static final class Frame {
+        private final int sequence;
+        private final String step;
+        private final Instant time;
+        private final long durationNanos;
+        private final List<String> commands;
+        private final long fixedBytes;
+        private String url;
+        private String error;
+        private CompletableFuture<byte[]> dom;
+        private CompletableFuture<byte[]> screenshot;
+        private long domRawBytes;
+        private long screenshotRawBytes;
+
+        private Frame(int sequence, String step, Instant time, long durationNanos, List<String> commands) {
+            this.sequence = sequence;
+            this.step = step;
+            this.time = time;
+            this.durationNanos = durationNanos;
+            this.commands = commands;
+
+            long bytes = step.length() * 2L + 64;
+            for (String command : commands) {
+                bytes += command.length() * 2L + 16;
+            }
+            this.fixedBytes = bytes;
+        }
+
+        private long size() {
+            return fixedBytes + (url == null ? 0 : url.length() * 2L)
+                    + artifactSize(dom, domRawBytes) + artifactSize(screenshot, screenshotRawBytes);
+        }
+
+        private void discard() {
+            if (dom != null) {
+                dom.cancel(false);
+            }
+            if (screenshot != null) {
+                screenshot.cancel(false);
+            }
+        }
+
+        /**
+         * Returns the compressed size of an artifact, or its raw size while it is being compressed.
+         */
+        private static long artifactSize(CompletableFuture<byte[]> artifact, long rawBytes) {
+            if (artifact == null || artifact.isCompletedExceptionally()) {
+                return 0;
+            }
+            if (!artifact.isDone()) {
+                return rawBytes;
+            }
+
+            byte[] bytes = artifact.getNow(null);
+            return bytes == null ? 0 : bytes.length;
+        }
+
+        private byte[] await(CompletableFuture<byte[]> artifact) {
+            if (artifact == null) {
+                return null;
+            }
+
+            try {
+                return artifact.get(FLUSH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | TimeoutException | CancellationException e) {
+                LOG.debug("Flight recorder artifact of step {} is not available: {}", step, e.toString());
+                return null;
+            }
+        }
+
+        private String describe() {
+            StringBuilder text = new StringBuilder()
+                    .append("Step: ").append(step).append('\n')
+                    .append("Time: ").append(time).append(" (").append(durationNanos / 1_000_000).append(" ms)\n")
+                    .append("URL: ").append(url).append('\n');
+
+            if (error != null) {
+                text.append("Capture failed: ").append(error).append('\n');
+            }
+
+            text.append("Commands:\n");
+            for (String command : commands) {
+                text.append("  ").append(command).append('\n');
+            }
+
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package driver;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Reads rows of ARGB pixels straight from the backing array of a decoded image.<br>
+ * The packed int layouts and the interleaved byte layouts ImageIO decodes PNGs into are read without going through
+ * the color model, any other layout falls back to BufferedImage.getRGB. Reading is thread safe, so the tiles of one
+ * image can be read in parallel.
+ *
+ * @author Andras Fuge
+ */
+final class ImagePixels {
+    private final BufferedImage image;
+    private final int width;
+    private final int height;
+
+    private final int[] ints;
+    private final byte[] bytes;
+    private final int offset;
+    private final int scanlineStride;
+    private final int pixelStride;
+    private final int red;
+    private final int green;
+    private final int blue;
+    private final int alpha;
+    private final boolean hasAlpha;
+
+    ImagePixels(BufferedImage image) {
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+
+        Raster raster = image.getRaster();
+        SampleModel model = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        boolean untranslated = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && buffer.getNumBanks() == 1;
+
+        int[] intData = null;
+        byte[] byteData = null;
+        int scanline = 0;
+        int stride = 0;
+        int[] bands = {0, 0, 0, 0};
+        boolean alphaBand = false;
+
+        int type = image.getType();
+        if (untranslated && buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel
+                && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+            intData = ((DataBufferInt) buffer).getData();
+            scanline = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+            alphaBand = type == BufferedImage.TYPE_INT_ARGB;
+        } else if (untranslated && buffer instanceof DataBufferByte && model instanceof PixelInterleavedSampleModel
+                && (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)) {
+            PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) model;
+            int[] bandOffsets = interleaved.getBandOffsets();
+
+            byteData = ((DataBufferByte) buffer).getData();
+            scanline = interleaved.getScanlineStride();
+            stride = interleaved.getPixelStride();
+            alphaBand = bandOffsets.length == 4;
+            System.arraycopy(bandOffsets, 0, bands, 0, bandOffsets.length);
+        }
+
+        this.ints = intData;
+        this.bytes = byteData;
+        this.offset = buffer.getOffset();
+        this.scanlineStride = scanline;
+        this.pixelStride = stride;
+        this.red = bands[0];
+        this.green = bands[1];
+        this.blue = bands[2];
+        this.alpha = bands[3];
+        this.hasAlpha = alphaBand;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Reads a row segment as ARGB pixels.
+     *
+     * @param x      the first column
+     * @param y      the row
+     * @param length the number of pixels
+     * @param target the array receiving the pixels from index zero
+     */
+    void readRow(int x, int y, int length, int[] target) {
+        if (ints != null) {
+            int start = offset + y * scanlineStride + x;
+
+            if (hasAlpha) {
+                System.arraycopy(ints, start, target, 0, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    target[i] = 0xFF000000 | ints[start + i];
+                }
+            }
+        } else if (bytes != null) {
+            int position = offset + y * scanlineStride + x * pixelStride;
+
+            for (int i = 0; i < length; i++, position += pixelStride) {
+                int a = hasAlpha ? bytes[position + alpha] & 0xFF : 0xFF;
+                target[i] = a << 24
+                        | (bytes[position + red] & 0xFF) << 16
+                        | (bytes[position + green] & 0xFF) << 8
+                        | (bytes[position + blue] & 0xFF);
+            }
+        } else {
+            image.getRGB(x, y, length, 1, target, 0, width);
+        }
+    }
+
+    /**
+     * Hashes the pixels of a tile, identical tiles give identical hashes.
+     *
+     * @param x      the left column of the tile
+     * @param y      the top row of the tile
+     * @param width  the width of the tile
+     * @param height the height of the tile
+     * @param row    a buffer of at least the tile width
+     * @return the 64-bit FNV-1a hash of the tile
+     */
+    long hashTile(int x, int y, int width, int height, int[] row) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int line = y; line < y + height; line++) {
+            readRow(x, line, width, row);
+
+            for (int i = 0; i < width; i++) {
+                hash = (hash ^ row[i]) * 0x100000001b3L;
+            }
+        }
+
+        return hash;
+    }
+}
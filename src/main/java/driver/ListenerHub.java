@@ -0,0 +1,76 @@
+package driver;
+
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single WebDriverListener which dispatches every event to a changeable list of listeners.<br>
+ * The driver of a session is decorated with the hub only once, registering or removing a listener
+ * afterwards does not create a new decorator layer.
+ *
+ * @author Andras Fuge
+ */
+final class ListenerHub implements InvocationHandler {
+    private final CopyOnWriteArrayList<WebDriverListener> listeners = new CopyOnWriteArrayList<>();
+    private final WebDriverListener proxy;
+
+    ListenerHub() {
+        proxy = (WebDriverListener) Proxy.newProxyInstance(WebDriverListener.class.getClassLoader(),
+                new Class<?>[]{WebDriverListener.class}, this);
+    }
+
+    /**
+     * Returns the listener to be passed to the EventFiringDecorator.
+     *
+     * @return the dispatching listener
+     */
+    WebDriverListener asListener() {
+        return proxy;
+    }
+
+    void add(WebDriverListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void remove(WebDriverListener listener) {
+        listeners.remove(listener);
+    }
+
+    void clear() {
+        listeners.clear();
+    }
+
+    List<WebDriverListener> getListeners() {
+        return listeners;
+    }
+
+    @Override
+    public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                default:
+                    return String.format("ListenerHub%s", listeners);
+            }
+        }
+
+        for (WebDriverListener listener : listeners) {
+            try {
+                method.invoke(listener, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package driver;
+
+import enums.CommandType;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Listener recording the latency of every WebDriver command into CommandMetrics, the TimeBreakdown of the thread and
+ * the TraceRecorder.<br>
+ * Calls which only return a local helper object (manage, navigate, switchTo...) are not measured.
+ *
+ * @author Andras Fuge
+ */
+public class MetricsListener implements WebDriverListener {
+    private static final MetricsListener INSTANCE = new MetricsListener();
+
+    private final ThreadLocal<StartTimes> startTimes = ThreadLocal.withInitial(StartTimes::new);
+
+    private MetricsListener() {
+    }
+
+    public static MetricsListener getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        startTimes.get().push(System.nanoTime());
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        finish(method, args);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        finish(method, args);
+    }
+
+    private void finish(Method method, Object[] args) {
+        long start = startTimes.get().pop();
+        CommandType type = categorize(method.getName());
+
+        if (start != 0 && type != null) {
+            long nanos = System.nanoTime() - start;
+
+            CommandMetrics.record(type, nanos);
+            TimeBreakdown.command(nanos);
+            TraceRecorder.record("command", method.getName(), type == CommandType.FIND ? args[0] : null, start, nanos);
+        }
+    }
+
+    /**
+     * Maps a WebDriver API method to its command category.
+     *
+     * @param methodName the name of the called method
+     * @return the command category, or null when the call does not reach the browser
+     */
+    static CommandType categorize(String methodName) {
+        switch (methodName) {
+            case "findElement":
+            case "findElements":
+                return CommandType.FIND;
+            case "click":
+                return CommandType.CLICK;
+            case "sendKeys":
+                return CommandType.SEND_KEYS;
+            case "executeScript":
+            case "executeAsyncScript":
+                return CommandType.EXECUTE_SCRIPT;
+            case "get":
+            case "to":
+            case "back":
+            case "forward":
+            case "refresh":
+                return CommandType.NAVIGATE;
+            case "getScreenshotAs":
+                return CommandType.SCREENSHOT;
+            case "manage":
+            case "navigate":
+            case "switchTo":
+            case "timeouts":
+            case "window":
+            case "logs":
+            case "getWrappedDriver":
+            case "getWrappedElement":
+            case "toString":
+            case "hashCode":
+            case "equals":
+                return null;
+            default:
+                return CommandType.OTHER;
+        }
+    }
+
+    /**
+     * Allocation free stack of the start times of the nested calls of one thread.
+     */
+    private static final class StartTimes {
+        private long[] values = new long[16];
+        private int depth = 0;
+
+        private void push(long value) {
+            if (depth == values.length) {
+                values = Arrays.copyOf(values, depth * 2);
+            }
+
+            values[depth++] = value;
+        }
+
+        private long pop() {
+            return depth == 0 ? 0 : values[--depth];
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package driver;
+
+import enums.CommandType;
+import enums.NavigationMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static driver.DriverManager.getDriver;
+
+/**
+ * Navigation engine behind the NavigationMode settings of DriverMethods.<br>
+ * The driver holds every command while a navigation is pending, as far as the session's page load strategy requires,
+ * so DOMContentLoaded can only be reached early by the strategy: an EAGER session (see BrowserOptions) returns from a
+ * plain navigation at DOMContentLoaded, a NORMAL one only after the load event. Under NONE, DOM_CONTENT_LOADED starts
+ * the navigation (through DevTools when available, otherwise through a script) and polls the document's ready state.<br>
+ * NETWORK_IDLE tracks the fetch and XHR calls of the page with an in-page counter. With DevTools the counter is
+ * registered once per session and runs before the page's own scripts, otherwise it is injected after the load
+ * and only sees the requests started after that.
+ *
+ * @author Andras Fuge
+ */
+final class NavigationWait {
+    private static final Logger LOG = LogManager.getLogger(NavigationWait.class);
+
+    private static final long MIN_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 100;
+    private static final AtomicBoolean NORMAL_STRATEGY_WARNED = new AtomicBoolean();
+
+    private static final String MARK_NAVIGATING_SCRIPT = "window.__sbNavigating = true;";
+
+    private static final String NAVIGATE_SCRIPT = MARK_NAVIGATING_SCRIPT
+            + "if (arguments[0] === null) { window.location.reload(); } else { window.location.href = arguments[0]; }";
+
+    private static final String DOM_READY_SCRIPT = ""
+            + "return !window.__sbNavigating && document.readyState !== 'loading';";
+
+    private static final String NETWORK_STATE_SCRIPT = DomScripts.NETWORK_TRACKER
+            + "return [document.readyState === 'complete' ? window.__sbNet.inflight : -1, Date.now() - window.__sbNet.last];";
+
+    private NavigationWait() {
+    }
+
+    /**
+     * Navigates to the url, or reloads the page when the url is null, and waits for the navigation mode's condition.
+     *
+     * @param url         the url to navigate to, null to reload the active page
+     * @param mode        the condition on which the navigation is complete
+     * @param quietPeriod the time without network activity counted as idle
+     * @param timeout     the maximum time to wait for the condition after the navigation command
+     * @throws TimeoutException when the condition does not hold within the timeout
+     */
+    static void navigate(String url, NavigationMode mode, Duration quietPeriod, Duration timeout) throws TimeoutException {
+        SessionReset.recordOrigin(DriverRegistry.current().getVisitedOrigins(), url);
+
+        switch (mode) {
+            case DOM_CONTENT_LOADED:
+                navigateWithoutLoad(url, timeout);
+                break;
+            case NETWORK_IDLE:
+                installNetworkTracker();
+                navigateToLoad(url);
+                waitForNetworkIdle(quietPeriod, timeout);
+                break;
+            default:
+                navigateToLoad(url);
+        }
+    }
+
+    private static void navigateToLoad(String url) {
+        if (url == null) {
+            getDriver().navigate().refresh();
+        } else {
+            getDriver().navigate().to(url);
+        }
+    }
+
+    private static void navigateWithoutLoad(String url, Duration timeout) {
+        WebDriver driver = getDriver();
+        PageLoadStrategy strategy = getPageLoadStrategy(driver);
+
+        if (strategy == PageLoadStrategy.NORMAL && NORMAL_STRATEGY_WARNED.compareAndSet(false, true)) {
+            LOG.warn("DOM_CONTENT_LOADED navigation needs the EAGER or NONE page load strategy, the session uses NORMAL "
+                    + "and waits for the load event anyway");
+        }
+
+        // an EAGER session already returns from the navigation at DOMContentLoaded, polling would only add a round trip
+        if (strategy != PageLoadStrategy.NONE) {
+            navigateToLoad(url);
+            return;
+        }
+
+        if (!(driver instanceof JavascriptExecutor)) {
+            navigateToLoad(url);
+            return;
+        }
+
+        if (driver instanceof HasCdp) {
+            try {
+                Map<String, Object> parameters = new HashMap<>();
+                if (url != null) {
+                    parameters.put("url", url);
+                }
+
+                // the flag lives on the old document only, so the ready check cannot pass before the new one replaced it
+                ((JavascriptExecutor) driver).executeScript(MARK_NAVIGATING_SCRIPT);
+                ((HasCdp) driver).executeCdpCommand(url == null ? "Page.reload" : "Page.navigate", parameters);
+                waitForDomReady(timeout);
+                return;
+            } catch (TimeoutException e) {
+                throw e;
+            } catch (WebDriverException e) {
+                LOG.debug("DevTools navigation is not available, navigating by script: {}", e.getMessage());
+            }
+        }
+
+        ((JavascriptExecutor) driver).executeScript(NAVIGATE_SCRIPT, url);
+        waitForDomReady(timeout);
+    }
+
+    /**
+     * Returns the page load strategy the session was created with, NORMAL when the driver does not tell.
+     *
+     * @param driver the driver of the session
+     * @return the page load strategy of the session
+     */
+    static PageLoadStrategy getPageLoadStrategy(WebDriver driver) {
+        if (!(driver instanceof HasCapabilities)) {
+            return PageLoadStrategy.NORMAL;
+        }
+
+        Capabilities capabilities = ((HasCapabilities) driver).getCapabilities();
+        Object strategy = capabilities == null ? null : capabilities.getCapability("pageLoadStrategy");
+
+        if (strategy == null) {
+            return PageLoadStrategy.NORMAL;
+        }
+        if (strategy instanceof PageLoadStrategy) {
+            return (PageLoadStrategy) strategy;
+        }
+
+        PageLoadStrategy parsed = PageLoadStrategy.fromString(String.valueOf(strategy));
+        return parsed == null ? PageLoadStrategy.NORMAL : parsed;
+    }
+
+    private static void waitForDomReady(Duration timeout) {
+        long start = CommandMetrics.start();
+
+        try {
+            poll(timeout, "DOMContentLoaded", () -> Boolean.TRUE.equals(((JavascriptExecutor) getDriver()).executeScript(DOM_READY_SCRIPT)));
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
+    }
+
+    /**
+     * Waits until the page has no fetch or XHR request in flight for the quiet period.
+     *
+     * @param quietPeriod the time without network activity counted as idle
+     * @param timeout     the maximum time to wait
+     * @throws TimeoutException when the page does not become idle within the timeout
+     */
+    static void waitForNetworkIdle(Duration quietPeriod, Duration timeout) throws TimeoutException {
+        long start = CommandMetrics.start();
+
+        try {
+            poll(timeout, "network idle", () -> {
+                List<?> state = (List<?>) ((JavascriptExecutor) getDriver()).executeScript(NETWORK_STATE_SCRIPT);
+                long inflight = ((Number) state.get(0)).longValue();
+                long idleMillis = ((Number) state.get(1)).longValue();
+
+                return inflight == 0 && idleMillis >= quietPeriod.toMillis();
+            });
+        } finally {
+            CommandMetrics.stop(CommandType.WAIT, start);
+        }
+    }
+
+    /**
+     * Registers the network tracker on every new document of the session's browser, once per session.
+     */
+    private static void installNetworkTracker() {
+        DriverSession session = DriverRegistry.current();
+        WebDriver driver = getDriver();
+
+        if (session.isNetworkTrackerInstalled() || !(driver instanceof HasCdp)) {
+            return;
+        }
+
+        try {
+            ((HasCdp) driver).executeCdpCommand("Page.addScriptToEvaluateOnNewDocument",
+                    Collections.singletonMap("source", DomScripts.NETWORK_TRACKER));
+            session.setNetworkTrackerInstalled(true);
+        } catch (WebDriverException e) {
+            LOG.debug("DevTools is not available, network tracking starts after the page load: {}", e.getMessage());
+        }
+    }
+
+    private interface Probe {
+        boolean holds();
+    }
+
+    /**
+     * Polls the probe until it holds, doubling the interval between checks up to a maximum.<br>
+     * Script errors while the old document unloads count as the condition not holding yet.
+     */
+    private static void poll(Duration timeout, String condition, Probe probe) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long interval = MIN_POLL_MILLIS;
+
+        while (true) {
+            try {
+                if (probe.holds()) {
+                    return;
+                }
+            } catch (TimeoutException e) {
+                throw e;
+            } catch (WebDriverException e) {
+                LOG.debug("Navigation probe failed, retrying: {}", e.getMessage());
+            }
+
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                String errorMessage = String.format("Page did not reach %s within %d ms", condition, timeout.toMillis());
+                LOG.error(errorMessage);
+                throw new TimeoutException(errorMessage);
+            }
+
+            try {
+                Thread.sleep(Math.min(interval, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting", e);
+            }
+
+            interval = Math.min(interval * 2, MAX_POLL_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package driver;
+
+import enums.WaitCondition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.*;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static driver.DriverManager.getDriver;
+
+/**
+ * Push based wait engine.<br>
+ * The condition is evaluated inside the browser by an asynchronous script which re-checks it on every DOM mutation,
+ * so the wait returns as soon as the condition holds and costs a single command.<br>
+ * When the script cannot be used (non W3C locator, no Javascript support, navigation during the wait) the remaining
+ * timeout budget is spent polling with an adaptive backoff.
+ *
+ * @author Andras Fuge
+ */
+final class ObserverWait {
+    private static final Logger LOG = LogManager.getLogger(ObserverWait.class);
+
+    private static final long SCRIPT_TIMEOUT_MARGIN_MILLIS = 5000;
+    private static final long MIN_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 500;
+    private static final Duration DEFAULT_SCRIPT_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String OBSERVE_SCRIPT = DomScripts.FIND_ELEMENTS + DomScripts.IS_VISIBLE + DomScripts.GET_ATTRIBUTE
+            + DomScripts.CHECK_CONDITION + DomScripts.OBSERVE
+            + "var done = arguments[arguments.length - 1];"
+            + "var condition = arguments[0], using = arguments[1], value = arguments[2], attribute = arguments[3], expected = arguments[4];"
+            + "__sbObserve(function () { return __sbCheck(condition, using, value, attribute, expected); }, arguments[5], done);";
+
+    private ObserverWait() {
+    }
+
+    /**
+     * Waits until the condition holds for the first element matching the locator.
+     *
+     * @param condition the condition to wait for
+     * @param locator   the By locator of the element
+     * @param attribute the attribute name for the attribute conditions, null otherwise
+     * @param value     the expected attribute value part for the attribute conditions, null otherwise
+     * @param timeout   the timeout duration in seconds
+     * @throws TimeoutException when the condition does not hold within the timeout
+     */
+    static void until(WaitCondition condition, By locator, String attribute, String value, long timeout) throws TimeoutException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(timeout).toNanos();
+        String[] w3cLocator = DomScripts.toW3cLocator(locator);
+
+        if (w3cLocator != null && getDriver() instanceof JavascriptExecutor) {
+            try {
+                if (observe(condition, w3cLocator, attribute, value, Duration.ofSeconds(timeout))) {
+                    return;
+                }
+
+                throw timeoutException(condition, locator, timeout);
+            } catch (TimeoutException | InvalidSelectorException e) {
+                throw e;
+            } catch (WebDriverException e) {
+                LOG.debug("Observer wait is not available, falling back to polling: {}", e.getMessage());
+            }
+        }
+
+        poll(toExpectedCondition(condition, locator, attribute, value), deadline, condition, locator, timeout);
+    }
+
+    private static boolean observe(WaitCondition condition, String[] w3cLocator, String attribute, String value, Duration timeout) {
+        Object result = executeAsync(OBSERVE_SCRIPT, timeout,
+                condition.name(), w3cLocator[0], w3cLocator[1], attribute, value, timeout.toMillis());
+
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * Executes an asynchronous observer script, raising the driver's script timeout for the call when it is shorter
+     * than the wait. The script timeout is read from the driver once per session and cached afterwards.
+     *
+     * @param script  the asynchronous script
+     * @param timeout the time the script may wait in the browser
+     * @param args    the script arguments
+     * @return the value the script completed with
+     * @throws InvalidSelectorException when the browser rejected the locator
+     * @throws JavascriptException      when the check of the script failed otherwise
+     */
+    static Object executeAsync(String script, Duration timeout, Object... args) {
+        DriverSession session = DriverRegistry.current();
+        WebDriver.Timeouts timeouts = getDriver().manage().timeouts();
+        Duration previousScriptTimeout = session.getScriptTimeout();
+        Duration requiredScriptTimeout = timeout.plusMillis(SCRIPT_TIMEOUT_MARGIN_MILLIS);
+
+        if (previousScriptTimeout == null) {
+            previousScriptTimeout = getScriptTimeout(timeouts);
+            session.setScriptTimeout(previousScriptTimeout);
+        }
+
+        boolean extendTimeout = previousScriptTimeout.compareTo(requiredScriptTimeout) < 0;
+
+        if (extendTimeout) {
+            session.setScriptTimeout(null);
+            timeouts.scriptTimeout(requiredScriptTimeout);
+        }
+
+        try {
+            return toResult(((JavascriptExecutor) getDriver()).executeAsyncScript(script, args));
+        } finally {
+            if (extendTimeout) {
+                timeouts.scriptTimeout(previousScriptTimeout);
+                session.setScriptTimeout(previousScriptTimeout);
+            }
+        }
+    }
+
+    private static Duration getScriptTimeout(WebDriver.Timeouts timeouts) {
+        try {
+            Duration scriptTimeout = timeouts.getScriptTimeout();
+            return scriptTimeout == null ? DEFAULT_SCRIPT_TIMEOUT : scriptTimeout;
+        } catch (UnsupportedOperationException | WebDriverException e) {
+            return DEFAULT_SCRIPT_TIMEOUT;
+        }
+    }
+
+    /**
+     * Turns the error an observer script completed with into an exception, like findElement would fail.
+     */
+    private static Object toResult(Object result) {
+        if (!(result instanceof Map) || !((Map<?, ?>) result).containsKey("error")) {
+            return result;
+        }
+
+        Map<?, ?> error = (Map<?, ?>) result;
+        String errorMessage = String.format("%s: %s", error.get("error"), error.get("message"));
+
+        if ("SyntaxError".equals(error.get("error")) || "NamespaceError".equals(error.get("error"))) {
+            throw new InvalidSelectorException(errorMessage);
+        }
+
+        throw new JavascriptException(errorMessage);
+    }
+
+    /**
+     * Polls the condition until the deadline, doubling the interval between checks up to a maximum.
+     */
+    private static void poll(ExpectedCondition<?> expectedCondition, long deadline, WaitCondition condition, By locator, long timeout) {
+        long interval = MIN_POLL_MILLIS;
+
+        while (true) {
+            if (isMet(expectedCondition)) {
+                return;
+            }
+
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                throw timeoutException(condition, locator, timeout);
+            }
+
+            try {
+                Thread.sleep(Math.min(interval, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting", e);
+            }
+
+            interval = Math.min(interval * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    @SuppressWarnings("try")
+    static boolean isMet(ExpectedCondition<?> expectedCondition) {
+        try (TraceRecorder.Span span = TraceRecorder.span("wait", "poll", expectedCondition)) {
+            Object result = expectedCondition.apply(getDriver());
+            return result != null && !Boolean.FALSE.equals(result);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            return false;
+        }
+    }
+
+    static ExpectedCondition<?> toExpectedCondition(WaitCondition condition, By locator, String attribute, String value) {
+        switch (condition) {
+            case VISIBLE:
+                return ExpectedConditions.visibilityOfElementLocated(locator);
+            case INVISIBLE:
+                return ExpectedConditions.invisibilityOfElementLocated(locator);
+            case CLICKABLE:
+                return ExpectedConditions.elementToBeClickable(locator);
+            case ATTRIBUTE_CONTAINS:
+                return (ExpectedCondition<Boolean>) driver -> {
+                    String actual = driver.findElement(locator).getAttribute(attribute);
+                    return actual != null && actual.contains(value);
+                };
+            case ATTRIBUTE_NOT_CONTAINS:
+                return (ExpectedCondition<Boolean>) driver -> {
+                    String actual = driver.findElement(locator).getAttribute(attribute);
+                    return actual == null || !actual.contains(value);
+                };
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported wait condition: %s", condition));
+        }
+    }
+
+    private static TimeoutException timeoutException(WaitCondition condition, By locator, long timeout) {
+        String errorMessage = String.format("Condition %s was not met for %s within %d seconds", condition, locator, timeout);
+        LOG.error(errorMessage);
+        return new TimeoutException(errorMessage);
+    }
+}
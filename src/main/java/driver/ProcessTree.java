@@ -0,0 +1,233 @@
+package driver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The operating system processes of one local session or driver service: the root process and every process it
+ * launched (browser, renderers, GPU and utility processes), built on ProcessHandle, see BrowserProcesses.
+ *
+ * @author Andras Fuge
+ */
+final class ProcessTree {
+    private final ProcessHandle root;
+
+    private ProcessTree(ProcessHandle root) {
+        this.root = root;
+    }
+
+    /**
+     * Finds the driver service process listening on the port among the children of this JVM.
+     *
+     * @param port the port of the driver service
+     * @return the process tree, empty when the service is not a child of this JVM
+     */
+    static Optional<ProcessTree> ofService(int port) {
+        return findService(port).map(ProcessTree::new);
+    }
+
+    /**
+     * Finds the browser process launched with the profile directory among the children of a driver service, used
+     * when the service is shared by many sessions.
+     *
+     * @param servicePort the port of the driver service
+     * @param userDataDir the profile directory of the browser
+     * @return the process tree of the browser, empty when it is not found
+     */
+    static Optional<ProcessTree> ofBrowser(int servicePort, String userDataDir) {
+        String profileArgument = "--user-data-dir=" + userDataDir;
+
+        return findService(servicePort)
+                .flatMap(service -> service.children()
+                        .filter(process -> hasArgument(process, profileArgument))
+                        .findFirst())
+                .map(ProcessTree::new);
+    }
+
+    private static Optional<ProcessHandle> findService(int port) {
+        String portArgument = "--port=" + port;
+
+        return ProcessHandle.current().children()
+                .filter(process -> hasArgument(process, portArgument))
+                .findFirst();
+    }
+
+    /**
+     * Returns the tree of a process recorded by an earlier JVM, if the process still runs.
+     *
+     * @param pid              the process id
+     * @param startEpochMillis the start time of the process, protecting against pid reuse
+     * @return the process tree, empty when the process is gone or the pid was reused
+     */
+    static Optional<ProcessTree> ofRecord(long pid, long startEpochMillis) {
+        return ProcessHandle.of(pid)
+                .filter(process -> process.info().startInstant()
+                        .map(start -> start.toEpochMilli() == startEpochMillis)
+                        .orElse(false))
+                .map(ProcessTree::new);
+    }
+
+    static boolean isAlive(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    static long currentPid() {
+        return ProcessHandle.current().pid();
+    }
+
+    private static boolean hasArgument(ProcessHandle process, String argument) {
+        ProcessHandle.Info info = process.info();
+
+        if (info.arguments().isPresent()) {
+            for (String processArgument : info.arguments().get()) {
+                if (processArgument.equals(argument)) {
+                    return true;
+                }
+            }
+        }
+
+        return info.commandLine().map(commandLine -> commandLine.contains(argument)).orElse(false);
+    }
+
+    /**
+     * Returns the pid and start time of every process of the tree, one "pid startEpochMillis" entry per process.
+     * Recording every process lets a later JVM find the browser even when the driver service already exited.
+     *
+     * @return the process records
+     */
+    List<String> toRecords() {
+        List<String> records = new ArrayList<>();
+
+        for (ProcessHandle process : snapshot()) {
+            process.info().startInstant()
+                    .ifPresent(start -> records.add(process.pid() + " " + start.toEpochMilli()));
+        }
+
+        return records;
+    }
+
+    boolean isAlive() {
+        return root.isAlive();
+    }
+
+    /**
+     * Returns the processes of the tree, the deepest ones first.
+     */
+    private List<ProcessHandle> snapshot() {
+        List<ProcessHandle> processes = root.descendants().collect(Collectors.toList());
+        List<ProcessHandle> ordered = new ArrayList<>();
+
+        for (int i = processes.size() - 1; i >= 0; i--) {
+            ordered.add(processes.get(i));
+        }
+        ordered.add(root);
+
+        return ordered;
+    }
+
+    /**
+     * Returns the number of processes in the tree.
+     *
+     * @return the process count, zero when the tree is gone
+     */
+    int size() {
+        return root.isAlive() ? snapshot().size() : 0;
+    }
+
+    /**
+     * Returns the summed resident set size of the processes in the tree.
+     *
+     * @return the resident memory in bytes, -1 when the platform does not expose it
+     */
+    long getResidentSetSize() {
+        long total = -1;
+
+        for (ProcessHandle process : snapshot()) {
+            long rss = readResidentSetSize(process.pid());
+            if (rss >= 0) {
+                total = Math.max(total, 0) + rss;
+            }
+        }
+
+        return total;
+    }
+
+    private static long readResidentSetSize(long pid) {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Runs the shutdown action, waits for the processes of the tree to exit on their own, then kills the remaining
+     * ones.<br>
+     * The tree is captured before the action, so processes re-parented after their parent exited are still reaped.
+     *
+     * @param shutdown the action asking the processes to exit, e.g. WebDriver.quit()
+     * @param grace    the time the processes get to exit after the action
+     * @return the number of processes which had to be killed
+     */
+    int reap(Runnable shutdown, Duration grace) {
+        List<ProcessHandle> processes = snapshot();
+        int killed;
+
+        try {
+            shutdown.run();
+        } finally {
+            killed = kill(processes, grace);
+        }
+
+        return killed;
+    }
+
+    private static int kill(List<ProcessHandle> processes, Duration grace) {
+        long deadline = System.nanoTime() + grace.toNanos();
+        int killed = 0;
+
+        for (ProcessHandle process : processes) {
+            CompletableFuture<ProcessHandle> exit = process.onExit();
+            long remaining = deadline - System.nanoTime();
+
+            try {
+                if (remaining > 0) {
+                    exit.get(remaining, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | java.util.concurrent.TimeoutException e) {
+                // still running, killed below
+            }
+
+            if (process.isAlive() && process.destroyForcibly()) {
+                killed++;
+            }
+        }
+
+        return killed;
+    }
+}
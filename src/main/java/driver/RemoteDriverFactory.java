@@ -0,0 +1,474 @@
+package driver;
+
+import enums.HubSelection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.Dsl;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.http.WebSocket;
+import utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates RemoteWebDriver sessions on one or more grid hubs.<br>
+ * All sessions of a factory share one HTTP client with a bounded, keep-alive connection pool per hub instead of
+ * Selenium's default client. The hub of a new session is chosen round robin or by the least outstanding sessions,
+ * session creations failing on a connection or timeout error are retried on the other hubs with an exponential
+ * backoff, other errors (e.g. invalid capabilities) fail at once.<br>
+ * Session creation latency, failures and outstanding sessions are tracked per hub.
+ *
+ * @author Andras Fuge
+ */
+public class RemoteDriverFactory {
+    private static final Logger LOG = LogManager.getLogger(RemoteDriverFactory.class);
+
+    private final List<Hub> hubs;
+    private final HubSelection selection;
+    private final AtomicInteger nextHub = new AtomicInteger();
+
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofMinutes(3);
+    private int maxConnectionsPerHub = 32;
+    private boolean keepAlive = true;
+    private Duration pooledConnectionIdleTimeout = Duration.ofMinutes(1);
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    private AsyncHttpClient httpClient;
+    private final Map<String, HttpClient> socketClients = new HashMap<>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates a factory for the specified hubs. The HTTP client is created with the first session.
+     *
+     * @param selection  the strategy for choosing the hub of a new session
+     * @param gridHubUrl the addresses of the selenium grid hubs
+     * @throws IllegalArgumentException when no hub is given or a hub address is not a valid URL
+     */
+    public RemoteDriverFactory(HubSelection selection, String... gridHubUrl) throws IllegalArgumentException {
+        if (gridHubUrl.length == 0) {
+            throw new IllegalArgumentException("At least one grid hub url must be given!");
+        }
+
+        List<Hub> hubList = new ArrayList<>();
+        for (String url : gridHubUrl) {
+            try {
+                hubList.add(new Hub(new URL(url)));
+            } catch (MalformedURLException e) {
+                LOG.error(String.format("Grid Url is not properly formatted: %s", url));
+                throw new IllegalArgumentException(String.format("Grid Url is not properly formatted: %s", url), e);
+            }
+        }
+
+        this.hubs = Collections.unmodifiableList(hubList);
+        this.selection = selection;
+    }
+
+    /**
+     * Creates a new remote session, retrying on the other hubs when the creation fails on a connection or timeout error.
+     *
+     * @param capabilities the requested capabilities
+     * @return the created WebDriver
+     * @throws SessionNotCreatedException when every attempt failed
+     * @throws WebDriverException         when the creation failed with an error which can not be retried
+     */
+    public WebDriver createDriver(Capabilities capabilities) throws SessionNotCreatedException {
+        if (shutdown) {
+            throw new IllegalStateException("Remote driver factory is shut down!");
+        }
+
+        Set<Hub> failed = new HashSet<>();
+        Duration backoff = initialBackoff;
+        RuntimeException lastError = null;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            Hub hub = selectHub(failed);
+            hub.outstanding.incrementAndGet();
+            long start = System.nanoTime();
+
+            try {
+                WebDriver driver = new TrackedRemoteWebDriver(createExecutor(hub), capabilities, hub);
+                hub.creationLatency.record(System.nanoTime() - start);
+                hub.created.incrementAndGet();
+                LOG.debug("Remote session created on {} in {} ms", hub.url, (System.nanoTime() - start) / 1_000_000);
+
+                return driver;
+            } catch (RuntimeException e) {
+                hub.outstanding.decrementAndGet();
+                hub.failures.incrementAndGet();
+                failed.add(hub);
+                lastError = e;
+                LOG.warn(String.format("Session creation failed on %s (attempt %d of %d): %s", hub.url, attempt, maxAttempts, e.getMessage()));
+
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+            }
+
+            if (attempt < maxAttempts) {
+                sleep(backoff);
+                backoff = backoff.multipliedBy(2);
+            }
+        }
+
+        throw new SessionNotCreatedException(String.format("Could not create a remote session in %d attempts", maxAttempts), lastError);
+    }
+
+    /**
+     * Returns whether a failed session creation is worth retrying: only connection and timeout failures are, a hub
+     * refusing the capabilities refuses them on the next attempt as well.
+     *
+     * @param error the error of the session creation
+     * @return true when a connection or timeout failure is among the causes of the error
+     */
+    static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException
+                    || cause instanceof TimeoutException
+                    || cause instanceof java.util.concurrent.TimeoutException
+                    || cause instanceof UnreachableBrowserException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Chooses the hub of the next session, preferring the hubs which did not fail during the current creation.
+     */
+    private Hub selectHub(Set<Hub> failed) {
+        List<Hub> candidates = new ArrayList<>(hubs);
+        if (failed.size() < hubs.size()) {
+            candidates.removeAll(failed);
+        }
+
+        if (HubSelection.LEAST_OUTSTANDING.equals(selection)) {
+            Hub best = candidates.get(Math.floorMod(nextHub.getAndIncrement(), candidates.size()));
+            for (Hub hub : candidates) {
+                if (hub.outstanding.get() < best.outstanding.get()) {
+                    best = hub;
+                }
+            }
+
+            return best;
+        }
+
+        return candidates.get(Math.floorMod(nextHub.getAndIncrement(), candidates.size()));
+    }
+
+    private CommandExecutor createExecutor(Hub hub) {
+        ClientConfig config = ClientConfig.defaultConfig()
+                .baseUrl(hub.url)
+                .connectionTimeout(connectTimeout)
+                .readTimeout(readTimeout);
+
+        return new HttpCommandExecutor(Collections.emptyMap(), config, this::createClient);
+    }
+
+    private HttpClient createClient(ClientConfig config) {
+        return new PooledHttpClient(config, getHttpClient(), this);
+    }
+
+    /**
+     * Returns the client opening the WebSocket connections to the hub of the config, one per hub and factory.
+     */
+    private synchronized HttpClient getSocketClient(ClientConfig config) {
+        if (shutdown) {
+            throw new IllegalStateException("Remote driver factory is shut down!");
+        }
+
+        return socketClients.computeIfAbsent(config.baseUri().toString(),
+                baseUri -> HttpClient.Factory.createDefault().createClient(config));
+    }
+
+    private synchronized AsyncHttpClient getHttpClient() {
+        if (httpClient == null) {
+            DefaultAsyncHttpClientConfig.Builder builder = new DefaultAsyncHttpClientConfig.Builder()
+                    .setThreadFactory(runnable -> {
+                        Thread thread = new Thread(runnable, "remote-driver-http");
+                        thread.setDaemon(true);
+                        return thread;
+                    })
+                    .setKeepAlive(keepAlive)
+                    .setMaxConnectionsPerHost(maxConnectionsPerHub)
+                    .setPooledConnectionIdleTimeout(toMillis(pooledConnectionIdleTimeout))
+                    .setConnectTimeout(toMillis(connectTimeout))
+                    .setReadTimeout(toMillis(readTimeout))
+                    .setRequestTimeout(toMillis(readTimeout))
+                    .setUseProxyProperties(true)
+                    .setUseProxySelector(true);
+
+            httpClient = Dsl.asyncHttpClient(builder);
+        }
+
+        return httpClient;
+    }
+
+    private static int toMillis(Duration duration) {
+        return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SessionNotCreatedException("Interrupted while waiting to retry session creation");
+        }
+    }
+
+    private synchronized void checkConfigurable() {
+        if (httpClient != null) {
+            throw new IllegalStateException("The HTTP transport can only be tuned before the first session is created!");
+        }
+    }
+
+    /**
+     * Closes the shared HTTP client and the WebSocket clients. Sessions still open can not be used afterwards.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+
+        for (HttpClient socketClient : socketClients.values()) {
+            socketClient.close();
+        }
+        socketClients.clear();
+
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                LOG.warn(String.format("Could not close the remote HTTP client: %s", e.getMessage()));
+            }
+        }
+    }
+
+    public List<Hub> getHubs() {
+        return hubs;
+    }
+
+    public HubSelection getSelection() {
+        return selection;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        checkConfigurable();
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        checkConfigurable();
+        this.readTimeout = readTimeout;
+    }
+
+    public void setMaxConnectionsPerHub(int maxConnectionsPerHub) {
+        checkConfigurable();
+        this.maxConnectionsPerHub = maxConnectionsPerHub;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        checkConfigurable();
+        this.keepAlive = keepAlive;
+    }
+
+    public void setPooledConnectionIdleTimeout(Duration pooledConnectionIdleTimeout) {
+        checkConfigurable();
+        this.pooledConnectionIdleTimeout = pooledConnectionIdleTimeout;
+    }
+
+    /**
+     * Sets the retry policy of the session creation.
+     *
+     * @param maxAttempts    the number of creation attempts, at least one
+     * @param initialBackoff the wait before the second attempt, doubled before every further attempt
+     */
+    public void setRetry(int maxAttempts, Duration initialBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Maximum attempts must be positive!");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * One grid hub and its session statistics.
+     */
+    public static final class Hub {
+        private final URL url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final LatencyHistogram creationLatency = new LatencyHistogram();
+
+        private Hub(URL url) {
+            this.url = url;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns the number of sessions created on this hub, or being created, which are not quit yet.
+         *
+         * @return the outstanding session count
+         */
+        public int getOutstandingSessions() {
+            return outstanding.get();
+        }
+
+        public long getCreatedSessions() {
+            return created.get();
+        }
+
+        public long getFailedCreations() {
+            return failures.get();
+        }
+
+        /**
+         * Returns the latency of the successful session creations on this hub.
+         *
+         * @return the LatencyHistogram of the session creations
+         */
+        public LatencyHistogram getCreationLatency() {
+            return creationLatency;
+        }
+    }
+
+    /**
+     * RemoteWebDriver which releases its hub's outstanding session slot when quit.
+     */
+    private static final class TrackedRemoteWebDriver extends RemoteWebDriver {
+        private final Hub hub;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private TrackedRemoteWebDriver(CommandExecutor executor, Capabilities capabilities, Hub hub) {
+            super(executor, capabilities);
+            this.hub = hub;
+        }
+
+        @Override
+        public void quit() {
+            try {
+                super.quit();
+            } finally {
+                // quit is also called by the super constructor when the session could not be created
+                if (hub != null && released.compareAndSet(false, true)) {
+                    hub.outstanding.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Selenium HttpClient running on the factory's shared connection pool.<br>
+     * WebSocket connections are rare for remote sessions and are opened by the factory's Selenium default client.
+     */
+    private static final class PooledHttpClient implements HttpClient {
+        private final ClientConfig config;
+        private final AsyncHttpClient client;
+        private final RemoteDriverFactory factory;
+        private final String baseUrl;
+
+        private PooledHttpClient(ClientConfig config, AsyncHttpClient client, RemoteDriverFactory factory) {
+            this.config = config;
+            this.client = client;
+            this.factory = factory;
+            this.baseUrl = config.baseUri().toString().replaceAll("/$", "");
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) {
+            String uri = request.getUri();
+            RequestBuilder builder = new RequestBuilder(request.getMethod().toString())
+                    .setUrl(uri.startsWith("http:") || uri.startsWith("https:") ? uri : baseUrl + uri)
+                    .setRequestTimeout(toMillis(config.readTimeout()));
+
+            for (String name : request.getQueryParameterNames()) {
+                for (String value : request.getQueryParameters(name)) {
+                    builder.addQueryParam(name, value);
+                }
+            }
+            for (String name : request.getHeaderNames()) {
+                for (String value : request.getHeaders(name)) {
+                    builder.addHeader(name, value);
+                }
+            }
+            if (request.getMethod() != HttpMethod.GET) {
+                builder.setBody(Contents.bytes(request.getContent()));
+            }
+
+            Response response;
+            try {
+                response = client.executeRequest(builder.build()).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting for the remote end", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof java.util.concurrent.TimeoutException) {
+                    throw new TimeoutException(e.getCause());
+                }
+                if (e.getCause() instanceof IOException) {
+                    throw new UncheckedIOException((IOException) e.getCause());
+                }
+                throw new WebDriverException(e.getCause());
+            }
+
+            HttpResponse converted = new HttpResponse().setStatus(response.getStatusCode());
+            for (String name : response.getHeaders().names()) {
+                for (String value : response.getHeaders(name)) {
+                    converted.addHeader(name, value);
+                }
+            }
+            converted.setContent(Contents.bytes(response.getResponseBodyAsBytes()));
+
+            return converted;
+        }
+
+        @Override
+        public WebSocket openSocket(HttpRequest request, WebSocket.Listener listener) {
+            return factory.getSocketClient(config).openSocket(request, listener);
+        }
+
+        @Override
+        public void close() {
+            // the connection pool and the socket clients are shared by the factory and closed by its shutdown
+        }
+    }
+}
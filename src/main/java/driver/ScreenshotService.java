@@ -0,0 +1,313 @@
+package driver;
+
+import enums.ImageFormat;
+import io.cucumber.java.Scenario;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriverException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static driver.DriverManager.getDriver;
+
+/**
+ * Asynchronous screenshot pipeline.<br>
+ * Only the capture of the raw PNG bytes happens on the test thread. Decoding, downscaling and encoding run on a bounded
+ * background executor. When no transformation is requested the raw bytes are used as they are, without decoding.<br>
+ * The Cucumber Scenario is not thread-safe, so the encoded screenshots are attached on the test thread which took
+ * them, by awaitPending in an After hook or by the next captureToScenario of the same scenario.
+ *
+ * @author Andras Fuge
+ */
+public final class ScreenshotService {
+    private static final Logger LOG = LogManager.getLogger(ScreenshotService.class);
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private static final Set<Future<?>> PENDING = ConcurrentHashMap.newKeySet();
+    private static final ThreadLocal<Deque<Attachment>> ATTACHMENTS = ThreadLocal.withInitial(ArrayDeque::new);
+    private static ThreadPoolExecutor executor;
+
+    private ScreenshotService() {
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "screenshot-encoder");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    // a full queue slows the test threads down instead of growing the heap
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Captures the raw viewport screenshot of the active driver on the calling thread.
+     *
+     * @return the screenshot as PNG bytes
+     */
+    public static byte[] captureRaw() {
+        if (!(getDriver() instanceof TakesScreenshot)) {
+            throw new WebDriverException("WebDriver is not able to take screenshots!");
+        }
+
+        return ((TakesScreenshot) getDriver()).getScreenshotAs(OutputType.BYTES);
+    }
+
+    /**
+     * Captures a screenshot and transforms it in the background.
+     *
+     * @param format the output format
+     * @param scale  the downscale factor between 0 and 1, 1 keeps the original size
+     * @return future of the encoded image
+     */
+    public static CompletableFuture<byte[]> capture(ImageFormat format, double scale) {
+        byte[] raw = captureRaw();
+
+        if (!needsTransformation(format, scale)) {
+            return CompletableFuture.completedFuture(raw);
+        }
+
+        return track(CompletableFuture.supplyAsync(() -> transform(raw, format, scale), getExecutor()));
+    }
+
+    /**
+     * Captures a screenshot, encodes it in the background and queues it for the scenario.<br>
+     * The screenshot is attached on the calling thread: by the next captureToScenario of the same scenario once it is
+     * encoded, at the latest by awaitPending, which must be called on this thread before the scenario ends.
+     *
+     * @param scenario the scenario to attach the screenshot to
+     * @param format   the output format
+     * @param scale    the downscale factor between 0 and 1, 1 keeps the original size
+     * @return future completing once the screenshot is encoded
+     */
+    public static CompletableFuture<Void> captureToScenario(Scenario scenario, ImageFormat format, double scale) {
+        attachCompleted(scenario);
+        byte[] raw = captureRaw();
+
+        CompletableFuture<byte[]> image = needsTransformation(format, scale)
+                ? track(CompletableFuture.supplyAsync(() -> transform(raw, format, scale), getExecutor()))
+                : CompletableFuture.completedFuture(raw);
+        ATTACHMENTS.get().addLast(new Attachment(scenario, image, format.getMediaType()));
+
+        return image.thenAccept(bytes -> {
+        });
+    }
+
+    /**
+     * Attaches the already encoded screenshots queued on the calling thread, in the order they were taken.<br>
+     * Screenshots of an earlier scenario can no longer be attached, they are dropped.
+     */
+    private static void attachCompleted(Scenario scenario) {
+        Deque<Attachment> attachments = ATTACHMENTS.get();
+
+        while (!attachments.isEmpty()) {
+            Attachment attachment = attachments.peekFirst();
+
+            if (attachment.scenario != scenario) {
+                attachments.pollFirst();
+                LOG.warn(String.format("Screenshot of scenario [%s] dropped, awaitPending was not called before it ended",
+                        attachment.scenario.getName()));
+            } else if (attachment.image.isDone()) {
+                attachments.pollFirst();
+                attachment.attach();
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the background executor of the pipeline, e.g. the compression of a captured artifact.
+     *
+     * @param task the task producing the result
+     * @return future of the result, awaited by awaitPending as well
+     */
+    static <T> CompletableFuture<T> supplyInBackground(Supplier<T> task) {
+        return track(CompletableFuture.supplyAsync(task, getExecutor()));
+    }
+
+    /**
+     * Attaches the screenshots queued on the calling thread, then waits until every other background task submitted
+     * so far is finished. Meant for an After hook, which runs on the thread of the scenario.
+     *
+     * @param timeout the maximum time to wait
+     * @return true when all pending work finished within the timeout
+     */
+    public static boolean awaitPending(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Deque<Attachment> attachments = ATTACHMENTS.get();
+
+        while (!attachments.isEmpty()) {
+            try {
+                attachments.peekFirst().image.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // reported by attach
+            }
+
+            attachments.pollFirst().attach();
+        }
+
+        for (Future<?> future : PENDING) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                LOG.error(String.format("Screenshot processing failed: %s", e.getCause().getMessage()));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finishes the queued work and stops the background executor.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static <T extends CompletableFuture<?>> T track(T future) {
+        PENDING.add(future);
+        future.whenComplete((result, error) -> PENDING.remove(future));
+
+        return future;
+    }
+
+    private static boolean needsTransformation(ImageFormat format, double scale) {
+        return format != ImageFormat.PNG || scale < 1;
+    }
+
+    /**
+     * Decodes, downscales and encodes the raw PNG screenshot.
+     *
+     * @param raw    the raw PNG bytes
+     * @param format the output format
+     * @param scale  the downscale factor between 0 and 1
+     * @return the encoded image
+     */
+    static byte[] transform(byte[] raw, ImageFormat format, double scale) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(raw));
+
+            if (scale < 1) {
+                image = resize(image, scale);
+            }
+
+            return encode(image, format);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage source, double scale) {
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image, ImageFormat format) throws IOException {
+        if (format == ImageFormat.JPEG && image.getColorModel().hasAlpha()) {
+            image = resize(image, 1); // JPEG has no alpha channel
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.getFormatName());
+        if (!writers.hasNext()) {
+            throw new IOException(String.format("No image writer found for format: %s", format));
+        }
+
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+
+        if (format != ImageFormat.PNG && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // for PNG the quality only controls the deflate level, the image stays lossless
+            param.setCompressionQuality(format == ImageFormat.JPEG ? JPEG_QUALITY : 0f);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * A screenshot waiting on its test thread to be attached to its scenario.
+     */
+    private static final class Attachment {
+        private final Scenario scenario;
+        private final CompletableFuture<byte[]> image;
+        private final String mediaType;
+
+        private Attachment(Scenario scenario, CompletableFuture<byte[]> image, String mediaType) {
+            this.scenario = scenario;
+            this.image = image;
+            this.mediaType = mediaType;
+        }
+
+        private void attach() {
+            try {
+                scenario.attach(image.join(), mediaType, "screenshot");
+            } catch (CompletionException e) {
+                LOG.error(String.format("Screenshot processing failed: %s", e.getCause().getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package driver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.*;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings a browser back to the state of a freshly launched one, so it can serve the next scenario.<br>
+ * Browsers have no call clearing the storage of every origin, so the reset clears the origins the session visited:
+ * the ones recorded by the framework's navigations and closed tabs, the navigation history of the open tabs and the
+ * domains of the cookies. Every tab's origin is cleared by a script (local and session storage, IndexedDB, cache
+ * storage, service workers). With DevTools the cookies and the HTTP cache of the whole browser and every storage type
+ * of the visited origins are cleared, and each origin is verified to be empty. Without DevTools the other visited
+ * origins are opened one by one on a static path, cleared by the script and verified.<br>
+ * Every tab but the first one is closed and the first one is left on about:blank.
+ *
+ * @author Andras Fuge
+ */
+final class SessionReset {
+    private static final Logger LOG = LogManager.getLogger(SessionReset.class);
+
+    private static final String BLANK_PAGE = "about:blank";
+    // a static path, so no page script of the origin runs and writes its storage again while it is cleared
+    private static final String STATIC_PATH = "/robots.txt";
+
+    private static final String CLEAR_STORAGE_SCRIPT = ""
+            + "var done = arguments[arguments.length - 1];"
+            + "var origin = location.origin;"
+            + "var settle = function (promise) { return promise.then(function () { return null; }, function () { return null; }); };"
+            + "var tasks = [];"
+            + "try { localStorage.clear(); } catch (e) {}"
+            + "try { sessionStorage.clear(); } catch (e) {}"
+            + "try {"
+            + "  if (window.indexedDB && indexedDB.databases) {"
+            + "    tasks.push(indexedDB.databases().then(function (databases) {"
+            + "      return Promise.all(databases.map(function (database) {"
+            + "        return new Promise(function (resolve) {"
+            + "          var request = indexedDB.deleteDatabase(database.name);"
+            + "          request.onsuccess = request.onerror = request.onblocked = resolve;"
+            + "        });"
+            + "      }));"
+            + "    }));"
+            + "  }"
+            + "  if (window.caches) {"
+            + "    tasks.push(caches.keys().then(function (keys) { return Promise.all(keys.map(function (key) { return caches.delete(key); })); }));"
+            + "  }"
+            + "  if (navigator.serviceWorker) {"
+            + "    tasks.push(navigator.serviceWorker.getRegistrations().then(function (registrations) {"
+            + "      return Promise.all(registrations.map(function (registration) { return registration.unregister(); }));"
+            + "    }));"
+            + "  }"
+            + "} catch (e) {}"
+            + "Promise.all(tasks.map(settle)).then(function () { done(origin); });";
+
+    private static final String IS_CLEAN_SCRIPT = ""
+            + "try { return localStorage.length === 0 && sessionStorage.length === 0 && document.cookie === ''; }"
+            + "catch (e) { return true; }";
+
+    private SessionReset() {
+    }
+
+    /**
+     * Resets the browser of the driver and verifies the result.
+     *
+     * @param driver         the driver to reset
+     * @param implicitWait   the implicit wait timeout to restore, in seconds
+     * @param visitedOrigins the origins recorded during the session, see recordOrigin
+     * @throws IllegalStateException when the browser is not clean after the reset
+     * @throws WebDriverException    when the browser does not respond
+     */
+    static void reset(WebDriver driver, long implicitWait, Set<String> visitedOrigins) throws IllegalStateException, WebDriverException {
+        long start = System.nanoTime();
+
+        dismissAlert(driver);
+
+        List<String> handles = new ArrayList<>(driver.getWindowHandles());
+        String kept = handles.get(0);
+        Set<String> origins = new LinkedHashSet<>(visitedOrigins);
+        Set<String> cleared = new LinkedHashSet<>();
+
+        for (String handle : handles) {
+            if (handles.size() > 1) {
+                driver.switchTo().window(handle);
+                dismissAlert(driver);
+            }
+
+            recordHistory(driver, origins);
+            cleared.add(toOrigin(clearStorage(driver)));
+
+            if (!handle.equals(kept)) {
+                driver.close();
+            }
+        }
+
+        if (handles.size() > 1) {
+            driver.switchTo().window(kept);
+        }
+        driver.switchTo().defaultContent();
+        cleared.remove(null);
+        origins.addAll(cleared);
+
+        if (driver instanceof HasCdp) {
+            driver.navigate().to(BLANK_PAGE);
+            clearBrowserData((HasCdp) driver, origins);
+        } else {
+            driver.manage().deleteAllCookies();
+            verifyStorage(driver);
+            clearByVisiting(driver, origins, cleared);
+            driver.navigate().to(BLANK_PAGE);
+        }
+
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWait));
+
+        if (driver.getWindowHandles().size() != 1) {
+            throw new IllegalStateException("Session could not be reset: extra tabs are still open");
+        }
+
+        LOG.debug("Session reset in {} ms, cleared origins: {}", (System.nanoTime() - start) / 1_000_000, origins);
+    }
+
+    /**
+     * Adds the origin of the url to the set, urls without a web origin (about:, data:, file:) are skipped.
+     *
+     * @param origins the set of the visited origins
+     * @param url     the visited url, may be null
+     */
+    static void recordOrigin(Set<String> origins, String url) {
+        String origin = toOrigin(url);
+
+        if (origin != null) {
+            origins.add(origin);
+        }
+    }
+
+    /**
+     * Returns the origin of an http or https url, e.g. https://example.com:8443.
+     *
+     * @param url the url
+     * @return the origin, or null when the url has no web origin
+     */
+    static String toOrigin(String url) {
+        if (url == null) {
+            return null;
+        }
+
+        try {
+            URI uri = new URI(url);
+            String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase();
+
+            if (!("http".equals(scheme) || "https".equals(scheme)) || uri.getHost() == null) {
+                return null;
+            }
+
+            return scheme + "://" + uri.getHost().toLowerCase() + (uri.getPort() == -1 ? "" : ":" + uri.getPort());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the origins of the active tab's navigation history, which covers the links followed and the redirects.
+     * Needs DevTools, does nothing without it.
+     *
+     * @param driver  the driver
+     * @param origins the set of the visited origins
+     */
+    @SuppressWarnings("unchecked")
+    static void recordHistory(WebDriver driver, Set<String> origins) {
+        if (!(driver instanceof HasCdp)) {
+            return;
+        }
+
+        try {
+            Object entries = ((HasCdp) driver).executeCdpCommand("Page.getNavigationHistory", Collections.emptyMap()).get("entries");
+
+            if (entries instanceof List) {
+                for (Object entry : (List<Object>) entries) {
+                    if (entry instanceof Map) {
+                        recordOrigin(origins, (String) ((Map<String, Object>) entry).get("url"));
+                    }
+                }
+            }
+        } catch (WebDriverException e) {
+            LOG.debug("Could not read the navigation history: {}", e.getMessage());
+        }
+    }
+
+    private static void dismissAlert(WebDriver driver) {
+        try {
+            driver.switchTo().alert().dismiss();
+        } catch (NoAlertPresentException e) {
+            // no alert is open
+        }
+    }
+
+    private static String clearStorage(WebDriver driver) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+
+        Object origin = ((JavascriptExecutor) driver).executeAsyncScript(CLEAR_STORAGE_SCRIPT);
+        return origin == null ? null : String.valueOf(origin);
+    }
+
+    /**
+     * Clears the cookies and the HTTP cache of the whole browser and every storage type of the visited origins,
+     * including the origins of the cookies, then verifies that no cookie and no stored data is left. The page is
+     * already blank, so it can not write anything back.
+     */
+    @SuppressWarnings("unchecked")
+    private static void clearBrowserData(HasCdp cdp, Set<String> origins) {
+        for (Object cookie : getAllCookies(cdp)) {
+            String domain = String.valueOf(((Map<String, Object>) cookie).get("domain")).replaceFirst("^\\.", "");
+            recordOrigin(origins, "https://" + domain);
+            recordOrigin(origins, "http://" + domain);
+        }
+
+        cdp.executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+        cdp.executeCdpCommand("Network.clearBrowserCache", Collections.emptyMap());
+
+        for (String origin : origins) {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("origin", origin);
+            parameters.put("storageTypes", "all");
+
+            try {
+                cdp.executeCdpCommand("Storage.clearDataForOrigin", parameters);
+            } catch (WebDriverException e) {
+                LOG.debug("Could not clear the storage of {}: {}", origin, e.getMessage());
+            }
+        }
+
+        if (!getAllCookies(cdp).isEmpty()) {
+            throw new IllegalStateException("Session could not be reset: cookies are still present");
+        }
+
+        List<String> dirty = new ArrayList<>();
+        for (String origin : origins) {
+            if (hasStoredData(cdp, origin)) {
+                dirty.add(origin);
+            }
+        }
+
+        if (!dirty.isEmpty()) {
+            throw new IllegalStateException(String.format("Session could not be reset: storage of %s is not empty", dirty));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> getAllCookies(HasCdp cdp) {
+        Object cookies = cdp.executeCdpCommand("Network.getAllCookies", Collections.emptyMap()).get("cookies");
+        return cookies instanceof List ? (List<Object>) cookies : Collections.emptyList();
+    }
+
+    /**
+     * Returns whether the origin still has local storage or quota managed data (IndexedDB, cache storage, service
+     * workers). A check the browser does not support counts as clean.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean hasStoredData(HasCdp cdp, String origin) {
+        try {
+            Object usage = cdp.executeCdpCommand("Storage.getUsageAndQuota", Collections.singletonMap("origin", origin)).get("usage");
+            if (usage instanceof Number && ((Number) usage).longValue() > 0) {
+                return true;
+            }
+        } catch (WebDriverException e) {
+            LOG.debug("Could not read the storage usage of {}: {}", origin, e.getMessage());
+        }
+
+        try {
+            Map<String, Object> storageId = new HashMap<>();
+            storageId.put("securityOrigin", origin);
+            storageId.put("isLocalStorage", true);
+
+            Object items = cdp.executeCdpCommand("DOMStorage.getDOMStorageItems", Collections.singletonMap("storageId", storageId)).get("entries");
+            return items instanceof List && !((List<Object>) items).isEmpty();
+        } catch (WebDriverException e) {
+            LOG.debug("Could not read the local storage of {}: {}", origin, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Clears the visited origins which had no open tab by opening a static path of each, used when DevTools is not
+     * available.
+     */
+    private static void clearByVisiting(WebDriver driver, Set<String> origins, Set<String> cleared) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return;
+        }
+
+        for (String origin : origins) {
+            if (cleared.contains(origin)) {
+                continue;
+            }
+
+            driver.navigate().to(origin + STATIC_PATH);
+            clearStorage(driver);
+            driver.manage().deleteAllCookies();
+            verifyStorage(driver);
+        }
+    }
+
+    /**
+     * Verifies the active page's cookies and storage, used when DevTools is not available.
+     */
+    private static void verifyStorage(WebDriver driver) {
+        if (!driver.manage().getCookies().isEmpty()) {
+            throw new IllegalStateException("Session could not be reset: cookies are still present");
+        }
+
+        if (driver instanceof JavascriptExecutor
+                && !Boolean.TRUE.equals(((JavascriptExecutor) driver).executeScript(IS_CLEAN_SCRIPT))) {
+            throw new IllegalStateException(String.format("Session could not be reset: storage of %s is not empty",
+                    toOrigin(driver.getCurrentUrl())));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package driver;
+
+import enums.CommandType;
+
+/**
+ * Per-thread account of where the time of a worker goes: remote WebDriver commands, waits and explicit sleeps.<br>
+ * Commands are reported by the MetricsListener, waits and sleeps by the sections measured with CommandMetrics and by
+ * the FluentWait of DriverManager.getDefaultWait. Only the outermost section counts, the commands issued inside a
+ * wait belong to the wait and are kept apart to tell the idle polling time. An element lookup which finds its element
+ * on the first poll is not a wait, its commands count as commands.<br>
+ * The difference of two snapshots gives the breakdown of a step or a scenario, see runner.TimeBreakdownPlugin.
+ *
+ * @author Andras Fuge
+ */
+public final class TimeBreakdown {
+    private static final ThreadLocal<TimeBreakdown> CURRENT = ThreadLocal.withInitial(TimeBreakdown::new);
+
+    private long commandNanos;
+    private long commands;
+    private long waitNanos;
+    private long waitCommandNanos;
+    private long waits;
+    private long sleepNanos;
+    private long sleeps;
+
+    private int depth;
+    private long sectionStart;
+    private long sectionCommandNanos;
+    private long sectionCommands;
+
+    private TimeBreakdown() {
+    }
+
+    /**
+     * Returns the account of the calling thread.
+     *
+     * @return the TimeBreakdown of the thread
+     */
+    public static TimeBreakdown current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Records a remote command.
+     *
+     * @param nanos the duration of the command
+     */
+    static void command(long nanos) {
+        TimeBreakdown breakdown = CURRENT.get();
+
+        if (breakdown.depth > 0) {
+            breakdown.sectionCommandNanos += nanos;
+            breakdown.sectionCommands++;
+        } else {
+            breakdown.commandNanos += nanos;
+            breakdown.commands++;
+        }
+    }
+
+    /**
+     * Opens a wait or sleep section, sections opened inside an open one are not counted on their own.
+     */
+    static void enter() {
+        TimeBreakdown breakdown = CURRENT.get();
+
+        if (breakdown.depth++ == 0) {
+            breakdown.sectionStart = System.nanoTime();
+            breakdown.sectionCommandNanos = 0;
+            breakdown.sectionCommands = 0;
+        }
+    }
+
+    /**
+     * Closes the section opened by enter.
+     *
+     * @param type   SLEEP for explicit sleeps, any other type is a wait
+     * @param waited false when the section did not actually wait, its commands are counted as commands then
+     */
+    static void exit(CommandType type, boolean waited) {
+        TimeBreakdown breakdown = CURRENT.get();
+
+        if (breakdown.depth == 0 || --breakdown.depth > 0) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - breakdown.sectionStart;
+
+        if (type == CommandType.SLEEP) {
+            breakdown.sleepNanos += elapsed;
+            breakdown.sleeps++;
+            breakdown.commandNanos += breakdown.sectionCommandNanos;
+            breakdown.commands += breakdown.sectionCommands;
+        } else if (waited) {
+            breakdown.waitNanos += elapsed;
+            breakdown.waitCommandNanos += Math.min(elapsed, breakdown.sectionCommandNanos);
+            breakdown.waits++;
+        } else {
+            breakdown.commandNanos += breakdown.sectionCommandNanos;
+            breakdown.commands += breakdown.sectionCommands;
+        }
+    }
+
+    /**
+     * Returns the totals recorded on this thread so far.
+     *
+     * @return the immutable totals
+     */
+    public Totals snapshot() {
+        return new Totals(commandNanos, commands, waitNanos, waitCommandNanos, waits, sleepNanos, sleeps);
+    }
+
+    /**
+     * Totals of a time breakdown, in nanoseconds.
+     */
+    public static final class Totals {
+        public static final Totals ZERO = new Totals(0, 0, 0, 0, 0, 0, 0);
+
+        private final long commandNanos;
+        private final long commands;
+        private final long waitNanos;
+        private final long waitCommandNanos;
+        private final long waits;
+        private final long sleepNanos;
+        private final long sleeps;
+
+        private Totals(long commandNanos, long commands, long waitNanos, long waitCommandNanos, long waits,
+                       long sleepNanos, long sleeps) {
+            this.commandNanos = commandNanos;
+            this.commands = commands;
+            this.waitNanos = waitNanos;
+            this.waitCommandNanos = waitCommandNanos;
+            this.waits = waits;
+            this.sleepNanos = sleepNanos;
+            this.sleeps = sleeps;
+        }
+
+        /**
+         * Returns the time recorded since an earlier snapshot of the same thread.
+         *
+         * @param earlier the earlier snapshot
+         * @return the difference
+         */
+        public Totals minus(Totals earlier) {
+            return new Totals(commandNanos - earlier.commandNanos, commands - earlier.commands,
+                    waitNanos - earlier.waitNanos, waitCommandNanos - earlier.waitCommandNanos, waits - earlier.waits,
+                    sleepNanos - earlier.sleepNanos, sleeps - earlier.sleeps);
+        }
+
+        public Totals plus(Totals other) {
+            return new Totals(commandNanos + other.commandNanos, commands + other.commands,
+                    waitNanos + other.waitNanos, waitCommandNanos + other.waitCommandNanos, waits + other.waits,
+                    sleepNanos + other.sleepNanos, sleeps + other.sleeps);
+        }
+
+        /**
+         * Returns the time of the remote commands issued outside waits.
+         *
+         * @return the command time in nanoseconds
+         */
+        public long getCommandNanos() {
+            return commandNanos;
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        /**
+         * Returns the time spent in waits, including the commands polling the condition.
+         *
+         * @return the wait time in nanoseconds
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * Returns the part of the wait time not spent in commands, the time between the polls.
+         *
+         * @return the idle wait time in nanoseconds
+         */
+        public long getWaitIdleNanos() {
+            return waitNanos - waitCommandNanos;
+        }
+
+        public long getWaits() {
+            return waits;
+        }
+
+        public long getSleepNanos() {
+            return sleepNanos;
+        }
+
+        public long getSleeps() {
+            return sleeps;
+        }
+
+        /**
+         * Returns the time which could be saved without changing the application: the explicit sleeps and the idle
+         * time between the polls of the waits.
+         *
+         * @return the recoverable time in nanoseconds
+         */
+        public long getRecoverableNanos() {
+            return sleepNanos + getWaitIdleNanos();
+        }
+
+        /**
+         * Returns the part of a duration not spent in commands, waits or sleeps: step code, framework overhead and
+         * commands sent while no MetricsListener was registered.
+         *
+         * @param durationNanos the duration the totals were recorded in
+         * @return the unaccounted time in nanoseconds, never negative
+         */
+        public long getUnaccountedNanos(long durationNanos) {
+            return Math.max(0, durationNanos - commandNanos - waitNanos - sleepNanos);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package driver;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static utils.JsonUtils.quote;
+
+/**
+ * Records nested timing spans (scenarios, steps, DriverMethods calls, WebDriver commands, waits and their polls) and
+ * writes them in the Chrome trace-event format, which chrome://tracing and ui.perfetto.dev show as a timeline with a
+ * track per worker thread.<br>
+ * Every thread appends to its own array backed buffer without locking, a span costs two nanoTime calls and a few
+ * array stores. Recording is off by default, see runner.TracePlugin. A thread stops recording at the event limit.
+ *
+ * @author Andras Fuge
+ */
+public final class TraceRecorder {
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Queue<Buffer> BUFFERS = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Buffer> CURRENT = ThreadLocal.withInitial(TraceRecorder::newBuffer);
+    private static final Span NO_SPAN = new Span(null, null, null, 0);
+
+    private static volatile boolean enabled = false;
+    private static volatile int maxEventsPerThread = 1_000_000;
+
+    private TraceRecorder() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean status) {
+        enabled = status;
+    }
+
+    public static int getMaxEventsPerThread() {
+        return maxEventsPerThread;
+    }
+
+    /**
+     * Sets the number of events a thread records at most, the events beyond it are dropped and counted.
+     *
+     * @param maxEvents the event limit of one thread
+     */
+    public static void setMaxEventsPerThread(int maxEvents) {
+        maxEventsPerThread = maxEvents;
+    }
+
+    private static Buffer newBuffer() {
+        Buffer buffer = new Buffer(Thread.currentThread());
+        BUFFERS.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Opens a span closed by Span.close, meant for try-with-resources.
+     *
+     * @param category the category of the span, e.g. step or DriverMethods
+     * @param name     the name of the span
+     * @return the open span, a shared no-op span when recording is off
+     */
+    public static Span span(String category, String name) {
+        return span(category, name, null);
+    }
+
+    /**
+     * Opens a span closed by Span.close, meant for try-with-resources.
+     *
+     * @param category the category of the span, e.g. step or DriverMethods
+     * @param name     the name of the span
+     * @param detail   shown in the details of the span, e.g. the locator, converted to text only when written
+     * @return the open span, a shared no-op span when recording is off
+     */
+    public static Span span(String category, String name, Object detail) {
+        return enabled ? new Span(category, name, detail, System.nanoTime()) : NO_SPAN;
+    }
+
+    /**
+     * Records a finished span.
+     *
+     * @param category      the category of the span
+     * @param name          the name of the span
+     * @param detail        the detail of the span, may be null
+     * @param startNanos    the System.nanoTime at the start of the span
+     * @param durationNanos the duration of the span
+     */
+    public static void record(String category, String name, Object detail, long startNanos, long durationNanos) {
+        if (enabled) {
+            CURRENT.get().add(category, name, detail, startNanos, durationNanos);
+        }
+    }
+
+    /**
+     * Drops the recorded events of every thread.
+     */
+    public static void clear() {
+        for (Buffer buffer : BUFFERS) {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes the events of every thread as a Chrome trace-event JSON document, each thread on its own track.<br>
+     * Should be called when the recording threads are idle, e.g. at the end of the run.
+     *
+     * @param file the target file
+     * @return the number of written events
+     * @throws IOException when the file cannot be written
+     */
+    public static int writeJson(Path file) throws IOException {
+        int written = 0;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [");
+            String separator = "\n";
+
+            for (Buffer buffer : BUFFERS) {
+                int count = buffer.count;
+                if (count == 0) {
+                    continue;
+                }
+
+                writer.write(separator);
+                writer.write(String.format(Locale.ROOT,
+                        "{\"ph\": \"M\", \"pid\": 1, \"tid\": %d, \"name\": \"thread_name\", \"args\": {\"name\": %s}}",
+                        buffer.threadId, quote(buffer.threadName)));
+                separator = ",\n";
+
+                for (int i = 0; i < count; i++) {
+                    writer.write(separator);
+                    writer.write(String.format(Locale.ROOT,
+                            "{\"ph\": \"X\", \"pid\": 1, \"tid\": %d, \"cat\": %s, \"name\": %s, \"ts\": %.3f, \"dur\": %.3f",
+                            buffer.threadId, quote(buffer.categories[i]), quote(buffer.names[i]),
+                            (buffer.starts[i] - ORIGIN_NANOS) / 1000d, buffer.durations[i] / 1000d));
+                    if (buffer.details[i] != null) {
+                        writer.write(", \"args\": {\"detail\": " + quote(String.valueOf(buffer.details[i])) + "}");
+                    }
+                    writer.write("}");
+                    written++;
+                }
+
+                if (buffer.dropped > 0) {
+                    writer.write(String.format(Locale.ROOT,
+                            ",\n{\"ph\": \"i\", \"s\": \"t\", \"pid\": 1, \"tid\": %d, \"name\": \"%d events dropped\", \"ts\": %.3f}",
+                            buffer.threadId, buffer.dropped, (buffer.starts[count - 1] - ORIGIN_NANOS) / 1000d));
+                }
+            }
+
+            writer.write("\n]}\n");
+        }
+
+        return written;
+    }
+
+    /**
+     * An open span, recorded when closed.
+     */
+    public static final class Span implements AutoCloseable {
+        private final String category;
+        private final String name;
+        private final Object detail;
+        private final long start;
+
+        private Span(String category, String name, Object detail, long start) {
+            this.category = category;
+            this.name = name;
+            this.detail = detail;
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            if (start != 0) {
+                record(category, name, detail, start, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Events of one thread in parallel arrays, written only by its thread.
+     */
+    private static final class Buffer {
+        private final long threadId;
+        private final String threadName;
+        private String[] categories = new String[INITIAL_CAPACITY];
+        private String[] names = new String[INITIAL_CAPACITY];
+        private Object[] details = new Object[INITIAL_CAPACITY];
+        private long[] starts = new long[INITIAL_CAPACITY];
+        private long[] durations = new long[INITIAL_CAPACITY];
+        private volatile int count;
+        private long dropped;
+
+        private Buffer(Thread thread) {
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+        }
+
+        private void add(String category, String name, Object detail, long start, long duration) {
+            int index = count;
+
+            if (index >= maxEventsPerThread) {
+                dropped++;
+                return;
+            }
+
+            if (index == starts.length) {
+                int capacity = (int) Math.min((long) index * 2, maxEventsPerThread);
+                categories = Arrays.copyOf(categories, capacity);
+                names = Arrays.copyOf(names, capacity);
+                details = Arrays.copyOf(details, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+            }
+
+            categories[index] = category;
+            names[index] = name;
+            details[index] = detail;
+            starts[index] = start;
+            durations[index] = duration;
+            count = index + 1;
+        }
+
+        private void clear() {
+            Arrays.fill(details, 0, count, null);
+            count = 0;
+            dropped = 0;
+        }
+    }
+}
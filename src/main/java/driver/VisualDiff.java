@@ -0,0 +1,652 @@
+package driver;
+
+import enums.DiffStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+/**
+ * Visual regression engine comparing images against the PNG baselines of a directory.<br>
+ * The images are cut into tiles which are compared in parallel on all cores. The tile hashes of a baseline are kept
+ * next to the diff output, so when every tile hash of the image matches, the baseline is not even decoded. Only the
+ * tiles whose hash differs are compared pixel by pixel, with a perceptual (YIQ) color distance tolerance and with the
+ * ignored regions masked out. The actual and the diff image are written only on mismatch, a missing baseline is
+ * created from the image.
+ *
+ * @author Andras Fuge
+ */
+public final class VisualDiff {
+    private static final Logger LOG = LogManager.getLogger(VisualDiff.class);
+
+    /**
+     * System property overriding the directory of the baseline images.
+     */
+    public static final String BASELINE_DIRECTORY_PROPERTY = "visual.baseline.dir";
+    /**
+     * System property overriding the directory of the actual and diff images.
+     */
+    public static final String OUTPUT_DIRECTORY_PROPERTY = "visual.output.dir";
+
+    private static final String DEFAULT_BASELINE_DIRECTORY = "src/test/resources/visual-baselines";
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "target/visual-diffs";
+    private static final String HASH_DIRECTORY = "tile-hashes";
+    private static final int HASH_FILE_MAGIC = 0x53424854;
+    private static final float PNG_COMPRESSION_QUALITY = 0.75f;
+
+    // the largest YIQ distance of two colors, between black and white
+    private static final double MAX_YIQ_DELTA = 35215;
+    private static final int DIFF_COLOR = 0xFF0000;
+    private static final int EXTRA_AREA_COLOR = 0xFF00FF;
+
+    private final Path baselineDirectory;
+    private final Path outputDirectory;
+
+    private volatile int tileSize = 256;
+    private volatile double tolerance = 0.1;
+    private volatile double maxDiffRatio = 0;
+    private volatile boolean updateBaselines = false;
+
+    /**
+     * Creates an engine on the directories set by the visual.baseline.dir and visual.output.dir system properties,
+     * src/test/resources/visual-baselines and target/visual-diffs by default.
+     */
+    public VisualDiff() {
+        this(Paths.get(System.getProperty(BASELINE_DIRECTORY_PROPERTY, DEFAULT_BASELINE_DIRECTORY)),
+                Paths.get(System.getProperty(OUTPUT_DIRECTORY_PROPERTY, DEFAULT_OUTPUT_DIRECTORY)));
+    }
+
+    /**
+     * Creates an engine on the specified directories.
+     *
+     * @param baselineDirectory the directory of the baseline images
+     * @param outputDirectory   the directory the actual and diff images of the mismatches are written to
+     */
+    public VisualDiff(Path baselineDirectory, Path outputDirectory) {
+        this.baselineDirectory = baselineDirectory;
+        this.outputDirectory = outputDirectory;
+    }
+
+    public Path getBaselineDirectory() {
+        return baselineDirectory;
+    }
+
+    public Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Sets the edge length of the compared tiles, changing it invalidates the stored tile hashes.
+     *
+     * @param tileSize the tile size in pixels, 256 by default
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 16) {
+            throw new IllegalArgumentException("Tile size must be at least 16 pixels");
+        }
+
+        this.tileSize = tileSize;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Sets the perceptual color distance below which two pixels count as equal.
+     *
+     * @param tolerance the tolerance between 0 (exact match) and 1, 0.1 by default
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public double getMaxDiffRatio() {
+        return maxDiffRatio;
+    }
+
+    /**
+     * Sets the ratio of differing pixels an image may have and still match the baseline.
+     *
+     * @param maxDiffRatio the ratio between 0 and 1, 0 by default
+     */
+    public void setMaxDiffRatio(double maxDiffRatio) {
+        this.maxDiffRatio = maxDiffRatio;
+    }
+
+    public boolean isUpdateBaselines() {
+        return updateBaselines;
+    }
+
+    /**
+     * Sets whether a mismatching image replaces its baseline, e.g. after an intended design change.
+     *
+     * @param updateBaselines true to overwrite the baselines of the mismatches
+     */
+    public void setUpdateBaselines(boolean updateBaselines) {
+        this.updateBaselines = updateBaselines;
+    }
+
+    /**
+     * Compares a PNG image with its baseline.
+     *
+     * @param name           the name of the baseline, used as its file name
+     * @param png            the image as PNG bytes
+     * @param ignoredRegions the regions of the image excluded from the comparison
+     * @return the result of the comparison
+     * @throws UncheckedIOException when an image can not be read or written
+     */
+    public Result compare(String name, byte[] png, Rectangle... ignoredRegions) throws UncheckedIOException {
+        return compare(name, read(png), Arrays.asList(ignoredRegions));
+    }
+
+    /**
+     * Compares an image with its baseline.
+     *
+     * @param name           the name of the baseline, used as its file name
+     * @param actual         the image
+     * @param ignoredRegions the regions of the image excluded from the comparison
+     * @return the result of the comparison
+     * @throws UncheckedIOException when an image can not be read or written
+     */
+    public Result compare(String name, BufferedImage actual, List<Rectangle> ignoredRegions) throws UncheckedIOException {
+        long start = System.nanoTime();
+        String fileName = toFileName(name);
+        Path baselineFile = baselineDirectory.resolve(fileName + ".png");
+
+        if (!Files.isRegularFile(baselineFile)) {
+            write(actual, baselineFile);
+            LOG.info("No baseline found for {}, the image is stored as the new baseline", name);
+
+            return new Result(name, DiffStatus.NEW_BASELINE, 0, 0, 0, 0, baselineFile, null, start);
+        }
+
+        int size = tileSize;
+        ImagePixels actualPixels = new ImagePixels(actual);
+        Grid grid = new Grid(actualPixels.getWidth(), actualPixels.getHeight(), size);
+        Path hashFile = outputDirectory.resolve(HASH_DIRECTORY).resolve(fileName + ".tiles");
+
+        ImagePixels baselinePixels = null;
+        long[] baselineHashes = readHashes(hashFile, baselineFile, grid);
+
+        if (baselineHashes == null) {
+            baselinePixels = new ImagePixels(read(baselineFile));
+            Grid baselineGrid = new Grid(baselinePixels.getWidth(), baselinePixels.getHeight(), size);
+            baselineHashes = hashTiles(baselinePixels, baselineGrid);
+            writeHashes(hashFile, baselineFile, baselineGrid, baselineHashes);
+
+            if (!grid.sameSize(baselineGrid)) {
+                baselineHashes = null;
+            }
+        }
+
+        List<Rectangle> ignored = ignoredRegions == null ? Collections.emptyList() : ignoredRegions;
+        int[] candidates;
+        int identical = 0;
+
+        if (baselineHashes != null) {
+            long[] actualHashes = hashTiles(actualPixels, grid);
+            List<Integer> differing = new ArrayList<>();
+
+            for (int tile = 0; tile < grid.count; tile++) {
+                if (actualHashes[tile] == baselineHashes[tile]) {
+                    identical++;
+                } else if (!isCovered(grid.tile(tile), ignored)) {
+                    differing.add(tile);
+                }
+            }
+
+            candidates = differing.stream().mapToInt(Integer::intValue).toArray();
+
+            if (candidates.length == 0) {
+                return new Result(name, DiffStatus.MATCH, 0, (long) grid.width * grid.height, grid.count, identical,
+                        baselineFile, null, start);
+            }
+        } else {
+            candidates = null;
+        }
+
+        if (baselinePixels == null) {
+            baselinePixels = new ImagePixels(read(baselineFile));
+        }
+
+        ImagePixels baseline = baselinePixels;
+        Grid common = new Grid(Math.min(actualPixels.getWidth(), baseline.getWidth()),
+                Math.min(actualPixels.getHeight(), baseline.getHeight()), size);
+        int[] compared = candidates != null ? candidates : IntStream.range(0, common.count).toArray();
+        double threshold = MAX_YIQ_DELTA * tolerance * tolerance;
+
+        long differentPixels = IntStream.of(compared).parallel()
+                .mapToLong(tile -> compareTile(actualPixels, baseline, common.tile(tile), ignored, threshold, null, 0))
+                .sum();
+
+        int totalWidth = Math.max(actualPixels.getWidth(), baseline.getWidth());
+        int totalHeight = Math.max(actualPixels.getHeight(), baseline.getHeight());
+        long totalPixels = (long) totalWidth * totalHeight;
+        differentPixels += totalPixels - (long) common.width * common.height;
+
+        if (differentPixels == 0 || differentPixels <= maxDiffRatio * totalPixels) {
+            return new Result(name, DiffStatus.MATCH, differentPixels, totalPixels, common.count, identical, baselineFile, null, start);
+        }
+
+        Path diffFile = outputDirectory.resolve(fileName + ".diff.png");
+        // PNG encoding is single threaded, the two images are encoded side by side
+        CompletableFuture<Void> actualWritten = CompletableFuture.runAsync(
+                () -> write(actual, outputDirectory.resolve(fileName + ".actual.png")));
+        write(renderDiff(actualPixels, baseline, common, totalWidth, totalHeight, compared, ignored, threshold), diffFile);
+        join(actualWritten);
+
+        if (updateBaselines) {
+            write(actual, baselineFile);
+            LOG.info("Baseline of {} is updated", name);
+        }
+
+        Result result = new Result(name, DiffStatus.MISMATCH, differentPixels, totalPixels, common.count, identical, baselineFile, diffFile, start);
+        LOG.warn(String.format("Visual mismatch of %s: %d pixels (%.4f%%) differ, see %s",
+                name, differentPixels, result.getDiffRatio() * 100, diffFile));
+
+        return result;
+    }
+
+    private static long[] hashTiles(ImagePixels pixels, Grid grid) {
+        long[] hashes = new long[grid.count];
+
+        IntStream.range(0, grid.count).parallel().forEach(tile -> {
+            Rectangle area = grid.tile(tile);
+            hashes[tile] = pixels.hashTile(area.x, area.y, area.width, area.height, new int[area.width]);
+        });
+
+        return hashes;
+    }
+
+    /**
+     * Compares a tile pixel by pixel and optionally paints the differing pixels into the diff image.
+     *
+     * @return the number of differing pixels, the ignored ones excluded
+     */
+    private static long compareTile(ImagePixels actual, ImagePixels baseline, Rectangle tile, List<Rectangle> ignored,
+                                    double threshold, int[] diff, int diffWidth) {
+        List<Rectangle> masks = new ArrayList<>();
+        for (Rectangle region : ignored) {
+            if (region.intersects(tile)) {
+                masks.add(region);
+            }
+        }
+
+        int[] actualRow = new int[tile.width];
+        int[] baselineRow = new int[tile.width];
+        long different = 0;
+
+        for (int y = tile.y; y < tile.y + tile.height; y++) {
+            actual.readRow(tile.x, y, tile.width, actualRow);
+            baseline.readRow(tile.x, y, tile.width, baselineRow);
+
+            for (int i = 0; i < tile.width; i++) {
+                if (actualRow[i] == baselineRow[i] || yiqDelta(actualRow[i], baselineRow[i]) <= threshold) {
+                    continue;
+                }
+
+                if (!masks.isEmpty() && isMasked(tile.x + i, y, masks)) {
+                    continue;
+                }
+
+                different++;
+
+                if (diff != null) {
+                    diff[y * diffWidth + tile.x + i] = DIFF_COLOR;
+                }
+            }
+        }
+
+        return different;
+    }
+
+    /**
+     * Returns the perceptual distance of two colors in the YIQ color space, 0 for equal colors, 35215 at most.
+     */
+    private static double yiqDelta(int first, int second) {
+        int r1 = first >> 16 & 0xFF, g1 = first >> 8 & 0xFF, b1 = first & 0xFF;
+        int r2 = second >> 16 & 0xFF, g2 = second >> 8 & 0xFF, b2 = second & 0xFF;
+
+        double y = (r1 - r2) * 0.29889531 + (g1 - g2) * 0.58662247 + (b1 - b2) * 0.11448223;
+        double i = (r1 - r2) * 0.59597799 - (g1 - g2) * 0.27417610 - (b1 - b2) * 0.32180189;
+        double q = (r1 - r2) * 0.21147017 - (g1 - g2) * 0.52261711 + (b1 - b2) * 0.31114694;
+
+        return 0.5053 * y * y + 0.299 * i * i + 0.1957 * q * q;
+    }
+
+    private static boolean isMasked(int x, int y, List<Rectangle> masks) {
+        for (Rectangle mask : masks) {
+            if (mask.contains(x, y)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isCovered(Rectangle tile, List<Rectangle> ignored) {
+        for (Rectangle region : ignored) {
+            if (region.contains(tile)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Renders the diff image: the actual image faded out, the differing pixels in red and the area present in only
+     * one of the images in magenta.
+     */
+    private static BufferedImage renderDiff(ImagePixels actual, ImagePixels baseline, Grid common, int width, int height,
+                                            int[] compared, List<Rectangle> ignored, double threshold) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] diff = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        Arrays.fill(diff, EXTRA_AREA_COLOR);
+
+        IntStream.range(0, common.count).parallel().forEach(tile -> {
+            Rectangle area = common.tile(tile);
+            int[] row = new int[area.width];
+
+            for (int y = area.y; y < area.y + area.height; y++) {
+                actual.readRow(area.x, y, area.width, row);
+
+                for (int i = 0; i < area.width; i++) {
+                    diff[y * width + area.x + i] = fade(row[i]);
+                }
+            }
+        });
+
+        IntStream.of(compared).parallel()
+                .forEach(tile -> compareTile(actual, baseline, common.tile(tile), ignored, threshold, diff, width));
+
+        return image;
+    }
+
+    private static int fade(int pixel) {
+        int gray = ((pixel >> 16 & 0xFF) * 77 + (pixel >> 8 & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+        int faded = 255 - (255 - gray) / 10;
+
+        return faded << 16 | faded << 8 | faded;
+    }
+
+    /**
+     * Reads the stored tile hashes of a baseline.
+     *
+     * @return the hashes, null when they are missing or do not belong to the current baseline file and grid
+     */
+    private static long[] readHashes(Path hashFile, Path baselineFile, Grid grid) {
+        if (!Files.isRegularFile(hashFile)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(hashFile)))) {
+            if (input.readInt() != HASH_FILE_MAGIC
+                    || input.readLong() != Files.size(baselineFile)
+                    || input.readLong() != Files.getLastModifiedTime(baselineFile).toMillis()
+                    || input.readInt() != grid.tileSize
+                    || input.readInt() != grid.width
+                    || input.readInt() != grid.height) {
+                return null;
+            }
+
+            long[] hashes = new long[input.readInt()];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = input.readLong();
+            }
+
+            return hashes;
+        } catch (IOException e) {
+            LOG.debug("Could not read the tile hashes {}: {}", hashFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeHashes(Path hashFile, Path baselineFile, Grid grid, long[] hashes) {
+        try {
+            Files.createDirectories(hashFile.getParent());
+            Path temporary = Files.createTempFile(hashFile.getParent(), hashFile.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(HASH_FILE_MAGIC);
+                output.writeLong(Files.size(baselineFile));
+                output.writeLong(Files.getLastModifiedTime(baselineFile).toMillis());
+                output.writeInt(grid.tileSize);
+                output.writeInt(grid.width);
+                output.writeInt(grid.height);
+                output.writeInt(hashes.length);
+                for (long hash : hashes) {
+                    output.writeLong(hash);
+                }
+            }
+
+            Files.move(temporary, hashFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.debug("Could not write the tile hashes {}: {}", hashFile, e.getMessage());
+        }
+    }
+
+    private static BufferedImage read(byte[] png) {
+        try {
+            return checkDecoded(ImageIO.read(new ByteArrayInputStream(png)), "PNG bytes");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedImage read(Path file) {
+        try (InputStream input = Files.newInputStream(file)) {
+            return checkDecoded(ImageIO.read(input), file.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedImage checkDecoded(BufferedImage image, String source) throws IOException {
+        if (image == null) {
+            throw new IOException(String.format("Not a readable image: %s", source));
+        }
+
+        return image;
+    }
+
+    private static void write(BufferedImage image, Path file) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext()) {
+            throw new UncheckedIOException(new IOException("No PNG image writer found"));
+        }
+
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // a low deflate level, the full page images are large and the level hardly changes their size
+            param.setCompressionQuality(PNG_COMPRESSION_QUALITY);
+        }
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file));
+                 ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static String toFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * The tiles of an image area, row by row, the last column and row of tiles may be smaller.
+     */
+    private static final class Grid {
+        private final int width;
+        private final int height;
+        private final int tileSize;
+        private final int columns;
+        private final int count;
+
+        private Grid(int width, int height, int tileSize) {
+            this.width = width;
+            this.height = height;
+            this.tileSize = tileSize;
+            this.columns = (width + tileSize - 1) / tileSize;
+            this.count = columns * ((height + tileSize - 1) / tileSize);
+        }
+
+        private Rectangle tile(int index) {
+            int x = index % columns * tileSize;
+            int y = index / columns * tileSize;
+
+            return new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+        }
+
+        private boolean sameSize(Grid other) {
+            return width == other.width && height == other.height && tileSize == other.tileSize;
+        }
+    }
+
+    /**
+     * The outcome of one comparison.
+     */
+    public static final class Result {
+        private final String name;
+        private final DiffStatus status;
+        private final long differentPixels;
+        private final long totalPixels;
+        private final int tiles;
+        private final int identicalTiles;
+        private final Path baselineFile;
+        private final Path diffFile;
+        private final long durationNanos;
+
+        private Result(String name, DiffStatus status, long differentPixels, long totalPixels, int tiles,
+                       int identicalTiles, Path baselineFile, Path diffFile, long startNanos) {
+            this.name = name;
+            this.status = status;
+            this.differentPixels = differentPixels;
+            this.totalPixels = totalPixels;
+            this.tiles = tiles;
+            this.identicalTiles = identicalTiles;
+            this.baselineFile = baselineFile;
+            this.diffFile = diffFile;
+            this.durationNanos = System.nanoTime() - startNanos;
+
+            LOG.debug("Visual comparison of {}: {} in {} ms, {} of {} tiles identical by hash",
+                    name, status, durationNanos / 1_000_000, identicalTiles, tiles);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DiffStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns whether the image matches its baseline, a newly created baseline counts as a match.
+         *
+         * @return false on mismatch
+         */
+        public boolean isMatch() {
+            return status != DiffStatus.MISMATCH;
+        }
+
+        public long getDifferentPixels() {
+            return differentPixels;
+        }
+
+        /**
+         * Returns the ratio of the differing pixels, the area present in only one of the images counts as differing.
+         *
+         * @return the ratio between 0 and 1
+         */
+        public double getDiffRatio() {
+            return totalPixels == 0 ? 0 : (double) differentPixels / totalPixels;
+        }
+
+        public int getTiles() {
+            return tiles;
+        }
+
+        /**
+         * Returns the number of tiles skipped without pixel comparison, as their hash matched the baseline's.
+         *
+         * @return the number of identical tiles
+         */
+        public int getIdenticalTiles() {
+            return identicalTiles;
+        }
+
+        public Path getBaselineFile() {
+            return baselineFile;
+        }
+
+        /**
+         * Returns the diff image written on mismatch.
+         *
+         * @return the path of the diff image, null when the image matched
+         */
+        public Path getDiffFile() {
+            return diffFile;
+        }
+
+        public long getDurationMillis() {
+            return durationNanos / 1_000_000;
+        }
+    }
+}
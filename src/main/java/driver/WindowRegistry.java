@@ -0,0 +1,153 @@
+package driver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the open windows of one session and their last known titles.<br>
+ * A title is known until something may have changed it (navigation, interaction, script) and unknown afterwards,
+ * so tab lookup by title only has to probe the windows with an unknown title.<br>
+ * The index is maintained by DriverMethods and by the WindowTrackingListener, which initDriver registers. When the
+ * listener is unregistered a window's title is forgotten whenever the session switches away from it.
+ *
+ * @author Andras Fuge
+ */
+public class WindowRegistry {
+    private final Map<String, String> titles = new LinkedHashMap<>();
+    private String current;
+    private boolean tracked = false;
+
+    WindowRegistry() {
+    }
+
+    /**
+     * Returns the handle of the active window, if known.
+     *
+     * @return the window handle, or null when unknown
+     */
+    public String getCurrent() {
+        return current;
+    }
+
+    void setCurrent(String handle) {
+        if (handle != null && !handle.equals(current) && !tracked) {
+            invalidate(current);
+        }
+
+        if (handle != null && !titles.containsKey(handle)) {
+            titles.put(handle, null);
+        }
+
+        current = handle;
+    }
+
+    void setTracked(boolean tracked) {
+        this.tracked = tracked;
+    }
+
+    void opened(String handle) {
+        titles.put(handle, null);
+    }
+
+    void closed(String handle) {
+        titles.remove(handle);
+
+        if (handle != null && handle.equals(current)) {
+            current = null;
+        }
+    }
+
+    /**
+     * Replaces the known handles with the handles reported by the browser.
+     *
+     * @param handles the handles currently open
+     */
+    void sync(Set<String> handles) {
+        titles.keySet().retainAll(handles);
+
+        for (String handle : handles) {
+            if (!titles.containsKey(handle)) {
+                titles.put(handle, null);
+            }
+        }
+
+        if (current != null && !titles.containsKey(current)) {
+            current = null;
+        }
+    }
+
+    void titleProbed(String handle, String title) {
+        if (handle != null) {
+            titles.put(handle, title);
+        }
+    }
+
+    /**
+     * Forgets the title of a window, it has to be probed again on the next lookup.
+     *
+     * @param handle the handle of the window
+     */
+    void invalidate(String handle) {
+        if (handle != null && titles.containsKey(handle)) {
+            titles.put(handle, null);
+        }
+    }
+
+    void invalidateCurrent() {
+        invalidate(current);
+    }
+
+    boolean isKnown(String handle) {
+        return titles.containsKey(handle);
+    }
+
+    /**
+     * Returns the first window whose known title contains the specified text.
+     *
+     * @param windowTitle part of the window title
+     * @return the matching window handle, or null when no known title matches
+     */
+    String findByKnownTitle(String windowTitle) {
+        for (Map.Entry<String, String> entry : titles.entrySet()) {
+            if (entry.getValue() != null && entry.getValue().contains(windowTitle)) {
+                return entry.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the windows whose title has to be probed, the active window first.
+     *
+     * @return the list of window handles
+     */
+    List<String> getUnknownTitles() {
+        List<String> unknown = new ArrayList<>();
+
+        if (current != null && titles.get(current) == null) {
+            unknown.add(current);
+        }
+
+        for (Map.Entry<String, String> entry : titles.entrySet()) {
+            if (entry.getValue() == null && !entry.getKey().equals(current)) {
+                unknown.add(entry.getKey());
+            }
+        }
+
+        return unknown;
+    }
+
+    public int size() {
+        return titles.size();
+    }
+
+    void clear() {
+        titles.clear();
+        current = null;
+        tracked = false;
+    }
+}
@@ -0,0 +1,103 @@
+package driver;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.Method;
+
+/**
+ * Listener keeping the WindowRegistry of the calling thread's session up to date.<br>
+ * Titles read by any call are recorded, navigation and interaction make the active window's title unknown.<br>
+ * DriverManager registers the listener on every driver it initializes.
+ *
+ * @author Andras Fuge
+ */
+public class WindowTrackingListener implements WebDriverListener {
+    private static final WindowTrackingListener INSTANCE = new WindowTrackingListener();
+
+    private WindowTrackingListener() {
+    }
+
+    public static WindowTrackingListener getInstance() {
+        return INSTANCE;
+    }
+
+    private static WindowRegistry registry() {
+        return DriverManager.getWindowRegistry();
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        if (target instanceof WebDriver.TargetLocator && "window".equals(method.getName())) {
+            registry().setCurrent((String) args[0]);
+        } else if (target instanceof WebDriver.TargetLocator && "newWindow".equals(method.getName())) {
+            registry().setCurrent(null);
+        }
+    }
+
+    @Override
+    public void afterGetTitle(WebDriver driver, String result) {
+        registry().titleProbed(registry().getCurrent(), result);
+    }
+
+    @Override
+    public void afterGetWindowHandle(WebDriver driver, String result) {
+        registry().setCurrent(result);
+    }
+
+    @Override
+    public void beforeClose(WebDriver driver) {
+        registry().closed(registry().getCurrent());
+    }
+
+    @Override
+    public void afterGet(WebDriver driver, String url) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterTo(WebDriver.Navigation navigation, String url) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterBack(WebDriver.Navigation navigation) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterForward(WebDriver.Navigation navigation) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterRefresh(WebDriver.Navigation navigation) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterClick(WebElement element) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterSubmit(WebElement element) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterSendKeys(WebElement element, CharSequence... keysToSend) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterExecuteScript(WebDriver driver, String script, Object[] args, Object result) {
+        registry().invalidateCurrent();
+    }
+
+    @Override
+    public void afterExecuteAsyncScript(WebDriver driver, String script, Object[] args, Object result) {
+        registry().invalidateCurrent();
+    }
+}
@@ -0,0 +1,60 @@
+package enums;
+
+import org.openqa.selenium.PageLoadStrategy;
+
+/**
+ * Enum class listing the browser launch profiles.<br>
+ * DEFAULT launches a full, maximized browser. The other profiles trade fidelity for faster page loads and
+ * less memory per session, which suits CI runs.
+ *
+ * @author Andras Fuge
+ */
+public enum BrowserProfile {
+    DEFAULT(false, false, false, false, PageLoadStrategy.NORMAL),
+    HEADLESS(true, false, false, false, PageLoadStrategy.NORMAL),
+    LEAN(false, true, true, true, PageLoadStrategy.EAGER),
+    HEADLESS_LEAN(true, true, true, true, PageLoadStrategy.EAGER);
+
+    private final boolean headless;
+    private final boolean imagesDisabled;
+    private final boolean animationsDisabled;
+    private final boolean urlBlocking;
+    private final PageLoadStrategy pageLoadStrategy;
+
+    BrowserProfile(boolean headless, boolean imagesDisabled, boolean animationsDisabled, boolean urlBlocking, PageLoadStrategy pageLoadStrategy) {
+        this.headless = headless;
+        this.imagesDisabled = imagesDisabled;
+        this.animationsDisabled = animationsDisabled;
+        this.urlBlocking = urlBlocking;
+        this.pageLoadStrategy = pageLoadStrategy;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    public boolean isImagesDisabled() {
+        return imagesDisabled;
+    }
+
+    public boolean isAnimationsDisabled() {
+        return animationsDisabled;
+    }
+
+    public boolean isUrlBlocking() {
+        return urlBlocking;
+    }
+
+    public PageLoadStrategy getPageLoadStrategy() {
+        return pageLoadStrategy;
+    }
+
+    /**
+     * Returns whether the browser gets a fixed window size instead of being maximized.
+     *
+     * @return true for every profile except DEFAULT
+     */
+    public boolean isFixedWindowSize() {
+        return this != DEFAULT;
+    }
+}
@@ -0,0 +1,18 @@
+package enums;
+
+/**
+ * Enum class listing the command categories measured by the command metrics.
+ *
+ * @author Andras Fuge
+ */
+public enum CommandType {
+    FIND,
+    CLICK,
+    SEND_KEYS,
+    EXECUTE_SCRIPT,
+    NAVIGATE,
+    SCREENSHOT,
+    OTHER,
+    WAIT,
+    SLEEP
+}
@@ -0,0 +1,21 @@
+package enums;
+
+/**
+ * Enum class listing the outcomes of a visual comparison against a baseline.
+ *
+ * @author Andras Fuge
+ */
+public enum DiffStatus {
+    /**
+     * The image matches the baseline within the tolerance.
+     */
+    MATCH,
+    /**
+     * The image differs from the baseline, the diff image is written.
+     */
+    MISMATCH,
+    /**
+     * There was no baseline, the image is stored as the new baseline.
+     */
+    NEW_BASELINE
+}
@@ -0,0 +1,11 @@
+package enums;
+
+/**
+ * Enum class listing the strategies for choosing the grid hub of a new remote session.
+ *
+ * @author Andras Fuge
+ */
+public enum HubSelection {
+    ROUND_ROBIN,
+    LEAST_OUTSTANDING
+}
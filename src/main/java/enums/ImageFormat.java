@@ -0,0 +1,28 @@
+package enums;
+
+/**
+ * Enum class listing supported screenshot output formats.
+ *
+ * @author Andras Fuge
+ */
+public enum ImageFormat {
+    PNG("png", "image/png"),
+    PNG_COMPRESSED("png", "image/png"),
+    JPEG("jpg", "image/jpeg");
+
+    private final String formatName;
+    private final String mediaType;
+
+    ImageFormat(String formatName, String mediaType) {
+        this.formatName = formatName;
+        this.mediaType = mediaType;
+    }
+
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,16 @@
+package enums;
+
+/**
+ * Enum class listing the conditions on which a navigation is considered complete.<br>
+ * LOAD waits for the browser's load event (or what the session's page load strategy waits for),
+ * DOM_CONTENT_LOADED returns as soon as the document is parsed. The time is saved by the EAGER page load strategy, which
+ * the browser is launched with when this is the navigation mode of DriverMethods, under NORMAL it behaves like LOAD.
+ * NETWORK_IDLE additionally waits until no fetch/XHR request has been in flight for a quiet period.
+ *
+ * @author Andras Fuge
+ */
+public enum NavigationMode {
+    LOAD,
+    DOM_CONTENT_LOADED,
+    NETWORK_IDLE
+}
@@ -0,0 +1,14 @@
+package enums;
+
+/**
+ * Enum class listing the element conditions supported by the observer based waits.
+ *
+ * @author Andras Fuge
+ */
+public enum WaitCondition {
+    VISIBLE,
+    INVISIBLE,
+    ATTRIBUTE_CONTAINS,
+    ATTRIBUTE_NOT_CONTAINS,
+    CLICKABLE
+}
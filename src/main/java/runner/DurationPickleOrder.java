@@ -0,0 +1,37 @@
+package runner;
+
+import io.cucumber.core.gherkin.Pickle;
+import io.cucumber.core.order.PickleOrder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders the scenarios longest first by their duration in the previous runs.<br>
+ * The parallel runtime hands scenarios to the worker threads in this order, so the slow scenarios start first and
+ * the short ones fill the gaps at the end (longest processing time first scheduling). Scenarios without history
+ * are assumed to be as long as the longest known one.
+ *
+ * @author Andras Fuge
+ */
+public class DurationPickleOrder implements PickleOrder {
+    private final ScenarioDurations durations;
+
+    public DurationPickleOrder(ScenarioDurations durations) {
+        this.durations = durations;
+    }
+
+    @Override
+    public List<Pickle> orderPickles(List<Pickle> pickles) {
+        long unknown = durations.getLongest();
+        List<Pickle> ordered = new ArrayList<>(pickles);
+
+        ordered.sort(Comparator.comparingLong((Pickle pickle) -> {
+            Long millis = durations.get(pickle.getUri(), pickle.getName());
+            return millis == null ? unknown : millis;
+        }).reversed());
+
+        return ordered;
+    }
+}
@@ -0,0 +1,101 @@
+package runner;
+
+import driver.DriverManager;
+import driver.FlightRecorder;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Cucumber plugin driving the flight recorder of every worker thread: the WebDriver commands are logged from the start
+ * of each step and a frame is captured when a step finishes. When a scenario fails, the frames are written into a
+ * directory of the scenario under the output directory, otherwise they are dropped.<br>
+ * Frames flushed to the scenario in an After hook with DriverManager.getFlightRecorder().flush(scenario) are not
+ * written again.<br>
+ * Usage: --plugin runner.FlightRecorderPlugin[:path/to/output/directory].
+ *
+ * @author Andras Fuge
+ */
+public class FlightRecorderPlugin implements ConcurrentEventListener {
+    private static final Logger LOG = LogManager.getLogger(FlightRecorderPlugin.class);
+
+    /**
+     * System property overriding the output directory of the failed scenarios' frames.
+     */
+    public static final String DIRECTORY_PROPERTY = "flight.recorder.dir";
+    private static final String DEFAULT_DIRECTORY = "target/flight-recorder";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+
+    public FlightRecorderPlugin() {
+        this(Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)));
+    }
+
+    public FlightRecorderPlugin(File directory) {
+        this(directory.toPath());
+    }
+
+    FlightRecorderPlugin(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        // the events of a scenario are published on the thread running it, where its driver and recorder live
+        publisher.registerHandlerFor(TestStepStarted.class, event -> DriverManager.startFlightRecording());
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        Status status = event.getResult().getStatus();
+
+        if (event.getTestStep() instanceof PickleStepTestStep && status != Status.SKIPPED) {
+            PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+            DriverManager.recordFlightFrame(step.getStep().getKeyword() + step.getStep().getText());
+        } else if (event.getTestStep() instanceof HookTestStep && status == Status.FAILED) {
+            DriverManager.recordFlightFrame("Hook " + event.getTestStep().getCodeLocation());
+        }
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        FlightRecorder recorder = DriverManager.getFlightRecorder();
+
+        if (event.getResult().getStatus() != Status.FAILED || recorder.size() == 0) {
+            recorder.clear();
+            return;
+        }
+
+        Path scenarioDirectory = directory.resolve(toDirectoryName(event.getTestCase()));
+        try {
+            recorder.flush(scenarioDirectory);
+            LOG.info("Flight recorder frames of the failed scenario are written to {}", scenarioDirectory);
+        } catch (UncheckedIOException e) {
+            LOG.error(String.format("Flight recorder frames could not be written: %s", e.getMessage()));
+            recorder.clear();
+        }
+    }
+
+    private static String toDirectoryName(TestCase testCase) {
+        String name = String.format("%s-%d-%s", testCase.getName(), testCase.getLocation().getLine(),
+                LocalDateTime.now().format(TIMESTAMP));
+
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
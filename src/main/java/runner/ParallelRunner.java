@@ -0,0 +1,73 @@
+package runner;
+
+import io.cucumber.core.options.CommandlineOptionsParser;
+import io.cucumber.core.options.CucumberProperties;
+import io.cucumber.core.options.CucumberPropertiesParser;
+import io.cucumber.core.options.RuntimeOptions;
+import io.cucumber.core.options.RuntimeOptionsBuilder;
+import io.cucumber.core.runtime.Runtime;
+
+import java.util.Optional;
+
+/**
+ * Cucumber command line runner scheduling the scenarios longest first across the worker threads.<br>
+ * Accepts the arguments of the Cucumber CLI, the number of workers is set with --threads. Every worker thread gets
+ * its own driver through DriverManager, the scenario durations are kept in the file named by the
+ * scenario.durations.file system property.
+ * <pre>
+ * java -Dscenario.durations.file=ci/durations.properties runner.ParallelRunner --threads 4 --glue steps features
+ * </pre>
+ *
+ * @author Andras Fuge
+ */
+public class ParallelRunner {
+
+    private ParallelRunner() {
+    }
+
+    public static void main(String... args) {
+        System.exit(run(args, Thread.currentThread().getContextClassLoader()));
+    }
+
+    /**
+     * Runs the scenarios selected by the arguments.
+     *
+     * @param args        the Cucumber CLI arguments
+     * @param classLoader the class loader of the glue code
+     * @return the exit status of the run
+     */
+    public static byte run(String[] args, ClassLoader classLoader) {
+        RuntimeOptions propertiesFileOptions = new CucumberPropertiesParser()
+                .parse(CucumberProperties.fromPropertiesFile())
+                .build();
+        RuntimeOptions environmentOptions = new CucumberPropertiesParser()
+                .parse(CucumberProperties.fromEnvironment())
+                .build(propertiesFileOptions);
+        RuntimeOptions systemOptions = new CucumberPropertiesParser()
+                .parse(CucumberProperties.fromSystemProperties())
+                .build(environmentOptions);
+
+        ScenarioDurations durations = ScenarioDurations.load(ScenarioDurations.getDefaultFile());
+
+        CommandlineOptionsParser commandlineOptionsParser = new CommandlineOptionsParser(System.out);
+        RuntimeOptionsBuilder runtimeOptionsBuilder = commandlineOptionsParser.parse(args)
+                .addDefaultGlueIfAbsent()
+                .addDefaultFeaturePathIfAbsent()
+                .addDefaultSummaryPrinterIfNotDisabled()
+                .setPickleOrder(new DurationPickleOrder(durations));
+
+        Optional<Byte> exitStatus = commandlineOptionsParser.exitStatus();
+        if (exitStatus.isPresent()) {
+            return exitStatus.get();
+        }
+
+        Runtime runtime = Runtime.builder()
+                .withRuntimeOptions(runtimeOptionsBuilder.build(systemOptions))
+                .withClassLoader(() -> classLoader)
+                .withAdditionalPlugins(new ScenarioDurationPlugin(durations))
+                .build();
+        runtime.run();
+
+        return runtime.exitStatus();
+    }
+}
@@ -0,0 +1,34 @@
+package runner;
+
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestStep;
+
+/**
+ * Util class for the Cucumber plugins of the runner.
+ *
+ * @author Andras Fuge
+ */
+final class RunnerUtils {
+    private RunnerUtils() {
+    }
+
+    /**
+     * Returns the text a report shows for a test step: the keyword and text of a Gherkin step, the type and code
+     * location of a hook.
+     *
+     * @param testStep the test step
+     * @return the description of the step
+     */
+    static String describe(TestStep testStep) {
+        if (testStep instanceof PickleStepTestStep) {
+            PickleStepTestStep step = (PickleStepTestStep) testStep;
+            return step.getStep().getKeyword() + step.getStep().getText();
+        }
+        if (testStep instanceof HookTestStep) {
+            return "Hook " + ((HookTestStep) testStep).getHookType() + " " + testStep.getCodeLocation();
+        }
+
+        return testStep.getCodeLocation();
+    }
+}
@@ -0,0 +1,111 @@
+package runner;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cucumber plugin recording the duration of every scenario into the durations file read by DurationPickleOrder,
+ * and reporting the parallel efficiency of the run: the busy time of the workers divided by the wall-clock time
+ * multiplied by the number of workers.<br>
+ * Can be used on its own with --plugin runner.ScenarioDurationPlugin[:path/to/durations.properties].
+ *
+ * @author Andras Fuge
+ */
+public class ScenarioDurationPlugin implements ConcurrentEventListener {
+    private static final Logger LOG = LogManager.getLogger(ScenarioDurationPlugin.class);
+
+    private final ScenarioDurations durations;
+    private final Map<String, Long> runDurations = new ConcurrentHashMap<>();
+    private final Set<Long> workers = ConcurrentHashMap.newKeySet();
+    private final LongAdder busyMillis = new LongAdder();
+    private volatile Instant runStarted;
+    private volatile double efficiency;
+    private volatile String report = "";
+
+    public ScenarioDurationPlugin() {
+        this(ScenarioDurations.load(ScenarioDurations.getDefaultFile()));
+    }
+
+    public ScenarioDurationPlugin(File file) {
+        this(ScenarioDurations.load(file.toPath()));
+    }
+
+    ScenarioDurationPlugin(ScenarioDurations durations) {
+        this.durations = durations;
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> runStarted = event.getInstant());
+        publisher.registerHandlerFor(TestCaseStarted.class, event -> workers.add(Thread.currentThread().getId()));
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, this::onTestRunFinished);
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        long millis = event.getResult().getDuration().toMillis();
+        String key = ScenarioDurations.key(event.getTestCase().getUri(), event.getTestCase().getName());
+
+        busyMillis.add(millis);
+        runDurations.merge(key, millis, Math::max);
+    }
+
+    private void onTestRunFinished(TestRunFinished event) {
+        for (Map.Entry<String, Long> entry : runDurations.entrySet()) {
+            durations.put(entry.getKey(), entry.getValue());
+        }
+        durations.save();
+
+        if (runStarted == null || workers.isEmpty()) {
+            return;
+        }
+
+        long wallMillis = Math.max(1, Duration.between(runStarted, event.getInstant()).toMillis());
+        long longestMillis = 0;
+        for (long millis : runDurations.values()) {
+            longestMillis = Math.max(longestMillis, millis);
+        }
+
+        long busy = busyMillis.sum();
+        long lowerBoundMillis = Math.max(longestMillis, busy / workers.size());
+        efficiency = (double) busy / (wallMillis * workers.size());
+
+        report = String.format("Parallel run: wall %.1f s, busy %.1f s on %d workers, efficiency %.1f %%, "
+                        + "lower bound %.1f s (longest scenario %.1f s)",
+                wallMillis / 1000d, busy / 1000d, workers.size(), efficiency * 100,
+                lowerBoundMillis / 1000d, longestMillis / 1000d);
+        LOG.info(report);
+    }
+
+    /**
+     * Returns the parallel efficiency of the finished run.
+     *
+     * @return the busy time per available worker time, between 0 and 1
+     */
+    public double getEfficiency() {
+        return efficiency;
+    }
+
+    /**
+     * Returns the summary of the finished run: wall-clock and busy time, workers, efficiency and its lower bound.
+     *
+     * @return the report line, empty until the run is finished
+     */
+    public String getReport() {
+        return report;
+    }
+}
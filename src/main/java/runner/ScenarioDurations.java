@@ -0,0 +1,142 @@
+package runner;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scenario durations of the previous runs, persisted in a properties file.<br>
+ * Scenarios are identified by their feature file and name, so editing a feature file does not lose the history.
+ * The examples of a scenario outline share one entry holding the longest example.
+ *
+ * @author Andras Fuge
+ */
+public class ScenarioDurations {
+    private static final Logger LOG = LogManager.getLogger(ScenarioDurations.class);
+
+    /**
+     * System property overriding the location of the durations file.
+     */
+    public static final String FILE_PROPERTY = "scenario.durations.file";
+    private static final String DEFAULT_FILE = "scenario-durations.properties";
+
+    private final Path file;
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    ScenarioDurations(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the durations file set by the scenario.durations.file system property,
+     * scenario-durations.properties in the working directory by default.
+     *
+     * @return the path of the durations file
+     */
+    public static Path getDefaultFile() {
+        return Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+    }
+
+    /**
+     * Loads the durations from the file, a missing or unreadable file gives an empty history.
+     *
+     * @param file the durations file
+     * @return the loaded durations
+     */
+    public static ScenarioDurations load(Path file) {
+        ScenarioDurations loaded = new ScenarioDurations(file);
+
+        if (!Files.isRegularFile(file)) {
+            return loaded;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.warn(String.format("Could not read scenario durations from %s: %s", file, e.getMessage()));
+            return loaded;
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                loaded.durations.put(key, Long.parseLong(properties.getProperty(key)));
+            } catch (NumberFormatException e) {
+                LOG.debug("Ignoring malformed duration of {}", key);
+            }
+        }
+
+        return loaded;
+    }
+
+    static String key(URI uri, String name) {
+        return uri + "#" + name;
+    }
+
+    /**
+     * Returns the last recorded duration of a scenario.
+     *
+     * @param uri  the feature file of the scenario
+     * @param name the name of the scenario
+     * @return the duration in milliseconds, or null when the scenario has not been run yet
+     */
+    public Long get(URI uri, String name) {
+        return durations.get(key(uri, name));
+    }
+
+    void put(String key, long millis) {
+        durations.put(key, millis);
+    }
+
+    /**
+     * Returns the longest recorded duration, the estimate of scenarios which have not been run yet.
+     *
+     * @return the longest duration in milliseconds, zero when the history is empty
+     */
+    public long getLongest() {
+        long longest = 0;
+
+        for (long millis : durations.values()) {
+            longest = Math.max(longest, millis);
+        }
+
+        return longest;
+    }
+
+    public int size() {
+        return durations.size();
+    }
+
+    /**
+     * Writes the durations to the file.
+     */
+    void save() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            try (OutputStream out = Files.newOutputStream(file)) {
+                properties.store(out, "Scenario durations in milliseconds");
+            }
+        } catch (IOException e) {
+            LOG.warn(String.format("Could not write scenario durations to %s: %s", file, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package runner;
+
+import driver.DriverManager;
+import driver.TimeBreakdown;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static utils.JsonUtils.quote;
+
+/**
+ * Cucumber plugin breaking the time of every scenario and step down into remote WebDriver commands, waits, explicit
+ * sleeps and unaccounted time (step code, framework overhead), see driver.TimeBreakdown.<br>
+ * At the end of the run the breakdowns and the run totals are written as JSON, with the scenarios ranked by their
+ * recoverable time: the sleeps and the idle time between the polls of the waits. The top offenders are logged.<br>
+ * Usage: --plugin runner.TimeBreakdownPlugin[:path/to/time-breakdown.json].
+ *
+ * @author Andras Fuge
+ */
+public class TimeBreakdownPlugin implements ConcurrentEventListener {
+    private static final Logger LOG = LogManager.getLogger(TimeBreakdownPlugin.class);
+
+    /**
+     * System property overriding the location of the report.
+     */
+    public static final String FILE_PROPERTY = "time.breakdown.file";
+    private static final String DEFAULT_FILE = "target/time-breakdown.json";
+    private static final int TOP_OFFENDERS = 10;
+
+    private final Path file;
+    private final Queue<ScenarioBreakdown> scenarios = new ConcurrentLinkedQueue<>();
+    // the events of a scenario are published on the thread running it, where its TimeBreakdown lives
+    private final ThreadLocal<ScenarioBreakdown> currentScenario = new ThreadLocal<>();
+    private final ThreadLocal<TimeBreakdown.Totals> stepStart = new ThreadLocal<>();
+
+    public TimeBreakdownPlugin() {
+        this(Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)));
+    }
+
+    public TimeBreakdownPlugin(File file) {
+        this(file.toPath());
+    }
+
+    TimeBreakdownPlugin(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> DriverManager.setCommandListening(true));
+        publisher.registerHandlerFor(TestCaseStarted.class, this::onTestCaseStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, this::onTestStepStarted);
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> writeReport());
+    }
+
+    private void onTestCaseStarted(TestCaseStarted event) {
+        currentScenario.set(new ScenarioBreakdown(event.getTestCase()));
+    }
+
+    private void onTestStepStarted(TestStepStarted event) {
+        DriverManager.startTimeBreakdown();
+        stepStart.set(TimeBreakdown.current().snapshot());
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        ScenarioBreakdown scenario = currentScenario.get();
+        TimeBreakdown.Totals start = stepStart.get();
+
+        if (scenario == null || start == null) {
+            return;
+        }
+
+        scenario.steps.add(new StepBreakdown(RunnerUtils.describe(event.getTestStep()), event.getResult().getStatus().name(),
+                event.getResult().getDuration().toNanos(), TimeBreakdown.current().snapshot().minus(start)));
+        stepStart.remove();
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        ScenarioBreakdown scenario = currentScenario.get();
+
+        if (scenario == null) {
+            return;
+        }
+
+        scenario.status = event.getResult().getStatus().name();
+        scenario.durationNanos = event.getResult().getDuration().toNanos();
+        for (StepBreakdown step : scenario.steps) {
+            scenario.totals = scenario.totals.plus(step.totals);
+        }
+
+        scenarios.add(scenario);
+        currentScenario.remove();
+    }
+
+    private void writeReport() {
+        List<ScenarioBreakdown> finished = new ArrayList<>(scenarios);
+        TimeBreakdown.Totals run = TimeBreakdown.Totals.ZERO;
+        long runDurationNanos = 0;
+
+        for (ScenarioBreakdown scenario : finished) {
+            run = run.plus(scenario.totals);
+            runDurationNanos += scenario.durationNanos;
+        }
+
+        List<ScenarioBreakdown> offenders = new ArrayList<>(finished);
+        offenders.sort(Comparator.comparingLong((ScenarioBreakdown scenario) -> scenario.totals.getRecoverableNanos()).reversed());
+        offenders = offenders.subList(0, Math.min(TOP_OFFENDERS, offenders.size()));
+
+        try {
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("{\n  \"run\": {\"scenarios\": " + finished.size() + ", ");
+                writeTotals(writer, runDurationNanos, run);
+                writer.write("},\n  \"topOffenders\": [");
+
+                String separator = "\n";
+                for (ScenarioBreakdown scenario : offenders) {
+                    writer.write(separator + "    {" + scenario.identify() + ", ");
+                    writer.write(String.format(Locale.ROOT, "\"recoverableMs\": %.3f, \"sleepMs\": %.3f, \"waitIdleMs\": %.3f}",
+                            millis(scenario.totals.getRecoverableNanos()), millis(scenario.totals.getSleepNanos()),
+                            millis(scenario.totals.getWaitIdleNanos())));
+                    separator = ",\n";
+                }
+
+                writer.write("\n  ],\n  \"scenarios\": [");
+                separator = "\n";
+                for (ScenarioBreakdown scenario : finished) {
+                    writer.write(separator + "    {" + scenario.identify() + ", \"status\": " + quote(scenario.status) + ", ");
+                    writeTotals(writer, scenario.durationNanos, scenario.totals);
+                    writer.write(", \"steps\": [");
+
+                    String stepSeparator = "\n";
+                    for (StepBreakdown step : scenario.steps) {
+                        writer.write(stepSeparator + "      {\"step\": " + quote(step.text) + ", \"status\": " + quote(step.status) + ", ");
+                        writeTotals(writer, step.durationNanos, step.totals);
+                        writer.write("}");
+                        stepSeparator = ",\n";
+                    }
+
+                    writer.write(scenario.steps.isEmpty() ? "]}" : "\n    ]}");
+                    separator = ",\n";
+                }
+
+                writer.write("\n  ]\n}\n");
+            }
+        } catch (IOException e) {
+            LOG.error(String.format("Time breakdown report could not be written: %s", e.getMessage()));
+            return;
+        }
+
+        LOG.info(String.format(Locale.ROOT, "Time breakdown of %d scenarios written to %s: commands %.1f s, waits %.1f s, "
+                        + "sleeps %.1f s, unaccounted %.1f s, recoverable %.1f s", finished.size(), file,
+                millis(run.getCommandNanos()) / 1000, millis(run.getWaitNanos()) / 1000, millis(run.getSleepNanos()) / 1000,
+                millis(run.getUnaccountedNanos(runDurationNanos)) / 1000, millis(run.getRecoverableNanos()) / 1000));
+
+        for (ScenarioBreakdown scenario : offenders) {
+            if (scenario.totals.getRecoverableNanos() > 0) {
+                LOG.info(String.format(Locale.ROOT, "  %.1f s recoverable (sleeps %.1f s, idle waits %.1f s) in %s (%s:%d)",
+                        millis(scenario.totals.getRecoverableNanos()) / 1000, millis(scenario.totals.getSleepNanos()) / 1000,
+                        millis(scenario.totals.getWaitIdleNanos()) / 1000, scenario.name, scenario.uri, scenario.line));
+            }
+        }
+    }
+
+    private static void writeTotals(Writer writer, long durationNanos, TimeBreakdown.Totals totals) throws IOException {
+        writer.write(String.format(Locale.ROOT, "\"durationMs\": %.3f, \"commandMs\": %.3f, \"commands\": %d, "
+                        + "\"waitMs\": %.3f, \"waitIdleMs\": %.3f, \"waits\": %d, \"sleepMs\": %.3f, \"sleeps\": %d, "
+                        + "\"unaccountedMs\": %.3f, \"recoverableMs\": %.3f",
+                millis(durationNanos), millis(totals.getCommandNanos()), totals.getCommands(),
+                millis(totals.getWaitNanos()), millis(totals.getWaitIdleNanos()), totals.getWaits(),
+                millis(totals.getSleepNanos()), totals.getSleeps(),
+                millis(totals.getUnaccountedNanos(durationNanos)), millis(totals.getRecoverableNanos())));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    private static final class ScenarioBreakdown {
+        private final String name;
+        private final String uri;
+        private final int line;
+        private final List<StepBreakdown> steps = new ArrayList<>();
+        private String status;
+        private long durationNanos;
+        private TimeBreakdown.Totals totals = TimeBreakdown.Totals.ZERO;
+
+        private ScenarioBreakdown(TestCase testCase) {
+            this.name = testCase.getName();
+            this.uri = String.valueOf(testCase.getUri());
+            this.line = testCase.getLocation().getLine();
+        }
+
+        private String identify() {
+            return "\"scenario\": " + quote(name) + ", \"uri\": " + quote(uri) + ", \"line\": " + line;
+        }
+    }
+
+    private static final class StepBreakdown {
+        private final String text;
+        private final String status;
+        private final long durationNanos;
+        private final TimeBreakdown.Totals totals;
+
+        private StepBreakdown(String text, String status, long durationNanos, TimeBreakdown.Totals totals) {
+            this.text = text;
+            this.status = status;
+            this.durationNanos = durationNanos;
+            this.totals = totals;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package runner;
+
+import driver.DriverManager;
+import driver.TraceRecorder;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Cucumber plugin tracing every scenario down to its steps, DriverMethods calls, WebDriver commands, waits and wait
+ * polls with the TraceRecorder. At the end of the run the spans are written as a Chrome trace-event JSON file, one
+ * track per worker thread, to be opened in chrome://tracing or ui.perfetto.dev.<br>
+ * Usage: --plugin runner.TracePlugin[:path/to/trace.json].
+ *
+ * @author Andras Fuge
+ */
+public class TracePlugin implements ConcurrentEventListener {
+    private static final Logger LOG = LogManager.getLogger(TracePlugin.class);
+
+    /**
+     * System property overriding the location of the trace.
+     */
+    public static final String FILE_PROPERTY = "trace.file";
+    private static final String DEFAULT_FILE = "target/trace.json";
+
+    private final Path file;
+    // the events of a scenario are published on the thread running it, so its spans land on the track of the thread
+    private final ThreadLocal<TraceRecorder.Span> scenarioSpan = new ThreadLocal<>();
+    private final ThreadLocal<TraceRecorder.Span> stepSpan = new ThreadLocal<>();
+
+    public TracePlugin() {
+        this(Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)));
+    }
+
+    public TracePlugin(File file) {
+        this(file.toPath());
+    }
+
+    TracePlugin(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> {
+            TraceRecorder.setEnabled(true);
+            DriverManager.setCommandListening(true);
+        });
+        publisher.registerHandlerFor(TestCaseStarted.class, this::onTestCaseStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, this::onTestStepStarted);
+        publisher.registerHandlerFor(TestStepFinished.class, event -> close(stepSpan));
+        publisher.registerHandlerFor(TestCaseFinished.class, event -> close(scenarioSpan));
+        publisher.registerHandlerFor(TestRunFinished.class, event -> writeTrace());
+    }
+
+    private void onTestCaseStarted(TestCaseStarted event) {
+        scenarioSpan.set(TraceRecorder.span("scenario", event.getTestCase().getName(),
+                event.getTestCase().getUri() + ":" + event.getTestCase().getLocation().getLine()));
+    }
+
+    private void onTestStepStarted(TestStepStarted event) {
+        DriverManager.startTracing();
+        stepSpan.set(TraceRecorder.span("step", RunnerUtils.describe(event.getTestStep())));
+    }
+
+    private static void close(ThreadLocal<TraceRecorder.Span> span) {
+        TraceRecorder.Span open = span.get();
+
+        if (open != null) {
+            open.close();
+            span.remove();
+        }
+    }
+
+    private void writeTrace() {
+        TraceRecorder.setEnabled(false);
+
+        try {
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+
+            int events = TraceRecorder.writeJson(file);
+            LOG.info(String.format("Trace of %d spans written to %s, open it in chrome://tracing or ui.perfetto.dev",
+                    events, file));
+        } catch (IOException e) {
+            LOG.error(String.format("Trace could not be written: %s", e.getMessage()));
+        }
+    }
+}
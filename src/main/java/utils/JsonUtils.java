@@ -0,0 +1,55 @@
+package utils;
+
+/**
+ * Util class for the hand written JSON reports of the framework.
+ *
+ * @author Andras Fuge
+ */
+public final class JsonUtils {
+    private JsonUtils() {
+    }
+
+    /**
+     * Returns the value as a quoted JSON string.
+     *
+     * @param value the value to be quoted, null gives null
+     * @return the JSON string literal
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+}
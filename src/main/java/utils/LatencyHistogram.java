@@ -0,0 +1,110 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two microsecond buckets.<br>
+ * Recording is a handful of atomic increments, so it is cheap enough to stay on for every command.
+ * Percentiles are estimated from the bucket boundaries, the error is at most a factor of two.
+ *
+ * @author Andras Fuge
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one measured duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+
+        long max;
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1_000_000d;
+    }
+
+    public double getMeanMillis() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : totalNanos.sum() / 1_000_000d / samples;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000d;
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        long samples = 0;
+        long[] snapshot = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            samples += snapshot[i];
+        }
+
+        if (samples == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(samples * percentile / 100d);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min((1L << i) / 1000d, getMaxMillis());
+            }
+        }
+
+        return getMaxMillis();
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+}
@@ -0,0 +1,42 @@
+package driver;
+
+import enums.BrowserProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the page load strategy the profiles launch the browser with.
+ *
+ * @author Andras Fuge
+ */
+class BrowserOptionsTest {
+
+    @AfterEach
+    void reset() {
+        BrowserOptions.setPageLoadStrategy(null);
+    }
+
+    private static Object pageLoadStrategy(BrowserProfile profile) {
+        ChromeOptions options = BrowserOptions.getChromeOptions(profile);
+        return options.getCapability("pageLoadStrategy");
+    }
+
+    @Test
+    void launchesWithTheStrategyOfTheProfile() {
+        assertNull(pageLoadStrategy(BrowserProfile.DEFAULT));
+        assertEquals(PageLoadStrategy.EAGER, pageLoadStrategy(BrowserProfile.HEADLESS_LEAN));
+    }
+
+    @Test
+    void overridesTheStrategyOfEveryProfile() {
+        BrowserOptions.setPageLoadStrategy(PageLoadStrategy.NONE);
+
+        assertEquals(PageLoadStrategy.NONE, pageLoadStrategy(BrowserProfile.DEFAULT));
+        assertEquals(PageLoadStrategy.NONE, pageLoadStrategy(BrowserProfile.LEAN));
+    }
+}
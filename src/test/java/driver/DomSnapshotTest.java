@@ -0,0 +1,197 @@
+package driver;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluates CSS selectors, XPath expressions and the other locators against a DomSnapshot built from rows in the format
+ * of its snapshot script, and reads the attributes and texts the way WebElement would.
+ *
+ * @author Andras Fuge
+ */
+class DomSnapshotTest {
+    private static final int SHOWN = DomSnapshot.VISIBLE | DomSnapshot.ENABLED;
+    private static final int SHOWN_BLOCK = SHOWN | DomSnapshot.BLOCK;
+
+    private final List<Object> rows = new ArrayList<>();
+    private DomSnapshot snapshot;
+
+    private int element(int parent, String tagName, int flags, String text, String value, String... attributes) {
+        Map<String, Object> attributeMap = new HashMap<>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            attributeMap.put(attributes[i], attributes[i + 1]);
+        }
+
+        rows.add(Arrays.asList(parent, tagName, attributeMap, flags, text, value));
+        return rows.size() - 1;
+    }
+
+    private void text(int parent, String data) {
+        rows.add(Arrays.asList(parent, null, data));
+    }
+
+    @BeforeEach
+    void buildSnapshot() {
+        int html = element(-1, "html", SHOWN_BLOCK, null, null);
+        int body = element(html, "body", SHOWN_BLOCK, null, null);
+
+        int form = element(body, "form", SHOWN_BLOCK, "Log in", null, "id", "login", "class", "card  wide");
+        element(form, "input", SHOWN, "", "bob", "name", "user", "type", "text", "value", "");
+        element(form, "input", SHOWN | DomSnapshot.SELECTED, "", "on", "name", "remember", "type", "checkbox", "checked", "");
+        int button = element(form, "button", DomSnapshot.VISIBLE, "Log in", null, "disabled", "", "id", "a:b");
+        text(button, "Log in");
+
+        int list = element(body, "ul", SHOWN_BLOCK, "one\ntwo\nthree\nfour", null);
+        for (String item : new String[]{"one", "two", "three", "four"}) {
+            int li = "three".equals(item)
+                    ? element(list, "li", SHOWN_BLOCK, item, null, "class", "item active", "data-lang", "en-US")
+                    : element(list, "li", SHOWN_BLOCK, item, null, "class", "item");
+            text(li, item);
+        }
+
+        // a text above the serialized length arrives as null and is assembled from the text nodes
+        int help = element(body, "div", SHOWN_BLOCK, null, null, "id", "help", "@click", "open()");
+        text(help, "  Need\u00a0 ");
+        int link = element(help, "a", SHOWN, "help", null, "href", "../help?topic=login");
+        text(link, "help");
+        text(help, "?");
+        int note = element(help, "p", SHOWN_BLOCK, null, null);
+        text(note, "Call   us");
+        int hidden = element(help, "span", DomSnapshot.ENABLED, "", null);
+        text(hidden, "secret");
+
+        Map<String, Object> raw = new HashMap<>();
+        raw.put("base", "https://example.com/shop/cart/");
+        raw.put("nodes", rows);
+        snapshot = DomSnapshot.fromScriptResult(raw);
+    }
+
+    private List<String> find(By locator) {
+        List<DomSnapshot.Node> found = snapshot.findElements(locator);
+        return found == null ? null : found.stream().map(this::describe).collect(Collectors.toList());
+    }
+
+    private String describe(DomSnapshot.Node node) {
+        String id = node.getAttribute("id");
+        String name = node.getAttribute("name");
+        return node.getTagName() + (id != null ? "#" + id : name != null ? "[" + name + "]" : ":" + node.getText());
+    }
+
+    private List<String> css(String selector) {
+        return find(By.cssSelector(selector));
+    }
+
+    @Test
+    void buildsTheTree() {
+        assertEquals(15, snapshot.size());
+    }
+
+    @Test
+    void matchesCompoundSelectorsAndCombinators() {
+        assertEquals(List.of("input[remember]"), css("form#login.card.wide input[type=checkbox]"));
+        assertEquals(List.of("li:one", "li:three"), css("ul > li:nth-child(2n+1)"));
+        assertEquals(List.of("li:four"), css("li.active + li"));
+        assertEquals(List.of("li:two", "li:three", "li:four"), css("li:first-child ~ li"));
+        assertEquals(List.of("li:one", "li:two", "li:four"), css("li:not(.active)"));
+        assertEquals(List.of("li:four"), css("li:last-child"));
+        assertEquals(List.of("li:three", "li:four"), css("li:nth-last-child(-n+2)"));
+        assertEquals(List.of("a:help"), css("div#help > :only-child, body > div a"));
+        assertEquals(List.of("button#a:b"), css("#a\\:b"));
+    }
+
+    @Test
+    void matchesAttributeOperators() {
+        assertEquals(List.of("li:three"), css("[data-lang|=en]"));
+        assertEquals(List.of("li:three"), css("[data-lang^='EN' i]"));
+        assertEquals(List.of(), css("[data-lang^='EN']"));
+        assertEquals(List.of("li:three"), css("li[data-lang$=\"-US\"]"));
+        assertEquals(List.of("li:three"), css("[class~=active]"));
+        assertEquals(List.of(), css("[class*='']"));
+        assertEquals(List.of("input[user]", "input[remember]"), css("input[name]"));
+    }
+
+    @Test
+    void matchesStatePseudoClasses() {
+        assertEquals(List.of("input[remember]"), css("input:checked"));
+        assertEquals(List.of("button#a:b"), css("form :disabled"));
+        assertEquals(List.of("input[user]", "input[remember]"), css("form :enabled"));
+    }
+
+    @Test
+    void leavesUnsupportedSelectorsToTheBrowser() {
+        assertNull(CssSelector.parse("li:hover"));
+        assertNull(CssSelector.parse("a::before"));
+        assertNull(CssSelector.parse("ul >"));
+        assertNull(CssSelector.parse("li:nth-child(2n+)"));
+        assertNull(CssSelector.parse("[data-lang!=en]"));
+        assertNull(css("li:has(a)"));
+    }
+
+    @Test
+    void evaluatesXpathOnElements() {
+        assertEquals(List.of("li:three"), find(By.xpath("//li[@data-lang='en-US']")));
+        assertEquals(List.of("li:two"), find(By.xpath("//ul/li[contains(text(), 'tw')]")));
+        assertEquals(List.of("input[remember]"), find(By.xpath("//form/input[last()]")));
+        assertEquals(List.of("div#help"), find(By.xpath("//a[starts-with(@href, '../')]/..")));
+    }
+
+    @Test
+    void leavesNonElementAndInvalidXpathToTheBrowser() {
+        assertNull(find(By.xpath("//input/@name")));
+        assertNull(find(By.xpath("//li/text()")));
+        assertNull(find(By.xpath("//li[")));
+    }
+
+    @Test
+    void evaluatesTheOtherLocators() {
+        assertEquals(List.of("form#login"), find(By.id("login")));
+        assertEquals(List.of("input[user]"), find(By.name("user")));
+        assertEquals(4, find(By.className("item")).size());
+        assertEquals(4, find(By.tagName("LI")).size());
+        assertEquals(List.of("a:help"), find(By.linkText("help")));
+        assertEquals(List.of("a:help"), find(By.partialLinkText("el")));
+    }
+
+    @Test
+    void readsAttributesLikeWebElement() {
+        DomSnapshot.Node user = snapshot.findElements(By.name("user")).get(0);
+        DomSnapshot.Node remember = snapshot.findElements(By.name("remember")).get(0);
+        DomSnapshot.Node button = snapshot.findElements(By.tagName("button")).get(0);
+        DomSnapshot.Node link = snapshot.findElements(By.tagName("a")).get(0);
+
+        assertEquals("bob", snapshot.readAttribute(user, "value"), "the live value, not the attribute");
+        assertNull(snapshot.readAttribute(user, "checked"));
+        assertEquals("true", snapshot.readAttribute(remember, "checked"));
+        assertEquals("true", snapshot.readAttribute(button, "disabled"));
+        assertNull(snapshot.readAttribute(user, "disabled"));
+        assertNull(snapshot.readAttribute(user, "required"));
+        assertEquals("https://example.com/shop/help?topic=login", snapshot.readAttribute(link, "href"));
+        assertEquals("item active", snapshot.readAttribute(snapshot.findElements(By.cssSelector(".active")).get(0), "classname"));
+
+        assertTrue(DomSnapshot.canReadAttribute("data-lang"));
+        assertFalse(DomSnapshot.canReadAttribute("innerhtml"));
+        assertFalse(DomSnapshot.canReadAttribute("textContent"));
+    }
+
+    @Test
+    void assemblesLongTextsFromTheVisibleTextNodes() {
+        DomSnapshot.Node help = snapshot.findElements(By.id("help")).get(0);
+
+        // the whitespace around the no-break space collapses, the no-break space itself stays a space
+        assertEquals("Need  help?\nCall us", help.getText());
+        assertEquals("Log in", snapshot.findElements(By.tagName("button")).get(0).getText());
+    }
+}
@@ -0,0 +1,40 @@
+package driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Keeps the implicit wait timeout of a thread across its sessions without leaking it to other threads.
+ *
+ * @author Andras Fuge
+ */
+class DriverRegistryTest {
+
+    @AfterEach
+    void reset() {
+        DriverRegistry.setImplicitWaitTimeout(DriverManager.getDefaultImplicitWaitTimeout());
+        DriverRegistry.release();
+    }
+
+    @Test
+    void keepsTheImplicitWaitOfTheThreadAcrossSessions() throws Exception {
+        DriverRegistry.setImplicitWaitTimeout(7);
+        DriverSession first = DriverRegistry.current();
+        DriverRegistry.release();
+
+        DriverSession second = DriverRegistry.current();
+        long otherThread = CompletableFuture.supplyAsync(() -> {
+            long timeout = DriverRegistry.current().getImplicitWaitTimeout();
+            DriverRegistry.release();
+            return timeout;
+        }).get();
+
+        assertEquals(7, first.getImplicitWaitTimeout());
+        assertEquals(7, second.getImplicitWaitTimeout());
+        assertEquals(DriverManager.getDefaultImplicitWaitTimeout(), otherThread);
+    }
+}
@@ -0,0 +1,129 @@
+package driver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import enums.BrowserType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Creates sessions of DriverServices on an in-process stub standing in for the shared driver service.
+ *
+ * @author Andras Fuge
+ */
+class DriverServicesTest {
+    private static final String NEW_SESSION = "{\"value\": {\"sessionId\": \"stub-session\", \"capabilities\": {\"browserName\": \"chrome\"}}}";
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private StubService service;
+
+    @BeforeEach
+    void startService() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        service = new StubService(new URL("http://127.0.0.1:" + server.getAddress().getPort()));
+    }
+
+    @AfterEach
+    void stopService() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            while (body.read() != -1) {
+                // drain the request, the stub does not look at the payload
+            }
+        }
+
+        String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+        requests.add(request);
+
+        byte[] bytes = (request.equals("POST /session") ? NEW_SESSION : "{\"value\": null}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    @Test
+    void createsChromeDriversWhichLeaveTheServiceRunning() {
+        WebDriver driver = DriverServices.newDriver(BrowserType.CHROME, service, new MutableCapabilities());
+
+        assertInstanceOf(ChromeDriver.class, driver);
+        assertTimeout(Duration.ofSeconds(2), driver::quit, "quitting must not wait for the shared process to exit");
+
+        assertEquals(0, service.stops);
+        assertEquals("POST /session", requests.get(0));
+        assertTrue(requests.contains("DELETE /session/stub-session"));
+    }
+
+    @Test
+    void createsEdgeDriversWhichLeaveTheServiceRunning() {
+        WebDriver driver = DriverServices.newDriver(BrowserType.EDGE, service, new MutableCapabilities());
+
+        assertInstanceOf(EdgeDriver.class, driver);
+        assertTimeout(Duration.ofSeconds(2), driver::quit, "quitting must not wait for the shared process to exit");
+
+        assertEquals(0, service.stops);
+        assertTrue(requests.contains("DELETE /session/stub-session"));
+    }
+
+    /**
+     * A running service which only counts the stop calls.
+     */
+    private static final class StubService extends ChromeDriverService {
+        private final URL url;
+        private volatile int stops = 0;
+
+        private StubService(URL url) throws IOException {
+            super(new File(""), url.getPort(), Duration.ofSeconds(1), Collections.emptyList(), Collections.emptyMap());
+            this.url = url;
+        }
+
+        @Override
+        public URL getUrl() {
+            return url;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return true;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Captures FlightRecorder frames from a stub Chromium driver.
+ *
+ * @author Andras Fuge
+ */
+class FlightRecorderTest {
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9};
+
+    private final List<String> calls = new ArrayList<>();
+    private final List<Map<String, Object>> screenshotParameters = new ArrayList<>();
+    private final FlightRecorder recorder = FlightRecorder.current();
+    private String dom = "<html><body>page</body></html>";
+
+    @BeforeEach
+    @AfterEach
+    void reset() {
+        recorder.clear();
+        FlightRecorder.setMaxFrames(10);
+        FlightRecorder.setMemoryCap(16L * 1024 * 1024);
+        FlightRecorder.setScreenshots(false);
+        FlightRecorder.setScreenshotScale(0.5);
+    }
+
+    @SuppressWarnings("unchecked")
+    private WebDriver driver() {
+        return (WebDriver) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class, TakesScreenshot.class, HasCdp.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+
+                    switch (method.getName()) {
+                        case "getCurrentUrl":
+                            return "https://example.com/page";
+                        case "executeScript":
+                            return dom;
+                        case "executeCdpCommand":
+                            if ("Page.getLayoutMetrics".equals(args[0])) {
+                                Map<String, Object> viewport = new HashMap<>();
+                                viewport.put("pageX", 0);
+                                viewport.put("pageY", 120);
+                                viewport.put("clientWidth", 1280);
+                                viewport.put("clientHeight", 720);
+                                return Collections.singletonMap("cssVisualViewport", viewport);
+                            }
+                            screenshotParameters.add((Map<String, Object>) args[1]);
+                            return Collections.singletonMap("data", Base64.getEncoder().encodeToString(JPEG));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    void keepsTheLastFrames() {
+        FlightRecorder.setMaxFrames(3);
+        WebDriver driver = driver();
+
+        for (int i = 0; i < 5; i++) {
+            recorder.capture(driver, "step " + i);
+        }
+
+        assertEquals(3, recorder.size());
+    }
+
+    @Test
+    void staysUnderTheMemoryCap() {
+        FlightRecorder.setMemoryCap(4 * 1024);
+        byte[] noise = new byte[16 * 1024];
+        new Random(42).nextBytes(noise);
+        dom = Base64.getEncoder().encodeToString(noise);
+        WebDriver driver = driver();
+
+        for (int i = 0; i < 3; i++) {
+            recorder.capture(driver, "step " + i);
+        }
+
+        assertEquals(1, recorder.size());
+        assertTrue(recorder.getMemoryUsage() <= FlightRecorder.getMemoryCap(), "usage " + recorder.getMemoryUsage());
+    }
+
+    @Test
+    void takesNoScreenshotsByDefault() {
+        recorder.capture(driver(), "step");
+
+        assertEquals(List.of("getCurrentUrl", "executeScript"), calls);
+    }
+
+    @Test
+    void capturesScaledViewportScreenshotsThroughCdp(@TempDir Path directory) throws IOException {
+        FlightRecorder.setScreenshots(true);
+        FlightRecorder.setScreenshotScale(0.25);
+
+        recorder.capture(driver(), "step");
+        recorder.flush(directory);
+
+        assertFalse(calls.contains("getScreenshotAs"));
+        Map<String, Object> parameters = screenshotParameters.get(0);
+        Map<?, ?> clip = (Map<?, ?>) parameters.get("clip");
+        assertEquals("jpeg", parameters.get("format"));
+        assertEquals(0.25, clip.get("scale"));
+        assertEquals(120, clip.get("y"));
+        assertEquals(1280, clip.get("width"));
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals("[01-dom.html.gz, 01-log.txt, 01-screenshot.jpg]",
+                    files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList()).toString());
+        }
+        assertArrayEquals(JPEG, Files.readAllBytes(directory.resolve("01-screenshot.jpg")));
+        assertEquals(0, recorder.size());
+    }
+}
@@ -0,0 +1,83 @@
+package driver;
+
+import enums.WaitCondition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs observer waits against a stub driver whose asynchronous script completes immediately.
+ *
+ * @author Andras Fuge
+ */
+class ObserverWaitTest {
+    private final List<String> timeoutCalls = new ArrayList<>();
+    private Object scriptResult = true;
+
+    private <T> T stub(Class<T> type, Object result) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> result));
+    }
+
+    @BeforeEach
+    void initDriver() {
+        WebDriver.Timeouts timeouts = (WebDriver.Timeouts) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebDriver.Timeouts.class}, (proxy, method, args) -> {
+                    timeoutCalls.add(method.getName() + (args == null ? "" : " " + args[0]));
+                    return "getScriptTimeout".equals(method.getName()) ? Duration.ofSeconds(30) : proxy;
+                });
+        WebDriver.Options options = stub(WebDriver.Options.class, timeouts);
+
+        DriverManager.initDriver((WebDriver) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "manage":
+                            return options;
+                        case "executeAsyncScript":
+                            return scriptResult;
+                        default:
+                            return null;
+                    }
+                }));
+    }
+
+    @AfterEach
+    void destroyDriver() {
+        DriverManager.destroyDriver();
+    }
+
+    @Test
+    void readsTheScriptTimeoutOncePerSession() {
+        ObserverWait.until(WaitCondition.VISIBLE, By.id("a"), null, null, 10);
+        ObserverWait.until(WaitCondition.VISIBLE, By.id("b"), null, null, 10);
+        ObserverWait.until(WaitCondition.VISIBLE, By.id("c"), null, null, 60);
+
+        assertEquals(List.of("getScriptTimeout", "scriptTimeout PT1M5S", "scriptTimeout PT30S"), timeoutCalls);
+    }
+
+    @Test
+    void failsFastOnAnInvalidSelector() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "SyntaxError");
+        error.put("message", "'li[' is not a valid selector.");
+        scriptResult = error;
+
+        InvalidSelectorException exception = assertThrows(InvalidSelectorException.class,
+                () -> ObserverWait.until(WaitCondition.VISIBLE, By.cssSelector("li["), null, null, 10));
+        assertEquals("SyntaxError: 'li[' is not a valid selector.", exception.getRawMessage());
+    }
+}
@@ -0,0 +1,165 @@
+package driver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import enums.HubSelection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs RemoteDriverFactory against an in-process stub hub speaking the W3C session protocol.
+ *
+ * @author Andras Fuge
+ */
+class RemoteDriverFactoryTest {
+    private static final String NEW_SESSION = "{\"value\": {\"sessionId\": \"stub-session\", \"capabilities\": {\"browserName\": \"chrome\"}}}";
+    private static final String INVALID_CAPABILITIES = "{\"value\": {\"error\": \"session not created\", "
+            + "\"message\": \"invalid capabilities\", \"stacktrace\": \"\"}}";
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private HttpServer hub;
+    private volatile boolean rejectSessions = false;
+    private RemoteDriverFactory factory;
+
+    @BeforeEach
+    void startHub() throws IOException {
+        hub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hub.createContext("/", this::handle);
+        hub.start();
+    }
+
+    @AfterEach
+    void stopHub() {
+        if (factory != null) {
+            factory.shutdown();
+        }
+        hub.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            while (body.read() != -1) {
+                // drain the request, the stub does not look at the payload
+            }
+        }
+
+        String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+        requests.add(request);
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+
+        if (request.equals("POST /session")) {
+            respond(exchange, rejectSessions ? 500 : 200, rejectSessions ? INVALID_CAPABILITIES : NEW_SESSION);
+        } else if (request.equals("GET /session/stub-session/url")) {
+            respond(exchange, 200, "{\"value\": \"about:blank\"}");
+        } else {
+            respond(exchange, 200, "{\"value\": null}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private String hubUrl() {
+        return "http://127.0.0.1:" + hub.getAddress().getPort();
+    }
+
+    private static String unusedUrl() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return "http://127.0.0.1:" + socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void createsSessionsThroughThePooledTransport() {
+        factory = new RemoteDriverFactory(HubSelection.ROUND_ROBIN, hubUrl());
+
+        WebDriver driver = factory.createDriver(new ImmutableCapabilities("browserName", "chrome"));
+        RemoteDriverFactory.Hub stub = factory.getHubs().get(0);
+
+        assertEquals("about:blank", driver.getCurrentUrl());
+        assertEquals(1, stub.getCreatedSessions());
+        assertEquals(1, stub.getOutstandingSessions());
+
+        driver.quit();
+
+        assertEquals(0, stub.getOutstandingSessions());
+        assertEquals("POST /session", requests.get(0));
+        assertTrue(requests.contains("GET /session/stub-session/url"));
+        assertTrue(requests.contains("DELETE /session/stub-session"));
+    }
+
+    @Test
+    void keepsTheConnectionAliveBetweenCommands() {
+        factory = new RemoteDriverFactory(HubSelection.ROUND_ROBIN, hubUrl());
+        WebDriver driver = factory.createDriver(new ImmutableCapabilities("browserName", "chrome"));
+
+        for (int i = 0; i < 5; i++) {
+            driver.getCurrentUrl();
+        }
+        driver.quit();
+
+        assertEquals(1, clientPorts.stream().distinct().count(), "every command should reuse the pooled connection");
+    }
+
+    @Test
+    void doesNotRetryInvalidCapabilities() {
+        rejectSessions = true;
+        factory = new RemoteDriverFactory(HubSelection.ROUND_ROBIN, hubUrl());
+        factory.setRetry(3, Duration.ofMillis(1));
+
+        assertThrows(SessionNotCreatedException.class, () -> factory.createDriver(new ImmutableCapabilities("browserName", "chrome")));
+
+        assertEquals(1, requests.stream().filter("POST /session"::equals).count());
+        assertEquals(1, factory.getHubs().get(0).getFailedCreations());
+        assertEquals(0, factory.getHubs().get(0).getOutstandingSessions());
+    }
+
+    @Test
+    void retriesConnectionFailuresOnTheOtherHub() throws IOException {
+        factory = new RemoteDriverFactory(HubSelection.ROUND_ROBIN, unusedUrl(), hubUrl());
+        factory.setRetry(3, Duration.ofMillis(1));
+
+        WebDriver driver = factory.createDriver(new ImmutableCapabilities("browserName", "chrome"));
+        driver.quit();
+
+        assertEquals(1, factory.getHubs().get(0).getFailedCreations());
+        assertEquals(1, factory.getHubs().get(1).getCreatedSessions());
+    }
+
+    @Test
+    void retriesOnlyConnectionAndTimeoutFailures() {
+        assertTrue(RemoteDriverFactory.isRetryable(new WebDriverException(new ConnectException("refused"))));
+        assertTrue(RemoteDriverFactory.isRetryable(new org.openqa.selenium.TimeoutException("read timed out")));
+        assertFalse(RemoteDriverFactory.isRetryable(new SessionNotCreatedException("invalid capabilities")));
+        assertFalse(RemoteDriverFactory.isRetryable(new IllegalStateException("no such browser")));
+    }
+}
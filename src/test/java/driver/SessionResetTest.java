@@ -0,0 +1,46 @@
+package driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the origin bookkeeping SessionReset clears the visited origins by.
+ *
+ * @author Andras Fuge
+ */
+class SessionResetTest {
+
+    @Test
+    void toOriginKeepsSchemeHostAndExplicitPort() {
+        assertEquals("https://example.com", SessionReset.toOrigin("https://Example.com/path?query=1#hash"));
+        assertEquals("http://localhost:8080", SessionReset.toOrigin("http://localhost:8080/login"));
+        assertEquals("https://shop.example.com", SessionReset.toOrigin("HTTPS://shop.example.com"));
+    }
+
+    @Test
+    void toOriginSkipsUrlsWithoutWebOrigin() {
+        assertNull(SessionReset.toOrigin(null));
+        assertNull(SessionReset.toOrigin("about:blank"));
+        assertNull(SessionReset.toOrigin("data:text/html,<p>hi</p>"));
+        assertNull(SessionReset.toOrigin("file:///tmp/page.html"));
+        assertNull(SessionReset.toOrigin("not a url"));
+    }
+
+    @Test
+    void recordOriginCollectsEachOriginOnce() {
+        Set<String> origins = new LinkedHashSet<>();
+
+        SessionReset.recordOrigin(origins, "https://example.com/a");
+        SessionReset.recordOrigin(origins, "https://example.com/b");
+        SessionReset.recordOrigin(origins, "https://auth.example.com/login");
+        SessionReset.recordOrigin(origins, "about:blank");
+
+        assertEquals(2, origins.size());
+        assertEquals("[https://example.com, https://auth.example.com]", origins.toString());
+    }
+}
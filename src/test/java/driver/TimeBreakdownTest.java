@@ -0,0 +1,108 @@
+package driver;
+
+import enums.CommandType;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests how the sections of the thread's TimeBreakdown share out the commands, and the listening of the drivers
+ * initialized while the command listening is on.
+ *
+ * @author Andras Fuge
+ */
+class TimeBreakdownTest {
+    private static final long MILLI = 1_000_000;
+
+    private static TimeBreakdown.Totals since(TimeBreakdown.Totals start) {
+        return TimeBreakdown.current().snapshot().minus(start);
+    }
+
+    @Test
+    void countsCommandsOutsideSections() {
+        TimeBreakdown.Totals start = TimeBreakdown.current().snapshot();
+
+        TimeBreakdown.command(3 * MILLI);
+        TimeBreakdown.command(2 * MILLI);
+
+        TimeBreakdown.Totals totals = since(start);
+        assertEquals(2, totals.getCommands());
+        assertEquals(5 * MILLI, totals.getCommandNanos());
+        assertEquals(0, totals.getWaits());
+    }
+
+    @Test
+    void countsOnlyTheOutermostSection() throws InterruptedException {
+        TimeBreakdown.Totals start = TimeBreakdown.current().snapshot();
+
+        TimeBreakdown.enter();
+        TimeBreakdown.enter();
+        TimeBreakdown.command(MILLI);
+        Thread.sleep(20);
+        TimeBreakdown.exit(CommandType.WAIT, true);
+        TimeBreakdown.exit(CommandType.WAIT, true);
+
+        TimeBreakdown.Totals totals = since(start);
+        assertEquals(1, totals.getWaits());
+        assertEquals(0, totals.getCommands(), "the commands of a wait belong to the wait");
+        assertTrue(totals.getWaitNanos() >= 20 * MILLI);
+        assertEquals(totals.getWaitNanos() - MILLI, totals.getWaitIdleNanos());
+        assertEquals(totals.getWaitIdleNanos(), totals.getRecoverableNanos());
+    }
+
+    @Test
+    void countsTheCommandsOfSectionsWhichDidNotWait() {
+        TimeBreakdown.Totals start = TimeBreakdown.current().snapshot();
+
+        TimeBreakdown.enter();
+        TimeBreakdown.command(MILLI);
+        TimeBreakdown.exit(CommandType.FIND, false);
+
+        TimeBreakdown.Totals totals = since(start);
+        assertEquals(0, totals.getWaits());
+        assertEquals(1, totals.getCommands());
+        assertEquals(MILLI, totals.getCommandNanos());
+    }
+
+    @Test
+    void countsSleepsAsRecoverable() throws InterruptedException {
+        TimeBreakdown.Totals start = TimeBreakdown.current().snapshot();
+
+        TimeBreakdown.enter();
+        TimeBreakdown.enter();
+        Thread.sleep(10);
+        TimeBreakdown.exit(CommandType.WAIT, true);
+        TimeBreakdown.exit(CommandType.SLEEP, true);
+
+        TimeBreakdown.Totals totals = since(start);
+        assertEquals(1, totals.getSleeps());
+        assertEquals(0, totals.getWaits());
+        assertTrue(totals.getSleepNanos() >= 10 * MILLI);
+        assertEquals(totals.getSleepNanos(), totals.getRecoverableNanos());
+        assertEquals(0, totals.getUnaccountedNanos(totals.getSleepNanos()));
+    }
+
+    @Test
+    void listensToDriversInitializedWhileCommandListeningIsOn() {
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{WebDriver.class},
+                (proxy, method, args) -> "getCurrentUrl".equals(method.getName()) ? "about:blank" : null);
+
+        DriverManager.setCommandListening(true);
+        try {
+            DriverManager.initDriver(driver);
+            TimeBreakdown.Totals start = TimeBreakdown.current().snapshot();
+
+            DriverManager.getDriver().getCurrentUrl();
+
+            assertEquals(1, since(start).getCommands());
+        } finally {
+            DriverManager.setCommandListening(false);
+            DriverManager.destroyDriver();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes the spans of the TraceRecorder and reads them back as Chrome trace-event JSON.
+ *
+ * @author Andras Fuge
+ */
+class TraceRecorderTest {
+
+    @BeforeEach
+    @AfterEach
+    void reset() {
+        TraceRecorder.setEnabled(false);
+        TraceRecorder.setMaxEventsPerThread(1_000_000);
+        TraceRecorder.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> events(Path file) throws IOException {
+        Map<String, Object> trace = new Json().toType(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Map.class);
+
+        assertEquals("ms", trace.get("displayTimeUnit"));
+        return ((List<Map<String, Object>>) trace.get("traceEvents")).stream()
+                .filter(event -> ((Number) event.get("tid")).longValue() == Thread.currentThread().getId())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void writesNestedSpansOnTheTrackOfTheThread(@TempDir Path directory) throws IOException {
+        TraceRecorder.setEnabled(true);
+
+        try (TraceRecorder.Span step = TraceRecorder.span("step", "When I log in")) {
+            try (TraceRecorder.Span call = TraceRecorder.span("DriverMethods", "click", "By.id: \"login\"")) {
+                TraceRecorder.record("command", "click", null, System.nanoTime(), 1_500);
+            }
+        }
+
+        Path file = directory.resolve("trace.json");
+        assertEquals(3, TraceRecorder.writeJson(file));
+
+        List<Map<String, Object>> events = events(file);
+        assertEquals(4, events.size());
+        assertEquals("M", events.get(0).get("ph"));
+        assertEquals(Thread.currentThread().getName(), ((Map<?, ?>) events.get(0).get("args")).get("name"));
+
+        // the spans are recorded when they close, the innermost first
+        assertEquals("command", events.get(1).get("cat"));
+        assertEquals(1.5, ((Number) events.get(1).get("dur")).doubleValue());
+        assertEquals("By.id: \"login\"", ((Map<?, ?>) events.get(2).get("args")).get("detail"));
+        assertEquals("When I log in", events.get(3).get("name"));
+
+        double stepStart = ((Number) events.get(3).get("ts")).doubleValue();
+        double stepEnd = stepStart + ((Number) events.get(3).get("dur")).doubleValue();
+        double callStart = ((Number) events.get(2).get("ts")).doubleValue();
+        assertTrue(stepStart <= callStart && callStart + ((Number) events.get(2).get("dur")).doubleValue() <= stepEnd);
+    }
+
+    @Test
+    void recordsNothingWhenDisabled(@TempDir Path directory) throws IOException {
+        TraceRecorder.Span span = TraceRecorder.span("step", "Given nothing");
+        span.close();
+        TraceRecorder.record("command", "get", null, System.nanoTime(), 1_000);
+
+        assertSame(span, TraceRecorder.span("step", "Given something else"));
+        assertEquals(0, TraceRecorder.writeJson(directory.resolve("trace.json")));
+    }
+
+    @Test
+    void notesTheDroppedEvents(@TempDir Path directory) throws IOException {
+        TraceRecorder.setEnabled(true);
+        TraceRecorder.setMaxEventsPerThread(2);
+
+        for (int i = 0; i < 5; i++) {
+            TraceRecorder.record("command", "get", null, System.nanoTime(), 1_000);
+        }
+
+        Path file = directory.resolve("trace.json");
+        assertEquals(2, TraceRecorder.writeJson(file));
+
+        List<Map<String, Object>> events = events(file);
+        Map<String, Object> marker = events.get(events.size() - 1);
+        assertEquals("i", marker.get("ph"));
+        assertEquals("3 events dropped", marker.get("name"));
+    }
+}
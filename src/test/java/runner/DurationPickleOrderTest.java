@@ -0,0 +1,94 @@
+package runner;
+
+import io.cucumber.core.gherkin.Pickle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the longest first scenario order and the duration history it is based on.
+ *
+ * @author Andras Fuge
+ */
+class DurationPickleOrderTest {
+    private static final URI FEATURE = URI.create("classpath:features/shop.feature");
+
+    private static Pickle pickle(String name) {
+        return (Pickle) Proxy.newProxyInstance(DurationPickleOrderTest.class.getClassLoader(), new Class<?>[]{Pickle.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getName":
+                            return name;
+                        case "getUri":
+                            return FEATURE;
+                        case "toString":
+                            return name;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static List<String> order(ScenarioDurations durations, String... names) {
+        List<Pickle> pickles = Arrays.stream(names).map(DurationPickleOrderTest::pickle).collect(Collectors.toList());
+
+        return new DurationPickleOrder(durations).orderPickles(pickles).stream()
+                .map(Pickle::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    void ordersTheLongestFirst(@TempDir Path directory) {
+        ScenarioDurations durations = ScenarioDurations.load(directory.resolve("durations.properties"));
+        durations.put(ScenarioDurations.key(FEATURE, "search"), 2_000);
+        durations.put(ScenarioDurations.key(FEATURE, "checkout"), 9_000);
+        durations.put(ScenarioDurations.key(FEATURE, "login"), 500);
+
+        assertEquals(List.of("checkout", "search", "login"), order(durations, "login", "search", "checkout"));
+    }
+
+    @Test
+    void startsTheScenariosWithoutHistoryWithTheLongest(@TempDir Path directory) {
+        ScenarioDurations durations = ScenarioDurations.load(directory.resolve("durations.properties"));
+        durations.put(ScenarioDurations.key(FEATURE, "search"), 2_000);
+        durations.put(ScenarioDurations.key(FEATURE, "login"), 500);
+
+        assertEquals(List.of("new", "search", "login"), order(durations, "login", "new", "search"));
+    }
+
+    @Test
+    void keepsTheOrderWithoutHistory(@TempDir Path directory) {
+        ScenarioDurations durations = ScenarioDurations.load(directory.resolve("missing.properties"));
+
+        assertEquals(0, durations.size());
+        assertEquals(List.of("b", "a", "c"), order(durations, "b", "a", "c"));
+    }
+
+    @Test
+    void savesAndLoadsTheHistory(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("nested").resolve("durations.properties");
+        ScenarioDurations durations = ScenarioDurations.load(file);
+        durations.put(ScenarioDurations.key(FEATURE, "checkout: pay by card"), 9_000);
+        durations.save();
+
+        Files.write(file, "broken=not a number\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        ScenarioDurations loaded = ScenarioDurations.load(file);
+
+        assertEquals(1, loaded.size());
+        assertEquals(9_000L, loaded.get(FEATURE, "checkout: pay by card"));
+        assertNull(loaded.get(FEATURE, "login"));
+        assertEquals(9_000, loaded.getLongest());
+    }
+}
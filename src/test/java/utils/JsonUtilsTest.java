@@ -0,0 +1,33 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the string quoting of the hand written JSON reports.
+ *
+ * @author Andras Fuge
+ */
+class JsonUtilsTest {
+
+    @Test
+    void quotesPlainText() {
+        assertEquals("\"Given the login page\"", JsonUtils.quote("Given the login page"));
+        assertEquals("\"\"", JsonUtils.quote(""));
+        assertEquals("null", JsonUtils.quote(null));
+    }
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() {
+        assertEquals("\"say \\\"hi\\\"\"", JsonUtils.quote("say \"hi\""));
+        assertEquals("\"C:\\\\temp\"", JsonUtils.quote("C:\\temp"));
+        assertEquals("\"a\\nb\\r\\tc\"", JsonUtils.quote("a\nb\r\tc"));
+        assertEquals("\"\\u0001\\u001f\"", JsonUtils.quote("\u0001\u001f"));
+    }
+
+    @Test
+    void keepsNonAsciiCharacters() {
+        assertEquals("\"árvíztűrő ✓\"", JsonUtils.quote("árvíztűrő ✓"));
+    }
+}
@@ -0,0 +1,103 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the counters and the percentile estimate of the LatencyHistogram.
+ *
+ * @author Andras Fuge
+ */
+class LatencyHistogramTest {
+    private static final long MILLI = 1_000_000;
+
+    @Test
+    void isEmptyAtFirst() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMillis());
+        assertEquals(0, histogram.getPercentileMillis(99));
+    }
+
+    @Test
+    void sumsTheRecordedDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(2 * MILLI);
+        histogram.record(4 * MILLI);
+        histogram.record(-1);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(6 * MILLI, histogram.getTotalNanos());
+        assertEquals(3.0, histogram.getMeanMillis());
+        assertEquals(4.0, histogram.getMaxMillis());
+    }
+
+    @Test
+    void estimatesPercentilesWithinAFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(3 * MILLI);
+        }
+        histogram.record(50 * MILLI);
+
+        double median = histogram.getPercentileMillis(50);
+        assertTrue(median >= 3 && median <= 6, "median " + median);
+
+        double p99 = histogram.getPercentileMillis(99);
+        assertTrue(p99 >= 3 && p99 <= 6, "p99 " + p99);
+
+        assertEquals(50.0, histogram.getPercentileMillis(100), "the estimate never exceeds the maximum");
+    }
+
+    @Test
+    void countsSubMicrosecondDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(300);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0.0003, histogram.getPercentileMillis(50), 1e-9);
+    }
+
+    @Test
+    void recordsConcurrently() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    histogram.record(i * 1000L);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(10.0, histogram.getMaxMillis());
+        assertEquals(4 * 10_000L * 10_001 / 2 * 1000, histogram.getTotalNanos());
+    }
+
+    @Test
+    void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5 * MILLI);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotalNanos());
+        assertEquals(0, histogram.getMaxMillis());
+        assertEquals(0, histogram.getPercentileMillis(50));
+    }
+}